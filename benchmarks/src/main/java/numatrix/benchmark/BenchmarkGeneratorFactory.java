@@ -0,0 +1,44 @@
+package numatrix.benchmark;
+
+import numatrix.NumatrixNumberGeneratorFactory;
+
+/**
+ * ベンチマークで使用する{@link NumatrixNumberGeneratorFactory}の実装です.<br>
+ * JVMのIDは常に0で、区分とインスタンス数の上限値はコンストラクタで指定します。
+ */
+class BenchmarkGeneratorFactory extends NumatrixNumberGeneratorFactory {
+
+  private final int typeId;
+  private final int maxGeneratorCount;
+
+  /**
+   * 指定された区分とインスタンス数の上限値で生成します.
+   *
+   * @param typeId 区分
+   * @param maxGeneratorCount インスタンス数の上限値
+   */
+  BenchmarkGeneratorFactory(int typeId, int maxGeneratorCount) {
+    this.typeId = typeId;
+    this.maxGeneratorCount = maxGeneratorCount;
+  }
+
+  @Override
+  protected int getTypeId() {
+    return typeId;
+  }
+
+  @Override
+  protected int getJvmId() {
+    return 0;
+  }
+
+  @Override
+  protected int getMaxJvmCount() {
+    return 1;
+  }
+
+  @Override
+  protected int getMaxGeneratorCount() {
+    return maxGeneratorCount;
+  }
+}
@@ -0,0 +1,59 @@
+package numatrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberGenerator;
+import numatrix.NumatrixNumberRange;
+
+/**
+ * 1スレッドでの{@link NumatrixNumberGenerator#generate()}と、まとめて生成する場合のスループットと遅延を計測します.<br>
+ * 連続した番号を使い切らないようにインスタンスのIDのビット長は小さくしています。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark {
+
+  private NumatrixNumberGenerator generator;
+  private final long[] numbers = new long[1024];
+
+  @Setup
+  public void setup() throws NumatrixNumberGenerateException {
+    generator = new BenchmarkGeneratorFactory(1, 2).getGenerator();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long generate() throws NumatrixNumberGenerateException {
+    return generator.generate();
+  }
+
+  @Benchmark
+  @Threads(1)
+  @OperationsPerInvocation(1024)
+  public long[] generateBulk() throws NumatrixNumberGenerateException {
+    generator.generate(numbers, 0, numbers.length);
+    return numbers;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public NumatrixNumberRange reserve() throws NumatrixNumberGenerateException {
+    return generator.reserve(1024);
+  }
+}
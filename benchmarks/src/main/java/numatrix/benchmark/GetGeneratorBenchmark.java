@@ -0,0 +1,62 @@
+package numatrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberGenerator;
+import numatrix.NumatrixNumberGeneratorFactory;
+
+/**
+ * 複数スレッドから同時に呼ばれた{@link NumatrixNumberGeneratorFactory#getGenerator()}の性能を計測します.<br>
+ * 各スレッドは2回目以降の呼び出しで自身のインスタンスを取得するため、ファクトリとプールの同期のコストが計測されます。
+ * 1,2,4,8スレッド以外のスレッド数は{@code -t}オプションで指定してください。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetGeneratorBenchmark {
+
+  private final NumatrixNumberGeneratorFactory factory = new BenchmarkGeneratorFactory(2, 1024);
+
+  @Benchmark
+  @Threads(1)
+  public NumatrixNumberGenerator getGenerator1Thread() throws NumatrixNumberGenerateException {
+    return factory.getGenerator();
+  }
+
+  @Benchmark
+  @Threads(2)
+  public NumatrixNumberGenerator getGenerator2Threads() throws NumatrixNumberGenerateException {
+    return factory.getGenerator();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public NumatrixNumberGenerator getGenerator4Threads() throws NumatrixNumberGenerateException {
+    return factory.getGenerator();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public NumatrixNumberGenerator getGenerator8Threads() throws NumatrixNumberGenerateException {
+    return factory.getGenerator();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public long getGeneratorAndGenerate8Threads() throws NumatrixNumberGenerateException {
+    return factory.getGenerator().generate();
+  }
+}
@@ -0,0 +1,48 @@
+package numatrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberPrefetcher;
+
+/**
+ * {@link NumatrixNumberPrefetcher#generate()}を複数のスレッドから呼んだ場合のスループットと遅延を計測します.<br>
+ * {@link SequenceExhaustionBenchmark}と比べて、タイムスタンプの更新を待つ呼び出しがなくなることを確認します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefetcherBenchmark {
+
+  private NumatrixNumberPrefetcher prefetcher;
+
+  @Setup
+  public void setup() {
+    prefetcher = new NumatrixNumberPrefetcher(new BenchmarkGeneratorFactory(4, 2), 4096, 65536);
+  }
+
+  @TearDown
+  public void tearDown() {
+    prefetcher.close();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public long generate() throws NumatrixNumberGenerateException {
+    return prefetcher.generate();
+  }
+}
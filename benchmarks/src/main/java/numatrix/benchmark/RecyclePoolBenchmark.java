@@ -0,0 +1,58 @@
+package numatrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import numatrix.RecyclePool;
+
+/**
+ * 複数スレッドから同時に呼ばれた{@link RecyclePool#get()}の性能を計測します.<br>
+ * 各スレッドは計測前に自身の要素をプールに追加します。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecyclePoolBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Pool {
+    final RecyclePool<Object> pool = new RecyclePool<>();
+  }
+
+  @State(Scope.Thread)
+  public static class Element {
+    @Setup
+    public void setup(Pool pool) {
+      pool.pool.add(new Object());
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Object get1Thread(Pool pool, Element element) {
+    return pool.pool.get();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Object get4Threads(Pool pool, Element element) {
+    return pool.pool.get();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Object get8Threads(Pool pool, Element element) {
+    return pool.pool.get();
+  }
+}
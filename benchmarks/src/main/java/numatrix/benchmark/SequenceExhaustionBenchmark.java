@@ -0,0 +1,46 @@
+package numatrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberGenerator;
+
+/**
+ * タイムスタンプの1単位の間に連続した番号を使い切る場合の{@link NumatrixNumberGenerator#generate()}を計測します.<br>
+ * 連続した番号のビット長を{@code seqNumBitLength}で小さくし、タイムスタンプの更新を待つ呼び出しの遅延をパーセンタイルで確認します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SequenceExhaustionBenchmark {
+
+  @Param({"10", "14", "18"})
+  public int seqNumBitLength;
+
+  private NumatrixNumberGenerator generator;
+
+  @Setup
+  public void setup() {
+    generator = new NumatrixNumberGenerator(0, 31 - seqNumBitLength);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long generate() throws NumatrixNumberGenerateException {
+    return generator.generate();
+  }
+}
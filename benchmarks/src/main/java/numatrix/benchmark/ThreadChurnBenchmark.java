@@ -0,0 +1,86 @@
+package numatrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberGeneratorFactory;
+import numatrix.NumatrixNumberGeneratorLease;
+
+/**
+ * 短命なスレッドが次々に{@link NumatrixNumberGeneratorFactory#getGenerator()}を呼ぶ場合の性能を計測します.<br>
+ * 1回の操作でスレッドを1つ起動し、数値を1つ生成して終了するまで待ちます。
+ * インスタンス数の上限値を{@code maxGeneratorCount}で小さくすると、消滅したスレッドのインスタンスを再利用するコストが計測されます。
+ * {@link #churnWithLease()}はインスタンスを貸し出しで取得し、スレッドの終了前に返却します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadChurnBenchmark {
+
+  @Param({"16", "1024"})
+  public int maxGeneratorCount;
+
+  private NumatrixNumberGeneratorFactory factory;
+
+  @Setup
+  public void setup() {
+    factory = new BenchmarkGeneratorFactory(3, maxGeneratorCount);
+  }
+
+  @Benchmark
+  public long churn() throws Exception {
+    final long[] result = new long[1];
+    final Exception[] error = new Exception[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          result[0] = factory.getGenerator().generate();
+        } catch (NumatrixNumberGenerateException e) {
+          error[0] = e;
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    if (error[0] != null) {
+      throw error[0];
+    }
+    return result[0];
+  }
+
+  @Benchmark
+  public long churnWithLease() throws Exception {
+    final long[] result = new long[1];
+    final Exception[] error = new Exception[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try (NumatrixNumberGeneratorLease lease = factory.leaseGenerator()) {
+          result[0] = lease.getGenerator().generate();
+        } catch (NumatrixNumberGenerateException e) {
+          error[0] = e;
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    if (error[0] != null) {
+      throw error[0];
+    }
+    return result[0];
+  }
+}
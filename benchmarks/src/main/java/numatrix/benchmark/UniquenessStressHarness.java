@@ -0,0 +1,465 @@
+package numatrix.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberGenerator;
+import numatrix.NumatrixNumberGeneratorFactory;
+import numatrix.NumatrixNumberGeneratorLease;
+import numatrix.NumatrixNumberLayout;
+import numatrix.NumatrixTickUnit;
+
+/**
+ * 複数のプロセスとスレッドから生成した大量の数値が重複しないことを検証し、スループットを出力します.<br>
+ * JMHのベンチマークではなく、単独で実行するプログラムです。
+ * <pre>
+ * java -cp target/benchmarks.jar numatrix.benchmark.UniquenessStressHarness \
+ *     -processes 4 -threads 8 -ids 100000000 -churn 100000 -dir /tmp/numatrix-stress
+ * </pre>
+ * 指定された数のJVMをそれぞれ異なるJVMのIDで起動し、各JVMは指定された数のスロットで数値を生成します。
+ * スロットは{@code churn}個ずつ数値を生成する短命なスレッドを次々に起動するため、消滅したスレッドのインスタンスが{@link numatrix.RecyclePool}で再利用されます。
+ * 偶数番目のスレッドは{@link NumatrixNumberGeneratorFactory#leaseGenerator()}で借りて返却し、奇数番目のスレッドは{@link NumatrixNumberGeneratorFactory#getGenerator()}で取得したまま終了します。
+ * インスタンス数の上限値に達した場合はGCを促して回収を待ち、その回数を出力します。<br>
+ * <br>
+ * 生成した数値はヒープではなく、JVM毎のメモリマップファイルに書き込みます。
+ * すべてのJVMが終了した後、数値をハッシュで分割したファイルに振り分け、分割毎にソートして隣接する値を比較することで重複を検出します。
+ * 同時にJVMのIDが生成したJVMと一致することも確認します。
+ * ディスクは数値1つあたり16バイト（生成したファイルと分割したファイル）必要です。検証が終わったファイルは削除します。<br>
+ * <br>
+ * 数値の構成はミリ秒単位の41ビットのタイムスタンプで、インスタンスのIDのビット長はJVM数とインスタンス数の上限値から決まります。
+ * 重複または不一致が見つかった場合、終了コードは1になります。
+ */
+public class UniquenessStressHarness {
+
+  private static final String[][] DEFAULT_OPTIONS = {{"processes", "4"}, {"threads", "8"},
+      {"ids", "10000000"}, {"churn", "100000"}, {"maxGenerators", "0"},
+      {"partitionIds", "16777216"}, {"dir", "numatrix-stress"}};
+
+  private static final int MAX_RECLAIM_RETRIES = 100;
+
+  private UniquenessStressHarness() {
+  }
+
+  /**
+   * 検証するJVMと数値を生成するJVMで使用する{@link NumatrixNumberGeneratorFactory}の実装です.<br>
+   * タイムスタンプはミリ秒単位の41ビットです。
+   */
+  static class StressGeneratorFactory extends NumatrixNumberGeneratorFactory {
+
+    private final int jvmId;
+    private final int maxJvmCount;
+    private final int maxGeneratorCount;
+
+    StressGeneratorFactory(int jvmId, int maxJvmCount, int maxGeneratorCount) {
+      this.jvmId = jvmId;
+      this.maxJvmCount = maxJvmCount;
+      this.maxGeneratorCount = maxGeneratorCount;
+    }
+
+    @Override
+    protected int getTypeId() {
+      return 1;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return jvmId;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return maxJvmCount;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return maxGeneratorCount;
+    }
+
+    @Override
+    protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+      return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          return 41;
+        }
+      };
+    }
+  }
+
+  /**
+   * 引数が{@code worker}で始まる場合は数値を生成するJVMとして、そうでない場合は検証するJVMとして実行します.
+   *
+   * @param args {@code -名前 値}の組み合わせ
+   * @throws Exception 実行できない場合
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("worker")) {
+      runWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+          Integer.parseInt(args[4]), Long.parseLong(args[5]), Long.parseLong(args[6]),
+          new File(args[7]));
+      return;
+    }
+    Map<String, String> options = parseOptions(args);
+    int processes = Integer.parseInt(options.get("processes"));
+    int threads = Integer.parseInt(options.get("threads"));
+    long ids = Long.parseLong(options.get("ids"));
+    long churn = Long.parseLong(options.get("churn"));
+    int maxGenerators = Integer.parseInt(options.get("maxGenerators"));
+    if (maxGenerators <= 0) {
+      maxGenerators = threads * 2;
+    }
+    int partitionIds = Integer.parseInt(options.get("partitionIds"));
+    File dir = new File(options.get("dir"));
+    if (processes <= 0 || threads <= 0 || ids <= 0 || churn <= 0 || partitionIds <= 0) {
+      throw new IllegalArgumentException("options must be positive. " + options);
+    }
+    if (ids > Integer.MAX_VALUE / 8) {
+      throw new IllegalArgumentException("ids per thread must be " + Integer.MAX_VALUE / 8
+          + " or less. " + ids);
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("cannot create directory. " + dir);
+    }
+    System.out.println("processes=" + processes + ", threads=" + threads + ", ids per thread="
+        + ids + ", churn=" + churn + ", maxGenerators=" + maxGenerators + ", dir=" + dir);
+
+    File[] files = runWorkers(processes, threads, maxGenerators, ids, churn, dir);
+    NumatrixNumberLayout layout =
+        new StressGeneratorFactory(0, processes, maxGenerators).getLayout();
+    System.out.println(layout);
+    boolean passed = verify(files, layout, partitionIds, dir);
+    System.out.println(passed ? "PASSED" : "FAILED");
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String[] option : DEFAULT_OPTIONS) {
+      options.put(option[0], option[1]);
+    }
+    for (int i = 0; i < args.length; i += 2) {
+      String name = args[i].startsWith("-") ? args[i].substring(1) : args[i];
+      if (!options.containsKey(name) || i + 1 >= args.length) {
+        throw new IllegalArgumentException("unknown option: " + args[i] + ". options: "
+            + options.keySet());
+      }
+      options.put(name, args[i + 1]);
+    }
+    return options;
+  }
+
+  /**
+   * 数値を生成するJVMを起動し、すべて終了するまで待ってスループットを出力します.
+   *
+   * @return JVM毎の数値のファイル
+   */
+  private static File[] runWorkers(int processes, int threads, int maxGenerators, long ids,
+      long churn, File dir) throws IOException, InterruptedException {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    File[] files = new File[processes];
+    Process[] workers = new Process[processes];
+    for (int jvmId = 0; jvmId < processes; jvmId++) {
+      files[jvmId] = new File(dir, "ids-" + jvmId + ".bin");
+      ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+          System.getProperty("java.class.path"), UniquenessStressHarness.class.getName(),
+          "worker", String.valueOf(jvmId), String.valueOf(processes), String.valueOf(threads),
+          String.valueOf(maxGenerators), String.valueOf(ids), String.valueOf(churn),
+          files[jvmId].getAbsolutePath());
+      builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+      workers[jvmId] = builder.start();
+    }
+    double minThroughput = Double.MAX_VALUE;
+    double maxThroughput = 0;
+    double totalThroughput = 0;
+    int threadCount = 0;
+    boolean failed = false;
+    for (int jvmId = 0; jvmId < processes; jvmId++) {
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(workers[jvmId].getInputStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] fields = line.split(" ");
+          if (fields[0].equals("slot")) {
+            double throughput = Long.parseLong(fields[2]) * 1e9 / Long.parseLong(fields[3]);
+            minThroughput = Math.min(minThroughput, throughput);
+            maxThroughput = Math.max(maxThroughput, throughput);
+            totalThroughput += throughput;
+            threadCount++;
+          } else if (fields[0].equals("process")) {
+            System.out.printf("process %s: %s ids in %.3f s, %.0f ids/s, %s threads started, "
+                + "%s reclaim waits%n", fields[1], fields[2], Long.parseLong(fields[3]) / 1e9,
+                Long.parseLong(fields[2]) * 1e9 / Long.parseLong(fields[3]), fields[4],
+                fields[5]);
+          }
+        }
+      }
+      if (workers[jvmId].waitFor() != 0) {
+        System.out.println("process " + jvmId + " exited with " + workers[jvmId].exitValue());
+        failed = true;
+      }
+    }
+    if (threadCount > 0) {
+      System.out.printf("per thread: min %.0f ids/s, avg %.0f ids/s, max %.0f ids/s%n",
+          minThroughput, totalThroughput / threadCount, maxThroughput);
+    }
+    if (failed) {
+      throw new IllegalStateException("worker process failed.");
+    }
+    return files;
+  }
+
+  /**
+   * 数値を生成するJVMとして、スロット毎に短命なスレッドを起動して数値をファイルに書き込みます.<br>
+   * スロット毎に{@code slot スロット 数値の数 経過時間（ナノ秒）}を、最後に
+   * {@code process JVMのID 数値の数 経過時間（ナノ秒） 起動したスレッド数 回収を待った回数}を標準出力に出力します。
+   */
+  private static void runWorker(int jvmId, int maxJvmCount, int threads, int maxGenerators,
+      final long ids, final long churn, File file) throws Exception {
+    final NumatrixNumberGeneratorFactory factory =
+        new StressGeneratorFactory(jvmId, maxJvmCount, maxGenerators);
+    factory.warmUp(threads);
+    final AtomicLong startedThreads = new AtomicLong();
+    final AtomicLong reclaimWaits = new AtomicLong();
+    final long[] slotNanos = new long[threads];
+    final Throwable[] errors = new Throwable[threads];
+    Thread[] slots = new Thread[threads];
+    long start;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(threads * ids * 8);
+      FileChannel channel = raf.getChannel();
+      start = System.nanoTime();
+      for (int slot = 0; slot < threads; slot++) {
+        final int index = slot;
+        final LongBuffer out =
+            channel.map(FileChannel.MapMode.READ_WRITE, slot * ids * 8, ids * 8).asLongBuffer();
+        slots[slot] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            long slotStart = System.nanoTime();
+            try {
+              for (long generation = 0; out.hasRemaining(); generation++) {
+                runChurnThread(factory, out, (int) Math.min(churn, out.remaining()),
+                    generation % 2 == 0, reclaimWaits);
+                startedThreads.incrementAndGet();
+              }
+            } catch (Throwable e) {
+              errors[index] = e;
+            }
+            slotNanos[index] = System.nanoTime() - slotStart;
+          }
+        });
+        slots[slot].start();
+      }
+      for (Thread slot : slots) {
+        slot.join();
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    for (int slot = 0; slot < threads; slot++) {
+      if (errors[slot] != null) {
+        errors[slot].printStackTrace();
+        System.exit(1);
+      }
+      System.out.println("slot " + slot + " " + ids + " " + slotNanos[slot]);
+    }
+    System.out.println("process " + jvmId + " " + ids * threads + " " + nanos + " "
+        + startedThreads.get() + " " + reclaimWaits.get());
+  }
+
+  /**
+   * スレッドを1つ起動して指定された数の数値を書き込み、終了するまで待ちます.
+   */
+  private static void runChurnThread(final NumatrixNumberGeneratorFactory factory,
+      final LongBuffer out, final int count, final boolean lease, final AtomicLong reclaimWaits)
+      throws Throwable {
+    final Throwable[] error = new Throwable[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (lease) {
+            try (NumatrixNumberGeneratorLease generatorLease = leaseGenerator(factory,
+                reclaimWaits)) {
+              NumatrixNumberGenerator generator = generatorLease.getGenerator();
+              for (int i = 0; i < count; i++) {
+                out.put(generator.generate());
+              }
+            }
+          } else {
+            NumatrixNumberGenerator generator = leaseGenerator(factory, reclaimWaits)
+                .getGenerator();
+            for (int i = 0; i < count; i++) {
+              out.put(generator.generate());
+            }
+          }
+        } catch (Throwable e) {
+          error[0] = e;
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    if (error[0] != null) {
+      throw error[0];
+    }
+  }
+
+  /**
+   * インスタンスを借ります.<br>
+   * インスタンス数の上限値に達している場合は、消滅したスレッドのインスタンスが回収されるようにGCを促して待ちます。
+   */
+  private static NumatrixNumberGeneratorLease leaseGenerator(
+      NumatrixNumberGeneratorFactory factory, AtomicLong reclaimWaits)
+      throws NumatrixNumberGenerateException, InterruptedException {
+    for (int retry = 0;; retry++) {
+      try {
+        return factory.leaseGenerator();
+      } catch (NumatrixNumberGenerateException e) {
+        if (retry >= MAX_RECLAIM_RETRIES) {
+          throw e;
+        }
+        reclaimWaits.incrementAndGet();
+        System.gc();
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  /**
+   * 数値をハッシュで分割したファイルに振り分け、分割毎にソートして重複を検出します.
+   *
+   * @return 重複と不一致がない場合は{@code true}
+   */
+  private static boolean verify(File[] files, NumatrixNumberLayout layout, int partitionIds,
+      File dir) throws IOException {
+    long start = System.nanoTime();
+    long total = 0;
+    for (File file : files) {
+      total += file.length() / 8;
+    }
+    int partitionBits = 0;
+    while (partitionBits < 20 && (total >>> partitionBits) > partitionIds) {
+      partitionBits++;
+    }
+    int partitionCount = 1 << partitionBits;
+    File[] partitions = new File[partitionCount];
+    FileChannel[] channels = new FileChannel[partitionCount];
+    ByteBuffer[] buffers = new ByteBuffer[partitionCount];
+    long mismatches = 0;
+    try {
+      for (int i = 0; i < partitionCount; i++) {
+        partitions[i] = new File(dir, "partition-" + i + ".bin");
+        channels[i] = new RandomAccessFile(partitions[i], "rw").getChannel();
+        channels[i].truncate(0);
+        buffers[i] = ByteBuffer.allocateDirect(64 * 1024);
+      }
+      for (int jvmId = 0; jvmId < files.length; jvmId++) {
+        try (RandomAccessFile raf = new RandomAccessFile(files[jvmId], "r")) {
+          FileChannel channel = raf.getChannel();
+          long size = channel.size();
+          for (long position = 0; position < size; position += 1 << 28) {
+            LongBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(1 << 28, size - position)).asLongBuffer();
+            while (in.hasRemaining()) {
+              long number = in.get();
+              if (layout.jvmIdOf(number) != jvmId) {
+                if (mismatches++ < 10) {
+                  System.out.println("jvm id mismatch: " + number + " in process " + jvmId);
+                }
+              }
+              int partition = partitionBits == 0 ? 0
+                  : (int) (mix(number) >>> (64 - partitionBits));
+              ByteBuffer buffer = buffers[partition];
+              buffer.putLong(number);
+              if (!buffer.hasRemaining()) {
+                flush(buffer, channels[partition]);
+              }
+            }
+          }
+        }
+        if (!files[jvmId].delete()) {
+          System.out.println("cannot delete " + files[jvmId]);
+        }
+      }
+      for (int i = 0; i < partitionCount; i++) {
+        flush(buffers[i], channels[i]);
+      }
+    } finally {
+      for (FileChannel channel : channels) {
+        if (channel != null) {
+          channel.close();
+        }
+      }
+    }
+
+    long duplicates = 0;
+    List<Long> examples = new ArrayList<>();
+    for (File partition : partitions) {
+      long[] numbers = new long[(int) (partition.length() / 8)];
+      try (RandomAccessFile raf = new RandomAccessFile(partition, "r")) {
+        raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, partition.length())
+            .asLongBuffer().get(numbers);
+      }
+      Arrays.sort(numbers);
+      for (int i = 1; i < numbers.length; i++) {
+        if (numbers[i] == numbers[i - 1]) {
+          duplicates++;
+          if (examples.size() < 10) {
+            examples.add(numbers[i]);
+          }
+        }
+      }
+      if (!partition.delete()) {
+        System.out.println("cannot delete " + partition);
+      }
+    }
+    for (long number : examples) {
+      System.out.println("duplicate: " + number + " (timestamp " + layout.timestampOf(number)
+          + ", sequence " + layout.sequenceOf(number) + ", instance "
+          + layout.instanceIdOf(number) + ")");
+    }
+    System.out.printf("verified %d ids in %d partitions in %.3f s: %d duplicates, "
+        + "%d jvm id mismatches%n", total, partitionCount, (System.nanoTime() - start) / 1e9,
+        duplicates, mismatches);
+    return duplicates == 0 && mismatches == 0;
+  }
+
+  private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * 数値を分割に振り分けるためのハッシュ値を返します.<br>
+   * 連続した数値も上位ビットに偏りなく分散させます。
+   */
+  private static long mix(long number) {
+    number = (number ^ (number >>> 30)) * 0xBF58476D1CE4E5B9L;
+    number = (number ^ (number >>> 27)) * 0x94D049BB133111EBL;
+    return number ^ (number >>> 31);
+  }
+}
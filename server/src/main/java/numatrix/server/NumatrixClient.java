@@ -0,0 +1,238 @@
+package numatrix.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberRange;
+
+/**
+ * {@link NumatrixServer}から数値を取得するクライアントです.<br>
+ * 1つの接続を使用するため、複数のスレッドから同時に使用しないでください。スレッド毎に生成してください。<br>
+ * <br>
+ * {@link #generate(long[], int, int)}は指定された数を{@link NumatrixServerProtocol#MAX_COUNT}個ずつのリクエストに分け、
+ * 最大{@link #PIPELINE_DEPTH}個のリクエストをレスポンスを待たずに送信します。
+ * <pre>
+ * try (NumatrixClient client = new NumatrixClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), 7070))) {
+ *   long[] numbers = new long[10000];
+ *   client.generate(numbers, 0, numbers.length);
+ * }
+ * </pre>
+ */
+public final class NumatrixClient implements Closeable {
+
+  /**
+   * レスポンスを待たずに送信するリクエストの最大数です.
+   */
+  public static final int PIPELINE_DEPTH = 64;
+
+  private final SocketChannel channel;
+  private final ByteBuffer requests =
+      ByteBuffer.allocate(NumatrixServerProtocol.REQUEST_LENGTH * PIPELINE_DEPTH);
+  private final ByteBuffer header =
+      ByteBuffer.allocate(NumatrixServerProtocol.RESPONSE_HEADER_LENGTH);
+  private final int[] counts = new int[PIPELINE_DEPTH];
+  private ByteBuffer payload = ByteBuffer.allocate(NumatrixServerProtocol.MAX_COUNT * 8);
+  private int nextCorrelationId;
+  private int nextResponseId;
+
+  /**
+   * 指定されたアドレスのサーバーに接続します.
+   *
+   * @param address サーバーのアドレス
+   * @throws IOException 接続できない場合
+   */
+  public NumatrixClient(InetSocketAddress address) throws IOException {
+    this.channel = SocketChannel.open(address);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+  }
+
+  /**
+   * 数値を1つ生成します.
+   *
+   * @return 生成された数値
+   * @throws IOException 通信できない場合
+   * @throws NumatrixNumberGenerateException サーバーで数値を生成できなかった場合
+   */
+  public long generate() throws IOException, NumatrixNumberGenerateException {
+    long[] dst = new long[1];
+    generate(dst, 0, 1, NumatrixServerProtocol.DEFAULT_SHARD_ID);
+    return dst[0];
+  }
+
+  /**
+   * 指定された配列の範囲に数値を生成します.
+   *
+   * @param dst 生成された数値を格納する配列
+   * @param off 格納を開始する位置
+   * @param len 生成する数値の数
+   * @throws IOException 通信できない場合
+   * @throws NumatrixNumberGenerateException サーバーで数値を生成できなかった場合
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void generate(long[] dst, int off, int len)
+      throws IOException, NumatrixNumberGenerateException {
+    generate(dst, off, len, NumatrixServerProtocol.DEFAULT_SHARD_ID);
+  }
+
+  /**
+   * 指定された配列の範囲に、指定されたシャードのIDを持つ数値を生成します.
+   *
+   * @param dst 生成された数値を格納する配列
+   * @param off 格納を開始する位置
+   * @param len 生成する数値の数
+   * @param shardId シャードのID
+   * @throws IOException 通信できない場合
+   * @throws NumatrixNumberGenerateException サーバーで数値を生成できなかった場合。シャードのIDが範囲外の場合を含みます
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void generate(long[] dst, int off, int len, int shardId)
+      throws IOException, NumatrixNumberGenerateException {
+    if (off < 0 || len < 0 || off > dst.length - len) {
+      throw new IndexOutOfBoundsException(
+          "offset: " + off + ", length: " + len + ", array length: " + dst.length);
+    }
+    int end = off + len;
+    while (off < end) {
+      requests.clear();
+      int pipelined = 0;
+      for (int pos = off; pipelined < PIPELINE_DEPTH && pos < end; pipelined++) {
+        int count = Math.min(NumatrixServerProtocol.MAX_COUNT, end - pos);
+        putRequest(NumatrixServerProtocol.OP_GENERATE, count, shardId);
+        counts[pipelined] = count;
+        pos += count;
+      }
+      send();
+      String error = null;
+      for (int i = 0; i < pipelined; i++) {
+        String message = receive();
+        if (message != null) {
+          error = error != null ? error : message;
+        } else if (payload.remaining() != counts[i] * 8) {
+          throw new IOException("unexpected payload length. " + payload.remaining());
+        } else {
+          payload.asLongBuffer().get(dst, off, counts[i]);
+        }
+        off += counts[i];
+      }
+      if (error != null) {
+        throw new NumatrixNumberGenerateException(error);
+      }
+    }
+  }
+
+  /**
+   * 連続した番号を指定された数だけ予約し、その範囲を返します.<br>
+   * 範囲はサーバーのタイムスタンプの更新をまたがないため、複数の範囲に分かれることがあります。範囲内の数値の数の合計は指定された数です。
+   *
+   * @param count 予約する数値の数
+   * @return 予約された範囲
+   * @throws IOException 通信できない場合
+   * @throws NumatrixNumberGenerateException サーバーで予約できなかった場合
+   * @throws IllegalArgumentException 予約する数値の数が1から{@link NumatrixServerProtocol#MAX_COUNT}の範囲外の場合
+   */
+  public List<NumatrixNumberRange> reserve(int count)
+      throws IOException, NumatrixNumberGenerateException {
+    return reserve(count, NumatrixServerProtocol.DEFAULT_SHARD_ID);
+  }
+
+  /**
+   * 指定されたシャードのIDを持つ連続した番号を指定された数だけ予約し、その範囲を返します.
+   *
+   * @param count 予約する数値の数
+   * @param shardId シャードのID
+   * @return 予約された範囲
+   * @throws IOException 通信できない場合
+   * @throws NumatrixNumberGenerateException サーバーで予約できなかった場合。シャードのIDが範囲外の場合を含みます
+   * @throws IllegalArgumentException 予約する数値の数が1から{@link NumatrixServerProtocol#MAX_COUNT}の範囲外の場合
+   */
+  public List<NumatrixNumberRange> reserve(int count, int shardId)
+      throws IOException, NumatrixNumberGenerateException {
+    if (count <= 0 || count > NumatrixServerProtocol.MAX_COUNT) {
+      throw new IllegalArgumentException("count is out of range. " + count);
+    }
+    requests.clear();
+    putRequest(NumatrixServerProtocol.OP_RESERVE, count, shardId);
+    send();
+    String error = receive();
+    if (error != null) {
+      throw new NumatrixNumberGenerateException(error);
+    }
+    if (payload.remaining() % NumatrixServerProtocol.RANGE_LENGTH != 0) {
+      throw new IOException("unexpected payload length. " + payload.remaining());
+    }
+    List<NumatrixNumberRange> ranges =
+        new ArrayList<>(payload.remaining() / NumatrixServerProtocol.RANGE_LENGTH);
+    while (payload.hasRemaining()) {
+      ranges.add(new NumatrixNumberRange(payload.getLong(), payload.getInt(), payload.getLong()));
+    }
+    return ranges;
+  }
+
+  /**
+   * 接続を閉じます.
+   *
+   * @throws IOException 接続を閉じられない場合
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void putRequest(byte op, int count, int shardId) {
+    requests.putInt(nextCorrelationId++).put(op).putInt(count).putInt(shardId);
+  }
+
+  private void send() throws IOException {
+    requests.flip();
+    while (requests.hasRemaining()) {
+      channel.write(requests);
+    }
+  }
+
+  /**
+   * 送信した順にレスポンスを1つ受信し、ペイロードを{@link #payload}に読み込みます.
+   *
+   * @return エラーのレスポンスの場合はエラーメッセージ、そうでない場合は{@code null}
+   */
+  private String receive() throws IOException {
+    header.clear();
+    readFully(header);
+    header.flip();
+    int correlationId = header.getInt();
+    byte status = header.get();
+    int length = header.getInt();
+    if (correlationId != nextResponseId) {
+      throw new IOException("unexpected correlation id. " + correlationId);
+    }
+    nextResponseId++;
+    if (length < 0) {
+      throw new IOException("unexpected payload length. " + length);
+    }
+    if (payload.capacity() < length) {
+      payload = ByteBuffer.allocate(length);
+    }
+    payload.clear().limit(length);
+    readFully(payload);
+    payload.flip();
+    if (status != NumatrixServerProtocol.STATUS_OK) {
+      return new String(payload.array(), 0, length, StandardCharsets.UTF_8);
+    }
+    return null;
+  }
+
+  private void readFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("connection is closed by the server.");
+      }
+    }
+  }
+}
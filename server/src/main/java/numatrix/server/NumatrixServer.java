@@ -0,0 +1,401 @@
+package numatrix.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberGenerator;
+import numatrix.NumatrixNumberGeneratorFactory;
+import numatrix.NumatrixNumberGeneratorLease;
+import numatrix.NumatrixNumberRange;
+
+/**
+ * 同じホストのJava以外のプロセスに、TCPで数値と予約した連続した番号の範囲を返すサーバーです.<br>
+ * プロトコルは{@link NumatrixServerProtocol}を参照してください。<br>
+ * <br>
+ * 受け付けた接続は指定された数のワーカースレッドに順に割り当てます。ワーカースレッドはそれぞれ1つのセレクタで複数の接続を処理し、
+ * {@link NumatrixNumberGeneratorFactory#leaseGenerator()}で借りた自分の{@link NumatrixNumberGenerator}インスタンスから数値を生成します。
+ * そのため、ワーカースレッドの数は{@link NumatrixNumberGeneratorFactory#getMaxGeneratorCount()}以下にしてください。<br>
+ * 1回の受信に含まれるリクエストをすべて処理してから、レスポンスをまとめて送信します。
+ * 連続した番号を使い切った場合はタイムスタンプの更新を待つため、その間は同じワーカースレッドの他の接続も待ちます。
+ * <pre>
+ * NumatrixServer server = new NumatrixServer(factory, new InetSocketAddress(InetAddress.getLoopbackAddress(), 7070), 4);
+ * server.start();
+ * </pre>
+ */
+public final class NumatrixServer implements Closeable {
+
+  private static final int INPUT_BUFFER_SIZE = NumatrixServerProtocol.REQUEST_LENGTH * 4096;
+  private static final int OUTPUT_BUFFER_SIZE = 65536;
+  private static final int OUTPUT_LIMIT = 1 << 20;
+
+  private final NumatrixNumberGeneratorFactory factory;
+  private final ServerSocketChannel serverChannel;
+  private final Worker[] workers;
+  private final Thread acceptor;
+  private volatile boolean closed;
+
+  /**
+   * 指定されたアドレスで接続を待ち受けるサーバーを生成します.<br>
+   * {@link #start()}を呼ぶまで接続は受け付けません。
+   *
+   * @param factory 数値を生成する区分の{@link NumatrixNumberGeneratorFactory}
+   * @param address 待ち受けるアドレス。ポートが0の場合は空いているポートを使用します
+   * @param workerCount ワーカースレッドの数
+   * @throws IOException 待ち受けられない場合
+   * @throws IllegalArgumentException ワーカースレッドの数が0以下の場合
+   */
+  public NumatrixServer(NumatrixNumberGeneratorFactory factory, InetSocketAddress address,
+      int workerCount) throws IOException {
+    if (workerCount <= 0) {
+      throw new IllegalArgumentException("workerCount must be positive. " + workerCount);
+    }
+    this.factory = factory;
+    this.workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(i);
+    }
+    this.serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      serverChannel.bind(address);
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+    this.acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        accept();
+      }
+    }, "numatrix-server-acceptor");
+    acceptor.setDaemon(true);
+  }
+
+  /**
+   * ワーカースレッドを起動し、接続の受け付けを開始します.<br>
+   * すべてのワーカースレッドが{@link NumatrixNumberGenerator}インスタンスを借りるまで待ちます。
+   *
+   * @throws NumatrixNumberGenerateException {@link NumatrixNumberGenerator}インスタンスを借りられなかった場合
+   * @throws InterruptedException 待機中に割り込まれた場合
+   */
+  public void start() throws NumatrixNumberGenerateException, InterruptedException {
+    for (Worker worker : workers) {
+      worker.thread.start();
+    }
+    for (Worker worker : workers) {
+      worker.started.await();
+      if (worker.startFailure != null) {
+        closeQuietly();
+        throw worker.startFailure;
+      }
+    }
+    acceptor.start();
+  }
+
+  /**
+   * 接続を待ち受けているアドレスを返します.
+   *
+   * @return 接続を待ち受けているアドレス
+   * @throws IOException アドレスを取得できない場合
+   */
+  public InetSocketAddress getLocalAddress() throws IOException {
+    return (InetSocketAddress) serverChannel.getLocalAddress();
+  }
+
+  /**
+   * 接続の受け付けを終了し、すべての接続を閉じます.<br>
+   * ワーカースレッドが終了し、借りていた{@link NumatrixNumberGenerator}インスタンスを返却するまで待ちます。
+   *
+   * @throws IOException 待ち受けを終了できない場合
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverChannel.close();
+    for (Worker worker : workers) {
+      if (worker.thread.getState() == Thread.State.NEW) {
+        worker.closeSelector();
+      } else {
+        worker.selector.wakeup();
+      }
+    }
+    boolean interrupted = false;
+    for (Worker worker : workers) {
+      while (worker.thread.isAlive()) {
+        try {
+          worker.thread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      close();
+    } catch (IOException e) {
+      ;
+    }
+  }
+
+  /**
+   * 接続を受け付け、ワーカースレッドに順に割り当てます.
+   */
+  private void accept() {
+    int next = 0;
+    while (!closed) {
+      SocketChannel channel;
+      try {
+        channel = serverChannel.accept();
+      } catch (IOException e) {
+        continue;
+      }
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      } catch (IOException e) {
+        closeChannel(channel);
+        continue;
+      }
+      workers[next].register(channel);
+      next = (next + 1) % workers.length;
+    }
+  }
+
+  private static void closeChannel(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      ;
+    }
+  }
+
+  /**
+   * 1つのセレクタで割り当てられた接続を処理するワーカースレッドです.
+   */
+  private final class Worker implements Runnable {
+
+    final Thread thread;
+    final Selector selector;
+    final CountDownLatch started = new CountDownLatch(1);
+    final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+    volatile NumatrixNumberGenerateException startFailure;
+    private NumatrixNumberGenerator generator;
+
+    Worker(int index) throws IOException {
+      this.selector = Selector.open();
+      this.thread = new Thread(this, "numatrix-server-worker-" + index);
+      thread.setDaemon(true);
+    }
+
+    void register(SocketChannel channel) {
+      pending.add(channel);
+      selector.wakeup();
+      if (closed) {
+        closeChannel(channel);
+      }
+    }
+
+    @Override
+    public void run() {
+      NumatrixNumberGeneratorLease lease;
+      try {
+        lease = factory.leaseGenerator();
+      } catch (NumatrixNumberGenerateException e) {
+        startFailure = e;
+        started.countDown();
+        closeSelector();
+        return;
+      }
+      try {
+        generator = lease.getGenerator();
+        started.countDown();
+        while (!closed) {
+          selector.select();
+          registerPending();
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+              if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                connection.close();
+                continue;
+              }
+              process(connection);
+            } catch (IOException e) {
+              connection.close();
+            }
+          }
+        }
+      } catch (IOException e) {
+        ;
+      } finally {
+        for (SelectionKey key : selector.keys()) {
+          ((Connection) key.attachment()).close();
+        }
+        SocketChannel channel;
+        while ((channel = pending.poll()) != null) {
+          closeChannel(channel);
+        }
+        closeSelector();
+        lease.close();
+      }
+    }
+
+    private void registerPending() {
+      SocketChannel channel;
+      while ((channel = pending.poll()) != null) {
+        try {
+          Connection connection = new Connection(channel);
+          connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        } catch (ClosedChannelException e) {
+          closeChannel(channel);
+        }
+      }
+    }
+
+    private void closeSelector() {
+      try {
+        selector.close();
+      } catch (IOException e) {
+        ;
+      }
+    }
+
+    /**
+     * 受信したリクエストを処理してレスポンスを送信し、次に待つ操作を設定します.<br>
+     * 送信待ちのレスポンスが上限値を超えた場合は、送信できるまで残りのリクエストの処理と受信を止めます。
+     * 送信して上限値を下回った場合は、残りのリクエストを続けて処理します。
+     */
+    private void process(Connection connection) throws IOException {
+      ByteBuffer in = connection.in;
+      ByteBuffer out;
+      do {
+        in.flip();
+        while (in.remaining() >= NumatrixServerProtocol.REQUEST_LENGTH
+            && connection.out.position() < OUTPUT_LIMIT) {
+          handle(in, connection);
+        }
+        in.compact();
+        out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+      } while (out.position() < OUTPUT_LIMIT
+          && in.position() >= NumatrixServerProtocol.REQUEST_LENGTH);
+      int ops = 0;
+      if (out.position() > 0) {
+        ops |= SelectionKey.OP_WRITE;
+      }
+      if (out.position() < OUTPUT_LIMIT && in.hasRemaining()) {
+        ops |= SelectionKey.OP_READ;
+      }
+      connection.key.interestOps(ops);
+    }
+
+    /**
+     * リクエストを1つ処理し、レスポンスを送信待ちのバッファに追加します.
+     */
+    private void handle(ByteBuffer in, Connection connection) {
+      int correlationId = in.getInt();
+      byte op = in.get();
+      int count = in.getInt();
+      int shardId = in.getInt();
+      int start = connection.out.position();
+      try {
+        if (op != NumatrixServerProtocol.OP_GENERATE && op != NumatrixServerProtocol.OP_RESERVE) {
+          throw new IllegalArgumentException("unknown op. " + op);
+        }
+        if (count <= 0 || count > NumatrixServerProtocol.MAX_COUNT) {
+          throw new IllegalArgumentException("count is out of range. " + count);
+        }
+        ByteBuffer out = connection.ensureCapacity(NumatrixServerProtocol.RESPONSE_HEADER_LENGTH
+            + (op == NumatrixServerProtocol.OP_GENERATE ? count * 8
+                : NumatrixServerProtocol.RANGE_LENGTH));
+        out.putInt(correlationId).put(NumatrixServerProtocol.STATUS_OK).putInt(0);
+        int remaining = count;
+        while (remaining > 0) {
+          NumatrixNumberRange range = shardId == NumatrixServerProtocol.DEFAULT_SHARD_ID
+              ? generator.reserve(remaining) : generator.reserve(remaining, shardId);
+          remaining -= range.getCount();
+          if (op == NumatrixServerProtocol.OP_GENERATE) {
+            long number = range.getStart();
+            for (int i = range.getCount(); i > 0; i--) {
+              out.putLong(number);
+              number += range.getStride();
+            }
+          } else {
+            out = connection.ensureCapacity(NumatrixServerProtocol.RANGE_LENGTH);
+            out.putLong(range.getStart()).putInt(range.getCount()).putLong(range.getStride());
+          }
+        }
+        out.putInt(start + 5,
+            out.position() - start - NumatrixServerProtocol.RESPONSE_HEADER_LENGTH);
+      } catch (NumatrixNumberGenerateException | RuntimeException e) {
+        connection.out.position(start);
+        byte[] message = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+        connection.ensureCapacity(NumatrixServerProtocol.RESPONSE_HEADER_LENGTH + message.length)
+            .putInt(correlationId).put(NumatrixServerProtocol.STATUS_ERROR).putInt(message.length)
+            .put(message);
+      }
+    }
+  }
+
+  /**
+   * 接続毎の受信と送信のバッファです.
+   */
+  private static final class Connection {
+
+    final SocketChannel channel;
+    final ByteBuffer in = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+    ByteBuffer out = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+    SelectionKey key;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * 送信待ちのバッファに指定されたバイト数を追加できるようにします.
+     */
+    ByteBuffer ensureCapacity(int length) {
+      if (out.remaining() < length) {
+        int capacity = out.capacity();
+        while (capacity - out.position() < length) {
+          capacity *= 2;
+        }
+        ByteBuffer expanded = ByteBuffer.allocate(capacity);
+        out.flip();
+        expanded.put(out);
+        out = expanded;
+      }
+      return out;
+    }
+
+    void close() {
+      if (key != null) {
+        key.cancel();
+      }
+      closeChannel(channel);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package numatrix.server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import numatrix.NumatrixNumberGenerator;
+import numatrix.NumatrixNumberGeneratorFactory;
+import numatrix.NumatrixNumberRange;
+import numatrix.NumatrixTickUnit;
+
+/**
+ * ローカルホストで{@link NumatrixServer}を起動し、複数の{@link NumatrixClient}から負荷をかけてスループットと遅延を出力します.
+ * <pre>
+ * java -cp numatrix-1.0.0.jar:target/numatrix-server-1.0.0.jar numatrix.server.NumatrixServerLoadGenerator \
+ *     -workers 4 -clients 16 -ids 4096 -seconds 10 -mode generate
+ * </pre>
+ * {@code mode}が{@code generate}の場合はクライアント毎に{@code ids}個の数値を生成し、{@code reserve}の場合は{@code ids}個の連続した番号の範囲を予約します。
+ * {@code ids}が{@link NumatrixServerProtocol#MAX_COUNT}を超える場合は、リクエストを分けてレスポンスを待たずに送信します。<br>
+ * 接続は1つのワーカースレッドで処理されるため、クライアント毎に受け取る数値は増加し続けます。増加しなかった場合は終了コード1で終了します。<br>
+ * 遅延は1回の呼び出しにかかった時間を2のべき乗のマイクロ秒に切り上げた値です。
+ */
+public class NumatrixServerLoadGenerator {
+
+  private static final String[][] DEFAULT_OPTIONS = {{"workers", "4"}, {"clients", "16"},
+      {"ids", "4096"}, {"seconds", "10"}, {"mode", "generate"}};
+
+  private NumatrixServerLoadGenerator() {
+  }
+
+  /**
+   * 負荷をかけるサーバーで使用する{@link NumatrixNumberGeneratorFactory}の実装です.<br>
+   * タイムスタンプはミリ秒単位の41ビットで、区分とインスタンス数の上限値はコンストラクタで指定します。
+   */
+  static class LoadGeneratorFactory extends NumatrixNumberGeneratorFactory {
+
+    private final int typeId;
+    private final int maxGeneratorCount;
+
+    LoadGeneratorFactory(int typeId, int maxGeneratorCount) {
+      this.typeId = typeId;
+      this.maxGeneratorCount = maxGeneratorCount;
+    }
+
+    @Override
+    protected int getTypeId() {
+      return typeId;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return 0;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 1;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return maxGeneratorCount;
+    }
+
+    @Override
+    protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+      return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          return 41;
+        }
+      };
+    }
+  }
+
+  /**
+   * サーバーを起動して負荷をかけ、結果を出力します.
+   *
+   * @param args {@code -名前 値}の組み合わせ
+   * @throws Exception 実行できない場合
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    int workers = Integer.parseInt(options.get("workers"));
+    int clients = Integer.parseInt(options.get("clients"));
+    final int ids = Integer.parseInt(options.get("ids"));
+    long seconds = Long.parseLong(options.get("seconds"));
+    final boolean reserve = options.get("mode").equals("reserve");
+    if (workers <= 0 || clients <= 0 || ids <= 0 || seconds <= 0) {
+      throw new IllegalArgumentException("options must be positive. " + options);
+    }
+    if (!reserve && !options.get("mode").equals("generate")) {
+      throw new IllegalArgumentException("mode must be generate or reserve. " + options);
+    }
+    if (reserve && ids > NumatrixServerProtocol.MAX_COUNT) {
+      throw new IllegalArgumentException(
+          "ids must be " + NumatrixServerProtocol.MAX_COUNT + " or less to reserve. " + ids);
+    }
+    System.out.println("workers=" + workers + ", clients=" + clients + ", ids=" + ids
+        + ", seconds=" + seconds + ", mode=" + options.get("mode"));
+
+    try (NumatrixServer server = new NumatrixServer(new LoadGeneratorFactory(1, workers),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), workers)) {
+      server.start();
+      final InetSocketAddress address = server.getLocalAddress();
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+      final AtomicLong issued = new AtomicLong();
+      final AtomicLong calls = new AtomicLong();
+      final AtomicLong disorders = new AtomicLong();
+      final long[][] histograms = new long[clients][64];
+      final Throwable[] failures = new Throwable[clients];
+      Thread[] threads = new Thread[clients];
+      long start = System.nanoTime();
+      for (int i = 0; i < clients; i++) {
+        final int index = i;
+        threads[i] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try (NumatrixClient client = new NumatrixClient(address)) {
+              long[] numbers = new long[ids];
+              long last = Long.MIN_VALUE;
+              long count = 0;
+              long callCount = 0;
+              while (System.nanoTime() < deadline) {
+                long begin = System.nanoTime();
+                long first;
+                long end;
+                if (reserve) {
+                  List<NumatrixNumberRange> ranges = client.reserve(ids);
+                  first = ranges.get(0).getStart();
+                  NumatrixNumberRange tail = ranges.get(ranges.size() - 1);
+                  end = tail.get(tail.getCount() - 1);
+                } else {
+                  client.generate(numbers, 0, ids);
+                  first = numbers[0];
+                  end = numbers[ids - 1];
+                }
+                long micros = (System.nanoTime() - begin) / 1000L;
+                histograms[index][64 - Long.numberOfLeadingZeros(micros)]++;
+                if (first <= last || end < first) {
+                  disorders.incrementAndGet();
+                }
+                last = end;
+                count += ids;
+                callCount++;
+              }
+              issued.addAndGet(count);
+              calls.addAndGet(callCount);
+            } catch (Throwable e) {
+              failures[index] = e;
+            }
+          }
+        }, "numatrix-load-" + i);
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      long elapsedNanos = System.nanoTime() - start;
+      for (Throwable failure : failures) {
+        if (failure != null) {
+          throw new IllegalStateException("client failed.", failure);
+        }
+      }
+      long[] histogram = new long[64];
+      for (long[] clientHistogram : histograms) {
+        for (int i = 0; i < histogram.length; i++) {
+          histogram[i] += clientHistogram[i];
+        }
+      }
+      double elapsedSeconds = elapsedNanos / 1e9;
+      System.out.printf("ids=%d, calls=%d, %.0f ids/s, %.0f calls/s%n", issued.get(),
+          calls.get(), issued.get() / elapsedSeconds, calls.get() / elapsedSeconds);
+      System.out.println("latency(us) p50<=" + percentile(histogram, 0.5) + ", p99<="
+          + percentile(histogram, 0.99) + ", p99.9<=" + percentile(histogram, 0.999)
+          + ", max<=" + percentile(histogram, 1.0));
+      System.out.println(disorders.get() == 0 ? "PASSED" : "FAILED: " + disorders.get()
+          + " calls returned numbers that did not increase.");
+      if (disorders.get() != 0) {
+        System.exit(1);
+      }
+    }
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String[] option : DEFAULT_OPTIONS) {
+      options.put(option[0], option[1]);
+    }
+    for (int i = 0; i < args.length; i += 2) {
+      String name = args[i].startsWith("-") ? args[i].substring(1) : args[i];
+      if (!options.containsKey(name) || i + 1 >= args.length) {
+        throw new IllegalArgumentException("unknown option: " + args[i] + ". options: "
+            + options.keySet());
+      }
+      options.put(name, args[i + 1]);
+    }
+    return options;
+  }
+
+  /**
+   * 指定された割合の呼び出しが収まる遅延の上限値を返します.
+   *
+   * @return 遅延の上限値（マイクロ秒）
+   */
+  private static long percentile(long[] histogram, double ratio) {
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    }
+    long threshold = (long) Math.ceil(total * ratio);
+    long count = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      count += histogram[i];
+      if (count >= threshold && count > 0) {
+        return i == 0 ? 0L : 1L << i;
+      }
+    }
+    return 0L;
+  }
+}
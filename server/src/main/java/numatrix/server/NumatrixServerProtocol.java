@@ -0,0 +1,79 @@
+package numatrix.server;
+
+/**
+ * {@link NumatrixServer}と{@link NumatrixClient}の間のバイナリプロトコルの定数です.<br>
+ * 数値はすべてビッグエンディアンです。Java以外のクライアントはこの形式で実装してください。<br>
+ * <br>
+ * リクエストは13バイトの固定長です。
+ * <pre>
+ * int32 correlationId  レスポンスにそのまま返されるID
+ * int8  op             {@link #OP_GENERATE}または{@link #OP_RESERVE}
+ * int32 count          数値の数（1～{@link #MAX_COUNT}）
+ * int32 shardId        シャードのID、インスタンスのシャードのIDを使う場合は{@link #DEFAULT_SHARD_ID}
+ * </pre>
+ * レスポンスは9バイトのヘッダと可変長のペイロードです。
+ * <pre>
+ * int32 correlationId  リクエストのID
+ * int8  status         {@link #STATUS_OK}または{@link #STATUS_ERROR}
+ * int32 length         ペイロードのバイト数
+ * </pre>
+ * ペイロードは次のとおりです。
+ * <ul>
+ * <li>{@link #OP_GENERATE}：{@code count}個のint64の数値。</li>
+ * <li>{@link #OP_RESERVE}：予約した範囲の並び。範囲はint64の最初の数値、int32の数値の数、int64の間隔の20バイトで、
+ * 数値の数の合計は{@code count}です。範囲内の数値は{@code start + index * stride}で計算できます。</li>
+ * <li>{@link #STATUS_ERROR}：UTF-8のエラーメッセージ。</li>
+ * </ul>
+ * クライアントはレスポンスを待たずに複数のリクエストを送信できます。サーバーは接続毎にリクエストを受信した順に処理し、同じ順でレスポンスを返します。
+ * エラーのレスポンスを返した後も接続は継続します。
+ */
+public final class NumatrixServerProtocol {
+
+  /**
+   * 数値を生成して返す操作です.
+   */
+  public static final byte OP_GENERATE = 1;
+
+  /**
+   * 連続した番号を予約して範囲を返す操作です.
+   */
+  public static final byte OP_RESERVE = 2;
+
+  /**
+   * 処理が成功したことを表すステータスです.
+   */
+  public static final byte STATUS_OK = 0;
+
+  /**
+   * 処理が失敗したことを表すステータスです.
+   */
+  public static final byte STATUS_ERROR = 1;
+
+  /**
+   * インスタンスのシャードのIDを使うことを表すシャードのIDです.
+   */
+  public static final int DEFAULT_SHARD_ID = -1;
+
+  /**
+   * 1つのリクエストで要求できる数値の最大数です.
+   */
+  public static final int MAX_COUNT = 65536;
+
+  /**
+   * リクエストのバイト数です.
+   */
+  public static final int REQUEST_LENGTH = 13;
+
+  /**
+   * レスポンスのヘッダのバイト数です.
+   */
+  public static final int RESPONSE_HEADER_LENGTH = 9;
+
+  /**
+   * {@link #OP_RESERVE}のレスポンスの範囲1つのバイト数です.
+   */
+  public static final int RANGE_LENGTH = 20;
+
+  private NumatrixServerProtocol() {
+  }
+}
@@ -0,0 +1,127 @@
+package numatrix.server;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import numatrix.NumatrixNumberGenerateException;
+import numatrix.NumatrixNumberRange;
+import org.junit.Test;
+
+public class NumatrixServerTest {
+
+  private static NumatrixServer startServer(int typeId, int maxGeneratorCount, int workerCount)
+      throws Exception {
+    NumatrixServer server = new NumatrixServer(
+        new NumatrixServerLoadGenerator.LoadGeneratorFactory(typeId, maxGeneratorCount),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), workerCount);
+    server.start();
+    return server;
+  }
+
+  @Test
+  public void 複数の接続から重複しない数値を取得するテスト() throws Exception {
+    try (NumatrixServer server = startServer(1, 2, 2);
+        NumatrixClient client1 = new NumatrixClient(server.getLocalAddress());
+        NumatrixClient client2 = new NumatrixClient(server.getLocalAddress())) {
+      Set<Long> numbers = new HashSet<>();
+      // MAX_COUNTを超えるためリクエストを分けて送信する
+      long[] dst = new long[NumatrixServerProtocol.MAX_COUNT * 2 + 10];
+      for (NumatrixClient client : new NumatrixClient[] {client1, client2}) {
+        client.generate(dst, 0, dst.length);
+        for (int i = 0; i < dst.length; i++) {
+          assertTrue(numbers.add(dst[i]));
+          if (i > 0) {
+            assertTrue(dst[i - 1] < dst[i]);
+          }
+        }
+        assertTrue(numbers.add(client.generate()));
+      }
+
+      List<NumatrixNumberRange> ranges = client1.reserve(1000);
+      int count = 0;
+      for (NumatrixNumberRange range : ranges) {
+        for (int i = 0; i < range.getCount(); i++) {
+          assertTrue(numbers.add(range.get(i)));
+        }
+        count += range.getCount();
+      }
+      assertThat(count, equalTo(1000));
+    }
+  }
+
+  @Test
+  public void エラーのレスポンスの後も接続を継続するテスト() throws Exception {
+    try (NumatrixServer server = startServer(2, 1, 1);
+        NumatrixClient client = new NumatrixClient(server.getLocalAddress())) {
+      try {
+        client.reserve(10, 1);
+        fail();
+      } catch (NumatrixNumberGenerateException e) {
+        assertThat(e.getMessage(), equalTo("shard id is out of range. 1"));
+      }
+      assertThat(client.reserve(10, 0).get(0).getCount(), equalTo(10));
+
+      // 不正なリクエストをまとめて送信し、受信した順にレスポンスを受け取る
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+          server.getLocalAddress().getPort())) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream requests = new DataOutputStream(bytes);
+        requests.writeInt(7);
+        requests.writeByte(9);
+        requests.writeInt(1);
+        requests.writeInt(NumatrixServerProtocol.DEFAULT_SHARD_ID);
+        requests.writeInt(8);
+        requests.writeByte(NumatrixServerProtocol.OP_GENERATE);
+        requests.writeInt(NumatrixServerProtocol.MAX_COUNT + 1);
+        requests.writeInt(NumatrixServerProtocol.DEFAULT_SHARD_ID);
+        requests.writeInt(9);
+        requests.writeByte(NumatrixServerProtocol.OP_GENERATE);
+        requests.writeInt(2);
+        requests.writeInt(NumatrixServerProtocol.DEFAULT_SHARD_ID);
+        assertThat(bytes.size(), equalTo(NumatrixServerProtocol.REQUEST_LENGTH * 3));
+        socket.getOutputStream().write(bytes.toByteArray());
+
+        DataInputStream responses = new DataInputStream(socket.getInputStream());
+        assertThat(readError(responses, 7), equalTo("unknown op. 9"));
+        assertThat(readError(responses, 8), equalTo("count is out of range. 65537"));
+        assertThat(responses.readInt(), equalTo(9));
+        assertThat(responses.readByte(), equalTo(NumatrixServerProtocol.STATUS_OK));
+        assertThat(responses.readInt(), equalTo(16));
+        assertTrue(responses.readLong() < responses.readLong());
+      }
+    }
+  }
+
+  private static String readError(DataInputStream responses, int correlationId)
+      throws Exception {
+    assertThat(responses.readInt(), equalTo(correlationId));
+    assertThat(responses.readByte(), equalTo(NumatrixServerProtocol.STATUS_ERROR));
+    byte[] message = new byte[responses.readInt()];
+    responses.readFully(message);
+    return new String(message, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void インスタンスを借りられない場合のテスト() throws Exception {
+    NumatrixServer server = new NumatrixServer(
+        new NumatrixServerLoadGenerator.LoadGeneratorFactory(3, 1),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+    try {
+      server.start();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), startsWith("generator instance count is over maximum."));
+    }
+    server.close();
+  }
+
+}
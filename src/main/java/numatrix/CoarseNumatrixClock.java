@@ -0,0 +1,59 @@
+package numatrix;
+
+import java.io.Closeable;
+
+/**
+ * バックグラウンドのスレッドが一定間隔で更新する現在時刻を返す時計です.<br>
+ * {@link #currentTimeMillis()}はフィールドを読むだけなので、{@link System#currentTimeMillis()}より安価です。
+ * その代わり、返される時刻は更新間隔の分だけ遅れることがあります。<br>
+ * 更新するスレッドはデーモンスレッドです。不要になった場合は{@link #close()}で停止してください。
+ * 停止した後は{@link System#currentTimeMillis()}を返します。
+ */
+public class CoarseNumatrixClock implements NumatrixClock, Closeable {
+
+  private final Thread ticker;
+  private volatile long now = System.currentTimeMillis();
+  private volatile boolean closed;
+
+  /**
+   * 指定された間隔で現在時刻を更新する時計を生成します.
+   *
+   * @param intervalMillis 現在時刻を更新する間隔（ミリ秒）
+   */
+  public CoarseNumatrixClock(final long intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("interval must be positive.");
+    }
+    ticker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!closed) {
+          now = System.currentTimeMillis();
+          try {
+            Thread.sleep(intervalMillis);
+          } catch (InterruptedException e) {
+            ;
+          }
+        }
+      }
+    }, "numatrix-coarse-clock");
+    ticker.setDaemon(true);
+    ticker.start();
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    return closed ? System.currentTimeMillis() : now;
+  }
+
+  /**
+   * 現在時刻を更新するスレッドを停止します.<br>
+   * 停止した後も時計を使用している{@link NumatrixNumberGenerator}がタイムスタンプの更新を待ち続けないよう、
+   * {@link #currentTimeMillis()}は最後に更新した時刻ではなく{@link System#currentTimeMillis()}を返します。
+   */
+  @Override
+  public void close() {
+    closed = true;
+    ticker.interrupt();
+  }
+}
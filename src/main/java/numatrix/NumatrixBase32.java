@@ -0,0 +1,327 @@
+package numatrix;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * 数値を固定長の文字列に変換する、CrockfordのBase32の符号化です.<br>
+ * 数値は符号なしの64ビットとして、上位ビットから5ビットずつ{@value #LENGTH}文字に変換されます。
+ * 先頭の文字は上位4ビットだけを表すため、{@code 0}から{@code F}のいずれかになります。
+ * 文字はASCIIの順に並んでいるため、変換した文字列を辞書順で比較すると、数値を符号なしで比較した場合と同じ順序になります。
+ * マイナス値を許可しない構成では、数値の大小関係と同じ順序です。<br>
+ * <br>
+ * 変換するメソッドは、呼び出し元が用意した{@code char[]}、{@code byte[]}、{@link ByteBuffer}、{@link StringBuilder}に直接書き込み、
+ * オブジェクトを生成しません。戻すメソッドも文字列を生成せずに数値を返します。
+ * 戻す場合は小文字も受け付け、{@code I}と{@code L}は{@code 1}、{@code O}は{@code 0}とみなします。
+ */
+public final class NumatrixBase32 {
+
+  /**
+   * 1つの数値を変換した文字数です.
+   */
+  public static final int LENGTH = 13;
+
+  private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+  private static final byte[] ASCII_ALPHABET = new byte[ALPHABET.length];
+  private static final byte[] DECODE = new byte[128];
+
+  static {
+    for (int i = 0; i < DECODE.length; i++) {
+      DECODE[i] = -1;
+    }
+    for (int i = 0; i < ALPHABET.length; i++) {
+      char c = ALPHABET[i];
+      ASCII_ALPHABET[i] = (byte) c;
+      DECODE[c] = (byte) i;
+      DECODE[Character.toLowerCase(c)] = (byte) i;
+    }
+    DECODE['I'] = DECODE['i'] = DECODE['L'] = DECODE['l'] = 1;
+    DECODE['O'] = DECODE['o'] = 0;
+  }
+
+  private NumatrixBase32() {
+  }
+
+  /**
+   * 数値を変換した文字列を返します.<br>
+   * 文字列を1つ生成します。生成したくない場合は配列やバッファに書き込むメソッドを使用してください。
+   *
+   * @param number 数値
+   * @return 変換した{@value #LENGTH}文字の文字列
+   */
+  public static String toString(long number) {
+    char[] chars = new char[LENGTH];
+    encode(number, chars, 0);
+    return new String(chars);
+  }
+
+  /**
+   * 数値を変換して指定された配列に書き込みます.
+   *
+   * @param number 数値
+   * @param dst 書き込む配列
+   * @param off 書き込みを開始する位置
+   * @return 書き込んだ最後の文字の次の位置
+   * @throws IndexOutOfBoundsException 指定された位置から{@value #LENGTH}文字を書き込めない場合
+   */
+  public static int encode(long number, char[] dst, int off) {
+    checkRange(dst.length, off, 1);
+    for (int i = off + LENGTH - 1; i >= off; i--) {
+      dst[i] = ALPHABET[(int) number & 31];
+      number >>>= 5;
+    }
+    return off + LENGTH;
+  }
+
+  /**
+   * 数値を変換してASCIIで指定された配列に書き込みます.
+   *
+   * @param number 数値
+   * @param dst 書き込む配列
+   * @param off 書き込みを開始する位置
+   * @return 書き込んだ最後の文字の次の位置
+   * @throws IndexOutOfBoundsException 指定された位置から{@value #LENGTH}文字を書き込めない場合
+   */
+  public static int encode(long number, byte[] dst, int off) {
+    checkRange(dst.length, off, 1);
+    for (int i = off + LENGTH - 1; i >= off; i--) {
+      dst[i] = ASCII_ALPHABET[(int) number & 31];
+      number >>>= 5;
+    }
+    return off + LENGTH;
+  }
+
+  /**
+   * 数値を変換してASCIIで指定されたバッファに書き込みます.<br>
+   * バッファの位置は{@value #LENGTH}だけ進みます。
+   *
+   * @param number 数値
+   * @param dst 書き込むバッファ
+   * @throws BufferOverflowException バッファの残りが{@value #LENGTH}より少ない場合。何も書き込みません
+   */
+  public static void encode(long number, ByteBuffer dst) {
+    if (dst.remaining() < LENGTH) {
+      throw new BufferOverflowException();
+    }
+    int position = dst.position();
+    for (int i = position + LENGTH - 1; i >= position; i--) {
+      dst.put(i, ASCII_ALPHABET[(int) number & 31]);
+      number >>>= 5;
+    }
+    dst.position(position + LENGTH);
+  }
+
+  /**
+   * 数値を変換して指定された{@link StringBuilder}に追加します.
+   *
+   * @param number 数値
+   * @param dst 追加する{@link StringBuilder}
+   * @return 指定された{@link StringBuilder}
+   */
+  public static StringBuilder append(long number, StringBuilder dst) {
+    for (int shift = LENGTH * 5 - 5; shift >= 0; shift -= 5) {
+      dst.append(ALPHABET[(int) (number >>> shift) & 31]);
+    }
+    return dst;
+  }
+
+  /**
+   * 指定された配列の範囲の数値を変換して、別の配列に続けて書き込みます.<br>
+   * 数値の間に区切り文字は入りません。
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst 書き込む配列
+   * @param dstOff 書き込みを開始する位置
+   * @param len 数値の数
+   * @return 書き込んだ最後の文字の次の位置
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public static int encode(long[] src, int srcOff, char[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, len, dst.length, dstOff);
+    for (int i = 0; i < len; i++) {
+      dstOff = encode(src[srcOff + i], dst, dstOff);
+    }
+    return dstOff;
+  }
+
+  /**
+   * 指定された配列の範囲の数値を変換して、ASCIIで別の配列に続けて書き込みます.<br>
+   * 数値の間に区切り文字は入りません。
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst 書き込む配列
+   * @param dstOff 書き込みを開始する位置
+   * @param len 数値の数
+   * @return 書き込んだ最後の文字の次の位置
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public static int encode(long[] src, int srcOff, byte[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, len, dst.length, dstOff);
+    for (int i = 0; i < len; i++) {
+      dstOff = encode(src[srcOff + i], dst, dstOff);
+    }
+    return dstOff;
+  }
+
+  /**
+   * バッファの残りの数値を変換して、ASCIIで別のバッファに続けて書き込みます.<br>
+   * 処理する数値の数は、数値のバッファの残りの要素数と、書き込むバッファに書き込める数値の数の小さい方です。
+   * 両方のバッファの位置は処理した分だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst 書き込むバッファ
+   */
+  public static void encode(LongBuffer src, ByteBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining() / LENGTH); i > 0; i--) {
+      encode(src.get(), dst);
+    }
+  }
+
+  /**
+   * 変換した文字列を数値に戻します.
+   *
+   * @param src 文字列
+   * @param off 文字列の開始位置
+   * @return 数値
+   * @throws IndexOutOfBoundsException 指定された位置から{@value #LENGTH}文字を読めない場合
+   * @throws NumberFormatException 変換した文字列ではない場合
+   */
+  public static long decode(CharSequence src, int off) {
+    checkRange(src.length(), off, 1);
+    long number = digit(src.charAt(off), true);
+    for (int i = off + 1; i < off + LENGTH; i++) {
+      number = (number << 5) | digit(src.charAt(i), false);
+    }
+    return number;
+  }
+
+  /**
+   * 指定された配列に書き込まれた文字列を数値に戻します.
+   *
+   * @param src 配列
+   * @param off 文字列の開始位置
+   * @return 数値
+   * @throws IndexOutOfBoundsException 指定された位置から{@value #LENGTH}文字を読めない場合
+   * @throws NumberFormatException 変換した文字列ではない場合
+   */
+  public static long decode(char[] src, int off) {
+    checkRange(src.length, off, 1);
+    long number = digit(src[off], true);
+    for (int i = off + 1; i < off + LENGTH; i++) {
+      number = (number << 5) | digit(src[i], false);
+    }
+    return number;
+  }
+
+  /**
+   * 指定された配列にASCIIで書き込まれた文字列を数値に戻します.
+   *
+   * @param src 配列
+   * @param off 文字列の開始位置
+   * @return 数値
+   * @throws IndexOutOfBoundsException 指定された位置から{@value #LENGTH}文字を読めない場合
+   * @throws NumberFormatException 変換した文字列ではない場合
+   */
+  public static long decode(byte[] src, int off) {
+    checkRange(src.length, off, 1);
+    long number = digit((char) (src[off] & 0xFF), true);
+    for (int i = off + 1; i < off + LENGTH; i++) {
+      number = (number << 5) | digit((char) (src[i] & 0xFF), false);
+    }
+    return number;
+  }
+
+  /**
+   * 指定されたバッファにASCIIで書き込まれた文字列を数値に戻します.<br>
+   * 成功した場合、バッファの位置は{@value #LENGTH}だけ進みます。
+   *
+   * @param src バッファ
+   * @return 数値
+   * @throws BufferUnderflowException バッファの残りが{@value #LENGTH}より少ない場合
+   * @throws NumberFormatException 変換した文字列ではない場合。バッファの位置は変わりません
+   */
+  public static long decode(ByteBuffer src) {
+    if (src.remaining() < LENGTH) {
+      throw new BufferUnderflowException();
+    }
+    int position = src.position();
+    long number = digit((char) (src.get(position) & 0xFF), true);
+    for (int i = position + 1; i < position + LENGTH; i++) {
+      number = (number << 5) | digit((char) (src.get(i) & 0xFF), false);
+    }
+    src.position(position + LENGTH);
+    return number;
+  }
+
+  /**
+   * 指定された配列に続けて書き込まれた文字列を、数値に戻して別の配列に格納します.
+   *
+   * @param src 文字列の配列
+   * @param srcOff 文字列の開始位置
+   * @param dst 数値を格納する配列
+   * @param dstOff 数値を格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   * @throws NumberFormatException 変換した文字列ではない場合
+   */
+  public static void decode(char[] src, int srcOff, long[] dst, int dstOff, int len) {
+    checkRange(dst.length, dstOff, len, src.length, srcOff);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = decode(src, srcOff + i * LENGTH);
+    }
+  }
+
+  /**
+   * 指定された配列にASCIIで続けて書き込まれた文字列を、数値に戻して別の配列に格納します.
+   *
+   * @param src 文字列の配列
+   * @param srcOff 文字列の開始位置
+   * @param dst 数値を格納する配列
+   * @param dstOff 数値を格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   * @throws NumberFormatException 変換した文字列ではない場合
+   */
+  public static void decode(byte[] src, int srcOff, long[] dst, int dstOff, int len) {
+    checkRange(dst.length, dstOff, len, src.length, srcOff);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = decode(src, srcOff + i * LENGTH);
+    }
+  }
+
+  /**
+   * 1文字が表す5ビットの値を返します.
+   *
+   * @param c 文字
+   * @param first 先頭の文字の場合は{@code true}
+   * @return 文字が表す値
+   * @throws NumberFormatException 文字が符号に含まれない場合、または先頭の文字が64ビットを超える値を表す場合
+   */
+  private static long digit(char c, boolean first) {
+    int value = c < DECODE.length ? DECODE[c] : -1;
+    if (value < 0 || (first && value > 15)) {
+      throw new NumberFormatException("invalid base32 character: " + c);
+    }
+    return value;
+  }
+
+  private static void checkRange(int length, int off, int count) {
+    if (off < 0 || count < 0 || count > (length - off) / LENGTH || off > length) {
+      throw new IndexOutOfBoundsException(
+          "offset: " + off + ", count: " + count + ", length: " + length);
+    }
+  }
+
+  private static void checkRange(int numbersLength, int numbersOff, int len, int charsLength,
+      int charsOff) {
+    if (numbersOff < 0 || len < 0 || numbersOff > numbersLength - len) {
+      throw new IndexOutOfBoundsException("number offset: " + numbersOff + ", length: " + len
+          + ", array length: " + numbersLength);
+    }
+    checkRange(charsLength, charsOff, len);
+  }
+}
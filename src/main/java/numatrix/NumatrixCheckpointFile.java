@@ -0,0 +1,87 @@
+package numatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link NumatrixNumberGenerator}インスタンス毎に予約済みの位置を記録するメモリマップファイルです.<br>
+ * 位置はタイムスタンプを上位ビット、連続した番号を下位ビットにまとめた{@code long}で、インスタンス毎に8バイトの枠に書き込みます。
+ * 書き込みはメモリへの書き込みと同じで、プロセスが異常終了してもOSが保持している限り失われません。<br>
+ * ファイルの先頭には識別子、枠の数、連続した番号のビット長を記録します。連続した番号のビット長が変わった場合は、
+ * 記録されたタイムスタンプの連続した番号をすべて予約済みとして読み替えます。
+ */
+final class NumatrixCheckpointFile {
+
+  private static final int MAGIC = 0x4E4D4350;
+  private static final int HEADER_SIZE = 16;
+  private static final int SLOT_SIZE = 8;
+
+  private final MappedByteBuffer buffer;
+
+  /**
+   * 指定されたファイルを開いてメモリに割り当てます.<br>
+   * ファイルが存在しない場合は作成します。
+   *
+   * @param file ファイル
+   * @param slotCount 枠の数
+   * @param seqNumBitLength 連続した番号のビット長
+   * @throws NumatrixNumberGenerateException ファイルを開けない場合、または他の用途のファイルの場合
+   */
+  NumatrixCheckpointFile(File file, int slotCount, int seqNumBitLength)
+      throws NumatrixNumberGenerateException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      int storedSlotCount = 0;
+      int storedSeqNumBitLength = seqNumBitLength;
+      if (raf.length() >= HEADER_SIZE) {
+        if (raf.readInt() != MAGIC) {
+          throw new NumatrixNumberGenerateException(
+              "checkpoint file is invalid. " + file.getAbsolutePath());
+        }
+        storedSlotCount = raf.readInt();
+        storedSeqNumBitLength = raf.readInt();
+      }
+      int mappedSlotCount = Math.max(slotCount, storedSlotCount);
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+          HEADER_SIZE + (long) mappedSlotCount * SLOT_SIZE);
+      if (storedSeqNumBitLength != seqNumBitLength) {
+        long maxSeqNum = (1L << seqNumBitLength) - 1;
+        for (int i = 0; i < storedSlotCount; i++) {
+          long position = read(i);
+          if (position != 0) {
+            write(i, ((position >>> storedSeqNumBitLength) << seqNumBitLength) | maxSeqNum);
+          }
+        }
+      }
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, mappedSlotCount);
+      buffer.putInt(8, seqNumBitLength);
+    } catch (IOException e) {
+      throw new NumatrixNumberGenerateException(
+          "failed to open checkpoint file. " + e.getMessage());
+    }
+  }
+
+  /**
+   * 指定された枠に記録された位置を返します.
+   *
+   * @param slot 枠
+   * @return 記録された位置、記録されていない場合は0
+   */
+  long read(int slot) {
+    return buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+  }
+
+  /**
+   * 指定された枠に位置を記録します.
+   *
+   * @param slot 枠
+   * @param position 位置
+   */
+  void write(int slot, long position) {
+    buffer.putLong(HEADER_SIZE + slot * SLOT_SIZE, position);
+  }
+
+}
@@ -0,0 +1,25 @@
+package numatrix;
+
+/**
+ * {@link NumatrixNumberGenerator}が数値を構成するタイムスタンプを作るための時計です.<br>
+ * 初期値では{@link #SYSTEM}が使われます。変更したい場合は{@link NumatrixNumberGenerator#getClock()}をオーバーライドしてください。
+ */
+public interface NumatrixClock {
+
+  /**
+   * {@link System#currentTimeMillis()}から現在時刻を返す時計です.
+   */
+  NumatrixClock SYSTEM = new NumatrixClock() {
+    @Override
+    public long currentTimeMillis() {
+      return System.currentTimeMillis();
+    }
+  };
+
+  /**
+   * 現在時刻を1970年1月1日0時(UTC)からのミリ秒で返します.
+   *
+   * @return 現在時刻
+   */
+  long currentTimeMillis();
+}
@@ -0,0 +1,29 @@
+package numatrix;
+
+/**
+ * 時計が過去に戻ったために数値を生成できない場合の例外です.<br>
+ * {@link NumatrixNumberGenerator#getClockRegressionPolicy()}が{@link NumatrixClockRegressionPolicy#FAIL}の場合に発生します。
+ */
+public class NumatrixClockRegressionException extends NumatrixNumberGenerateException {
+
+  private final long regressionMillis;
+
+  /**
+   * 時計が過去に戻った時間から例外メッセージを作成します.
+   *
+   * @param regressionMillis 時計が過去に戻った時間（ミリ秒）
+   */
+  public NumatrixClockRegressionException(long regressionMillis) {
+    super("clock moved backwards by " + regressionMillis + "ms.");
+    this.regressionMillis = regressionMillis;
+  }
+
+  /**
+   * 時計が過去に戻った時間を返します.
+   *
+   * @return 時計が過去に戻った時間（ミリ秒）
+   */
+  public long getRegressionMillis() {
+    return regressionMillis;
+  }
+}
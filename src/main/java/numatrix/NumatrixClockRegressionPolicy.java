@@ -0,0 +1,25 @@
+package numatrix;
+
+/**
+ * 時計が過去に戻った場合の{@link NumatrixNumberGenerator}の動作です.<br>
+ * どの動作でも、使用済みのタイムスタンプが再び使われることはありません。
+ * {@link NumatrixNumberGenerator#getClockRegressionPolicy()}をオーバーライドして変更します。
+ */
+public enum NumatrixClockRegressionPolicy {
+
+  /**
+   * 時計が最後に使用したタイムスタンプに追いつくまで待機します.
+   */
+  WAIT,
+
+  /**
+   * 時計が追いつくまで、最後に使用したタイムスタンプを1つずつ先に進めて数値の生成を続けます.<br>
+   * {@link NumatrixNumberGenerator#getMaxDriftMillis()}の制限は受けません。
+   */
+  BORROW,
+
+  /**
+   * {@link NumatrixClockRegressionException}を発生させます.
+   */
+  FAIL
+}
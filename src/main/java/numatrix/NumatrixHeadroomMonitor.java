@@ -0,0 +1,128 @@
+package numatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区分毎の計測値から、数値の構成の余裕がなくなる前に警告します.<br>
+ * {@link #check()}を呼ぶたびに、前回から次の状態になっていないかを確認します。
+ * <ul>
+ * <li>いずれかのインスタンスが連続した番号を使い切る間隔が短く、使用率が閾値以上になった。
+ * 使用率は、連続した番号をすべて使い切るまでにかかったタイムスタンプの間隔の逆数です。1の場合、次に使い切るとタイムスタンプの更新を待つ可能性があります。</li>
+ * <li>タイムスタンプの更新を待つために待機した。</li>
+ * <li>タイムスタンプが最大値を超えて数値を生成できなくなるまでの時間が、指定された時間より短くなった。</li>
+ * </ul>
+ * 計測値を使用するため、{@link NumatrixNumberGeneratorFactory#isMetricsEnabled()}が{@code true}を返すファクトリの
+ * {@link NumatrixNumberGeneratorFactory#getMetrics()}を指定してください。
+ * <pre>
+ * NumatrixHeadroomMonitor monitor = new NumatrixHeadroomMonitor(factory.getMetrics(), 0.5, TimeUnit.DAYS.toMillis(365));
+ * monitor.schedule(scheduler, 60000L, message -&gt; logger.warn(message));
+ * </pre>
+ */
+public final class NumatrixHeadroomMonitor {
+
+  /**
+   * 警告を受け取るリスナーです.
+   */
+  public interface Listener {
+
+    /**
+     * 警告を通知します.
+     *
+     * @param message 警告の内容
+     */
+    void onWarning(String message);
+  }
+
+  private final NumatrixNumberGeneratorMetrics metrics;
+  private final double utilizationThreshold;
+  private final long horizonMillis;
+  private long lastBlockedWaitCount;
+
+  /**
+   * 指定された計測値を監視します.
+   *
+   * @param metrics 監視する区分の計測値
+   * @param utilizationThreshold 警告する連続した番号の使用率。0より大きく1以下
+   * @param horizonMillis 数値を生成できなくなるまでの時間がこれより短くなった場合に警告する時間（ミリ秒）
+   * @throws IllegalArgumentException 使用率が範囲外の場合、または時間が負の場合
+   */
+  public NumatrixHeadroomMonitor(NumatrixNumberGeneratorMetrics metrics,
+      double utilizationThreshold, long horizonMillis) {
+    if (!(utilizationThreshold > 0 && utilizationThreshold <= 1) || horizonMillis < 0) {
+      throw new IllegalArgumentException("utilizationThreshold: " + utilizationThreshold
+          + ", horizonMillis: " + horizonMillis);
+    }
+    this.metrics = Objects.requireNonNull(metrics, "metrics is not enabled.");
+    this.utilizationThreshold = utilizationThreshold;
+    this.horizonMillis = horizonMillis;
+    this.lastBlockedWaitCount = metrics.getBlockedWaitCount();
+  }
+
+  /**
+   * 前回呼ばれてからの計測値を確認し、警告を返します.<br>
+   * インスタンスが1つも初期化されていない場合は何も返しません。
+   *
+   * @return 警告の内容、警告がない場合は空のリスト
+   */
+  public synchronized List<String> check() {
+    List<String> warnings = new ArrayList<>();
+    NumatrixNumberLayout layout = metrics.getLayout();
+    if (layout == null) {
+      return warnings;
+    }
+    int typeId = metrics.getTypeId();
+    long tickMillis = layout.getTickUnit().getMillis();
+    long capacity = (layout.getMaxSeqNum() + 1) * 1000L / tickMillis;
+    long ticks = metrics.takeMinRolloverTicks();
+    if (ticks != Long.MAX_VALUE && 1.0 / Math.max(1L, ticks) >= utilizationThreshold) {
+      warnings.add("typeId " + typeId + ": a generator used all " + (layout.getMaxSeqNum() + 1)
+          + " sequence numbers within " + ticks + " " + layout.getTickUnit()
+          + " (about " + capacity / Math.max(1L, ticks) + " ids/s of " + capacity
+          + " ids/s per generator). it will sleep when the rate grows.");
+    }
+    long blockedWaitCount = metrics.getBlockedWaitCount();
+    if (blockedWaitCount > lastBlockedWaitCount) {
+      warnings.add("typeId " + typeId + ": generators slept "
+          + (blockedWaitCount - lastBlockedWaitCount) + " times to wait for the next timestamp.");
+    }
+    lastBlockedWaitCount = blockedWaitCount;
+    long remainingMillis = metrics.getRemainingTimestampMillis();
+    if (remainingMillis >= 0 && remainingMillis < horizonMillis) {
+      warnings.add("typeId " + typeId + ": timestamp expires in " + remainingMillis + " ms at "
+          + layout.getExpireTime() + ".");
+    }
+    return warnings;
+  }
+
+  /**
+   * 指定されたスケジューラで定期的に{@link #check()}を呼び、警告をリスナーに通知します.
+   *
+   * @param scheduler 確認を実行するスケジューラ
+   * @param periodMillis 確認する間隔（ミリ秒）
+   * @param listener 警告を受け取るリスナー
+   * @return 定期的な確認を取り消すための{@link ScheduledFuture}
+   */
+  public ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, long periodMillis,
+      final Listener listener) {
+    Objects.requireNonNull(listener);
+    return scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        for (String warning : check()) {
+          listener.onWarning(warning);
+        }
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return "NumatrixHeadroomMonitor[typeId=" + metrics.getTypeId() + ", utilizationThreshold="
+        + utilizationThreshold + ", horizonMillis=" + horizonMillis + "]";
+  }
+}
@@ -0,0 +1,68 @@
+package numatrix;
+
+import java.io.File;
+
+/**
+ * 同じホストの複数のJVMから同時に使用できる{@link NumatrixNumberGenerator}です.<br>
+ * タイムスタンプと連続した番号をまとめた{@code long}を、{@code /dev/shm}などに置いたメモリマップファイル上でCASで更新します。
+ * 同じファイルを使用するすべてのJVMが1つのインスタンスのIDを共有するため、JVM毎にIDを割り当てる必要がありません。<br>
+ * 状態は1つの{@code long}だけで、CASで更新するため、数値の生成中にプロセスが異常終了しても他のプロセスは影響を受けません。
+ * ファイルはJVMを再起動しても残るため、再起動後は続きから数値を生成します。<br>
+ * 同じファイルを使用するすべてのJVMで、インスタンスのIDと数値の構成が同じでなければなりません。
+ * 異なる場合は初期化時に例外が発生します。また、すべてのJVMが同じ時計を読むように、同じホストで使用してください。<br>
+ * ファクトリからこのクラスのインスタンスを取得する場合は{@link NumatrixNumberGeneratorFactory#getHostSharedFile()}をオーバーライドしてください。
+ */
+public class NumatrixHostSharedNumberGenerator extends NumatrixSharedNumberGenerator {
+
+  private final File file;
+  private final int generatorId;
+  private NumatrixSharedMemory memory;
+
+  /**
+   * 指定されたIDとファイルで生成します.<br>
+   * ファイルは初期化時に開かれます。
+   *
+   * @param generatorId このインスタンスのID
+   * @param generatorIdBitLength このインスタンスのIDのビット長
+   * @param file 状態を共有するファイル
+   */
+  public NumatrixHostSharedNumberGenerator(int generatorId, int generatorIdBitLength, File file) {
+    super(generatorId, generatorIdBitLength);
+    this.file = file;
+    this.generatorId = generatorId;
+  }
+
+  /**
+   * 状態を共有するファイルを返します.
+   *
+   * @return 状態を共有するファイル
+   */
+  public final File getFile() {
+    return file;
+  }
+
+  @Override
+  long getStateValue() {
+    return memory.get();
+  }
+
+  @Override
+  boolean compareAndSetState(long expect, long update) {
+    return memory.compareAndSet(expect, update);
+  }
+
+  /**
+   * ファイルを開いて、状態を初期化します.<br>
+   * 他のJVMが既に数値を生成している場合は、その状態から続けます。
+   * 初めて使用されるファイルの場合だけ、最後に使用した位置とみなす位置で初期化します。
+   *
+   * @param initialPosition 最後に使用した位置とみなす位置
+   * @throws NumatrixNumberGenerateException ファイルを開けない場合、または異なる構成で使用されている場合
+   */
+  @Override
+  void initState(long initialPosition) throws NumatrixNumberGenerateException {
+    memory = new NumatrixSharedMemory(file, getLayout(), generatorId);
+    memory.compareAndSet(0L, initialPosition);
+  }
+
+}
@@ -0,0 +1,257 @@
+package numatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 共有するディレクトリのファイルをロックして、空いているJVMのIDを借りるクラスです.<br>
+ * IDは{@code 0}から順番に{@code <ID>.lease}ファイルの排他ロックを試し、最初にロックできたIDを使用します。
+ * ロックはプロセスが終了するとOSが解放するため、異常終了したプロセスのIDも解放されます。<br>
+ * IDを借りている間は、バックグラウンドのスレッドがファイルに現在時刻を定期的に書き込みます。
+ * 最後に書き込まれた時刻からタイムアウトするまでは、ロックが解放されていてもIDを再利用しません。
+ * 終了したプロセスが生成した数値と同じタイムスタンプの間に、同じIDで数値を生成することを防ぐためです。<br>
+ * <br>
+ * {@link #acquire(File, int)}で借りたIDはディレクトリ毎にプロセスが終了するまで保持され、同じディレクトリでは同じIDが返されます。
+ * ディレクトリはローカルのファイルシステムに置いてください。ファイルのロックが保証されないネットワークファイルシステムでは使用できません。
+ */
+public final class NumatrixJvmIdLease implements AutoCloseable {
+
+  /** タイムアウトの初期値です. */
+  public static final long DEFAULT_TIMEOUT_MILLIS = 10000L;
+
+  private static final String SUFFIX = ".lease";
+  private static final Map<String, NumatrixJvmIdLease> leaseMap = new HashMap<>();
+  private static final AtomicInteger threadNumber = new AtomicInteger();
+
+  private final File directory;
+  private final int jvmId;
+  private final long timeoutMillis;
+  private final FileChannel channel;
+  private final FileLock lock;
+  private final Thread heartbeat;
+  private volatile boolean closed;
+
+  /**
+   * 指定されたディレクトリで空いているJVMのIDを借ります.<br>
+   * 同じディレクトリで既に借りている場合は、そのIDを返します。タイムアウトは{@link #DEFAULT_TIMEOUT_MILLIS}です。
+   *
+   * @param directory ロックするファイルを置くディレクトリ
+   * @param maxJvmCount JVM数の上限値
+   * @return 借りたID
+   * @throws NumatrixNumberGenerateException 空いているIDがない場合、またはファイルを開けない場合
+   */
+  public static NumatrixJvmIdLease acquire(File directory, int maxJvmCount)
+      throws NumatrixNumberGenerateException {
+    return acquire(directory, maxJvmCount, DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * 指定されたディレクトリとタイムアウトで空いているJVMのIDを借ります.<br>
+   * 同じディレクトリで既に借りている場合は、そのIDを返します。
+   *
+   * @param directory ロックするファイルを置くディレクトリ
+   * @param maxJvmCount JVM数の上限値
+   * @param timeoutMillis 最後に時刻が書き込まれてからIDを再利用するまでのミリ秒
+   * @return 借りたID
+   * @throws NumatrixNumberGenerateException 空いているIDがない場合、ファイルを開けない場合、
+   *         または既に借りているIDが上限値以上の場合
+   */
+  public static NumatrixJvmIdLease acquire(File directory, int maxJvmCount, long timeoutMillis)
+      throws NumatrixNumberGenerateException {
+    String key;
+    try {
+      key = directory.getCanonicalPath();
+    } catch (IOException e) {
+      throw new NumatrixNumberGenerateException(
+          "failed to open JVM ID lease directory. " + e.getMessage());
+    }
+    synchronized (leaseMap) {
+      NumatrixJvmIdLease lease = leaseMap.get(key);
+      if (lease == null || lease.closed) {
+        lease = new NumatrixJvmIdLease(directory, maxJvmCount, timeoutMillis);
+        leaseMap.put(key, lease);
+      }
+      if (lease.jvmId >= maxJvmCount) {
+        throw new NumatrixNumberGenerateException(
+            "leased JVM ID is over maximum. " + lease.jvmId + " >= " + maxJvmCount);
+      }
+      return lease;
+    }
+  }
+
+  /**
+   * 指定されたディレクトリで空いているJVMのIDを借ります.<br>
+   * 既に借りているIDは考慮しません。
+   *
+   * @param directory ロックするファイルを置くディレクトリ
+   * @param maxJvmCount JVM数の上限値
+   * @param timeoutMillis 最後に時刻が書き込まれてからIDを再利用するまでのミリ秒
+   * @throws NumatrixNumberGenerateException 空いているIDがない場合、またはファイルを開けない場合
+   */
+  NumatrixJvmIdLease(File directory, int maxJvmCount, long timeoutMillis)
+      throws NumatrixNumberGenerateException {
+    if (timeoutMillis < 0) {
+      throw new IllegalArgumentException("timeoutMillis: " + timeoutMillis);
+    }
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new NumatrixNumberGenerateException(
+          "failed to create JVM ID lease directory. " + directory.getAbsolutePath());
+    }
+    this.directory = directory;
+    this.timeoutMillis = timeoutMillis;
+    for (int id = 0; id < maxJvmCount; id++) {
+      FileLock lock = tryLock(new File(directory, id + SUFFIX));
+      if (lock != null) {
+        this.jvmId = id;
+        this.channel = lock.channel();
+        this.lock = lock;
+        this.heartbeat = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            beat();
+          }
+        }, "numatrix-jvmid-heartbeat-" + threadNumber.incrementAndGet());
+        this.heartbeat.setDaemon(true);
+        this.heartbeat.start();
+        return;
+      }
+    }
+    throw new NumatrixNumberGenerateException(
+        "no JVM ID is available. " + directory.getAbsolutePath());
+  }
+
+  /**
+   * 指定されたファイルをロックして、タイムアウトしていれば現在時刻を書き込みます.<br>
+   * ロックできない場合、またはタイムアウトしていない場合はファイルを閉じます。
+   *
+   * @param file ファイル
+   * @return 借りた場合は保持したままのロック、借りられない場合は{@code null}
+   * @throws NumatrixNumberGenerateException ファイルを開けない場合
+   */
+  private FileLock tryLock(File file) throws NumatrixNumberGenerateException {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "rw");
+      FileChannel channel = raf.getChannel();
+      FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        // このJVMの他のインスタンスが借りている
+        lock = null;
+      }
+      if (lock == null) {
+        raf.close();
+        return null;
+      }
+      long now = System.currentTimeMillis();
+      long lastBeat = raf.length() >= 8 ? raf.readLong() : 0L;
+      if (lastBeat != 0 && now - lastBeat < timeoutMillis) {
+        raf.close();
+        return null;
+      }
+      write(channel, now);
+      return lock;
+    } catch (IOException e) {
+      if (raf != null) {
+        try {
+          raf.close();
+        } catch (IOException e2) {
+          // 無視
+        }
+      }
+      throw new NumatrixNumberGenerateException(
+          "failed to open JVM ID lease file. " + e.getMessage());
+    }
+  }
+
+  private static void write(FileChannel channel, long time) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.putLong(0, time);
+    channel.write(buffer, 0);
+  }
+
+  /**
+   * タイムアウトの4分の1毎に現在時刻をファイルに書き込みます.
+   */
+  private void beat() {
+    long interval = Math.max(1L, timeoutMillis / 4);
+    while (!closed) {
+      try {
+        Thread.sleep(interval);
+      } catch (InterruptedException e) {
+        continue;
+      }
+      if (closed) {
+        break;
+      }
+      try {
+        write(channel, System.currentTimeMillis());
+      } catch (IOException e) {
+        // ロックを保持している限りIDは他のプロセスに借りられないため、次の書き込みで再試行する
+      }
+    }
+  }
+
+  /**
+   * 借りたJVMのIDを返します.
+   *
+   * @return JVMのID
+   */
+  public int getJvmId() {
+    return jvmId;
+  }
+
+  /**
+   * ロックするファイルを置くディレクトリを返します.
+   *
+   * @return ディレクトリ
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * 最後に時刻が書き込まれてからIDを再利用するまでのミリ秒を返します.
+   *
+   * @return タイムアウトのミリ秒
+   */
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /**
+   * IDを返却します.<br>
+   * 時刻の書き込みを停止してロックを解放します。最後に書き込まれた時刻からタイムアウトするまで、IDは再利用されません。
+   * このIDで生成した{@link NumatrixNumberGenerator}インスタンスは、返却後に使用しないでください。
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    heartbeat.interrupt();
+    try {
+      heartbeat.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      write(channel, System.currentTimeMillis());
+      lock.release();
+      channel.close();
+    } catch (IOException e) {
+      // チャネルを閉じられない場合もプロセスの終了時に解放される
+    }
+  }
+
+}
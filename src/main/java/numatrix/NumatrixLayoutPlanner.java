@@ -0,0 +1,125 @@
+package numatrix;
+
+import java.util.Date;
+
+/**
+ * 必要な生成速度、インスタンス数、利用期間から数値の構成を求めます.<br>
+ * {@link NumatrixNumberGenerator#getTimestampBitLength()}、{@link NumatrixNumberGenerator#getTickUnit()}、
+ * {@link NumatrixNumberGenerator#isOutMinus()}、{@link NumatrixNumberGeneratorFactory#getMaxJvmCount()}、
+ * {@link NumatrixNumberGeneratorFactory#getMaxGeneratorCount()}を決める時に、数値を生成する前に構成を検証するために使用します。<br>
+ * <br>
+ * 構成は次の順に決めます。
+ * <ol>
+ * <li>インスタンスのIDのビット長は、ファクトリと同じくJVM数とJVM毎のスレッド数の積から求めます。</li>
+ * <li>タイムスタンプの単位毎に、基準となる時間から現在時刻に利用期間を足した時間までを表すタイムスタンプのビット長と、
+ * スレッド毎の生成速度をタイムスタンプの1単位で生成できる連続した番号のビット長を求めます。</li>
+ * <li>マイナス値を許可せずに収まる構成のうち、最も短いタイムスタンプの単位を選びます。単位が短いほど、連続した番号を使い切った場合の待機が短くなります。
+ * 収まらない場合だけマイナス値を許可します。</li>
+ * <li>残ったビットはすべて連続した番号に割り当てます。</li>
+ * </ol>
+ * 生成速度はインスタンス毎に一様であると仮定します。瞬間的に集中する場合は余裕を持たせた値を指定してください。
+ */
+public final class NumatrixLayoutPlanner {
+
+  private NumatrixLayoutPlanner() {
+  }
+
+  /**
+   * 初期値の基準となる時間で、シャードのIDを持たない構成を求めます.
+   *
+   * @param idsPerSecondPerThread スレッド毎に1秒間に生成する数値の数
+   * @param threadsPerJvm JVM毎のスレッド数。{@link NumatrixNumberGeneratorFactory#getMaxGeneratorCount()}になります
+   * @param jvmCount JVM数。{@link NumatrixNumberGeneratorFactory#getMaxJvmCount()}になります
+   * @param lifetimeMillis 現在時刻から数値を生成できる必要がある期間（ミリ秒）
+   * @return 条件を満たす数値の構成
+   * @throws NumatrixNumberGenerateException 64ビットに収まる構成がない場合。メッセージに必要なビット数の内訳を含みます
+   * @throws IllegalArgumentException 引数が0以下の場合
+   */
+  public static NumatrixNumberLayout plan(long idsPerSecondPerThread, int threadsPerJvm,
+      int jvmCount, long lifetimeMillis) throws NumatrixNumberGenerateException {
+    return plan(idsPerSecondPerThread, threadsPerJvm, jvmCount, lifetimeMillis, 0,
+        new NumatrixNumberGenerator(0, 1).getBaseTime());
+  }
+
+  /**
+   * 条件を満たす構成を求めます.
+   *
+   * @param idsPerSecondPerThread スレッド毎に1秒間に生成する数値の数
+   * @param threadsPerJvm JVM毎のスレッド数。{@link NumatrixNumberGeneratorFactory#getMaxGeneratorCount()}になります
+   * @param jvmCount JVM数。{@link NumatrixNumberGeneratorFactory#getMaxJvmCount()}になります
+   * @param lifetimeMillis 現在時刻から数値を生成できる必要がある期間（ミリ秒）
+   * @param shardBitLength シャードのIDのビット長
+   * @param baseTime タイムスタンプの基準となる時間
+   * @return 条件を満たす数値の構成
+   * @throws NumatrixNumberGenerateException 64ビットに収まる構成がない場合。メッセージに必要なビット数の内訳を含みます
+   * @throws IllegalArgumentException 生成速度、スレッド数、JVM数、期間が0以下の場合、
+   *         シャードのIDのビット長が範囲外の場合、またはインスタンス数が{@link Integer#MAX_VALUE}を超える場合
+   */
+  public static NumatrixNumberLayout plan(long idsPerSecondPerThread, int threadsPerJvm,
+      int jvmCount, long lifetimeMillis, int shardBitLength, Date baseTime)
+      throws NumatrixNumberGenerateException {
+    if (idsPerSecondPerThread <= 0 || threadsPerJvm <= 0 || jvmCount <= 0
+        || lifetimeMillis <= 0 || shardBitLength < 0 || shardBitLength > 31
+        || (long) threadsPerJvm * jvmCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("idsPerSecondPerThread: " + idsPerSecondPerThread
+          + ", threadsPerJvm: " + threadsPerJvm + ", jvmCount: " + jvmCount
+          + ", lifetimeMillis: " + lifetimeMillis + ", shardBitLength: " + shardBitLength);
+    }
+    long baseTimeMillis = baseTime.getTime();
+    int instanceIdBitLength =
+        NumatrixNumberGeneratorFactory.generatorIdBitLength(threadsPerJvm * jvmCount - 1);
+    long horizonMillis =
+        Math.max(0L, System.currentTimeMillis() - baseTimeMillis) + lifetimeMillis;
+    NumatrixTickUnit smallestTickUnit = null;
+    int smallestBitLength = Integer.MAX_VALUE;
+    for (boolean outMinus : new boolean[] {false, true}) {
+      int totalBitLength = outMinus ? 64 : 63;
+      for (NumatrixTickUnit tickUnit : NumatrixTickUnit.values()) {
+        int timestampBitLength = timestampBitLength(horizonMillis, tickUnit);
+        int seqNumBitLength = seqNumBitLength(idsPerSecondPerThread, tickUnit);
+        int bitLength = timestampBitLength + seqNumBitLength + shardBitLength + instanceIdBitLength;
+        if (bitLength <= totalBitLength) {
+          return new NumatrixNumberLayout(timestampBitLength,
+              totalBitLength - timestampBitLength - shardBitLength - instanceIdBitLength,
+              shardBitLength, instanceIdBitLength, threadsPerJvm, tickUnit, baseTimeMillis,
+              outMinus);
+        }
+        if (bitLength < smallestBitLength) {
+          smallestBitLength = bitLength;
+          smallestTickUnit = tickUnit;
+        }
+      }
+    }
+    throw new NumatrixNumberGenerateException("no layout fits in 64 bits. the smallest needs "
+        + smallestBitLength + " bits with " + smallestTickUnit + ": timestamp "
+        + timestampBitLength(horizonMillis, smallestTickUnit) + " bits for " + horizonMillis
+        + " ms, sequence " + seqNumBitLength(idsPerSecondPerThread, smallestTickUnit)
+        + " bits for " + idsPerSecondPerThread + " ids/s per thread, instance id "
+        + instanceIdBitLength + " bits for " + jvmCount + " JVMs x " + threadsPerJvm
+        + " threads, shard id " + shardBitLength + " bits.");
+  }
+
+  /**
+   * 指定された時間までを表すのに必要なタイムスタンプのビット長を返します.
+   */
+  private static int timestampBitLength(long horizonMillis, NumatrixTickUnit tickUnit) {
+    long ticks = (horizonMillis + tickUnit.getMillis() - 1) / tickUnit.getMillis();
+    return bitLength(ticks);
+  }
+
+  /**
+   * 指定された生成速度で、タイムスタンプの1単位の間に生成する数値の数を表すのに必要な連続した番号のビット長を返します.
+   */
+  private static int seqNumBitLength(long idsPerSecond, NumatrixTickUnit tickUnit) {
+    double idsPerTick = Math.ceil(idsPerSecond * (double) tickUnit.getMillis() / 1000.0);
+    return bitLength(idsPerTick >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) idsPerTick);
+  }
+
+  /**
+   * 指定された数の値を区別するのに必要なビット長を返します.<br>
+   * 最小で1ビットです。
+   */
+  private static int bitLength(long count) {
+    return Math.max(1, 64 - Long.numberOfLeadingZeros(count - 1));
+  }
+}
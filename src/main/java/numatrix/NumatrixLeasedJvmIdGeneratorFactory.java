@@ -0,0 +1,31 @@
+package numatrix;
+
+import java.io.File;
+
+/**
+ * JVMのIDを共有するディレクトリから自動的に借りる{@link NumatrixNumberGeneratorFactory}です.<br>
+ * {@link #getJvmId()}の代わりに{@link #getJvmIdLeaseDirectory()}を実装してください。
+ * {@link NumatrixJvmIdLease}がディレクトリのファイルをロックして、{@link #getMaxJvmCount()}未満の空いているIDを借ります。
+ * 借りたIDはプロセスが終了するまで保持されます。
+ */
+public abstract class NumatrixLeasedJvmIdGeneratorFactory extends NumatrixNumberGeneratorFactory {
+
+  /**
+   * JVMのIDを借りるディレクトリを返します.<br>
+   * ディレクトリは同じクラスを使用するすべてのJVMで共有するローカルのディレクトリで、区分毎に分けてください。
+   *
+   * @return JVMのIDを借りるディレクトリ
+   */
+  protected abstract File getJvmIdLeaseDirectory();
+
+  /**
+   * {@link #getJvmIdLeaseDirectory()}から借りたJVMのIDを返します.
+   *
+   * @return 借りたJVMのID
+   * @throws NumatrixNumberGenerateException 空いているIDがない場合、またはディレクトリのファイルを使用できない場合
+   */
+  @Override
+  protected final int getJvmId() throws NumatrixNumberGenerateException {
+    return NumatrixJvmIdLease.acquire(getJvmIdLeaseDirectory(), getMaxJvmCount()).getJvmId();
+  }
+}
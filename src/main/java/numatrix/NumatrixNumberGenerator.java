@@ -1,8 +1,20 @@
 package numatrix;
 
+import java.nio.LongBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * コンストラクタで与えられたこのインスタンスのIDごとに一意な数値を生成します.<br>
@@ -12,22 +24,60 @@ import java.util.Date;
  * このインスタンスのIDはコンストラクタで初期化します。
  * マイナス値を出力しない場合、先頭の1ビットは必ず0になります。マイナスの出力の可否は{@link #isOutMinus()}をオーバーライドして変更します。<br>
  * <br>
- * タイムスタンプは、{@link #getBaseTime()}から返される時間から経過した秒数です。<br>
+ * タイムスタンプは、{@link #getBaseTime()}から返される時間から経過した時間を{@link #getTickUnit()}の単位（初期値は秒）で表します。<br>
  * 連続した番号が最大値になった時に更新されます。<br>
- * この秒数が{@link #getTimestampBitLength()}で決められたビット長を超えた場合は、それ以降このインスタンスは使用できません。<br>
+ * この値が{@link #getTimestampBitLength()}で決められたビット長を超えた場合は、それ以降このインスタンスは使用できません。<br>
  * <br>
  * 連続した番号は0から始まります。最大値は、タイムスタンプとこのインスタンスのIDのビット長（マイナスを出力しない場合は先頭の1ビットも含む）に依存します。<br>
  * 最大値を大きくしたい場合、このインスタンスのIDを小さくするか、{@link #getTimestampBitLength()}をオーバーライドしてタイムスタンプのビット長を短くします。
  */
 public class NumatrixNumberGenerator {
 
+  private static final long DEFAULT_BASE_TIME;
+
+  /**
+   * 待機しない生成で、タイムスタンプの更新を待つ必要がある場合に投げられる例外です.<br>
+   * 待機が必要になるたびに生成しないように、1つのインスタンスをスタックトレースなしで使い回します。
+   */
+  private static final WouldBlockException WOULD_BLOCK = new WouldBlockException();
+
+  static {
+    try {
+      DEFAULT_BASE_TIME = new SimpleDateFormat("yyyyMMdd").parse("2017113").getTime();
+    } catch (ParseException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
   private final int instanceId;
   private final int instanceIdBitLength;
   private long maxTimestamp;
   private int seqNumAndUniqueueIdBitLength;
-  private int maxSeqNum = Integer.MIN_VALUE;
-  private int currentSeqNum = Integer.MAX_VALUE;
+  private int seqNumShift;
+  private long shardMask;
+  private long shardField;
+  private long maxSeqNum = Long.MIN_VALUE;
+  private long currentSeqNum = Long.MAX_VALUE;
   private long currentTimestamp;
+  private NumatrixClock clock;
+  private long baseTimeMillis;
+  private long tickMillis;
+  private NumatrixNumberLayout layout;
+  private int generatorCountPerJvm;
+  private long maxDriftTimestamp;
+  private NumatrixClockRegressionPolicy clockRegressionPolicy;
+  private final AtomicLong clockHighWaterMillis = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong clockRegressionCount = new AtomicLong();
+  private final AtomicLong maxClockRegressionMillis = new AtomicLong();
+  private volatile boolean clockRegressed;
+  private NumatrixNumberGeneratorMetrics metrics;
+  private NumatrixCheckpointFile checkpointFile;
+  private int checkpointSlot;
+  private int checkpointBlockSize;
+  private volatile long checkpointPosition = Long.MAX_VALUE;
+  private long checkpointSeqNumLimit = Long.MAX_VALUE;
+  private long initialPosition;
+  private RecyclePool<NumatrixNumberGenerator> cooperativePool;
 
   /**
    * 指定されたIDで生成します.
@@ -41,18 +91,141 @@ public class NumatrixNumberGenerator {
   }
 
   /**
-   * このインスタンスを初期化します.
+   * このインスタンスを初期化します.<br>
+   * 初期化済みの場合は何もしません。
    *
    * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
    */
-  private final void init() throws NumatrixNumberGenerateException {
-    maxTimestamp = (1L << getTimestampBitLength()) - 1;
-    int seqNumBitLength = (isOutMinus() ? 64 : 63) - instanceIdBitLength - getTimestampBitLength();
-    if (seqNumBitLength <= 0) {
+  final void init() throws NumatrixNumberGenerateException {
+    if (maxSeqNum >= 0) {
+      return;
+    }
+    int timestampBitLength = getTimestampBitLength();
+    int shardBitLength = getShardBitLength();
+    int seqNumBitLength = (isOutMinus() ? 64 : 63) - instanceIdBitLength - shardBitLength
+        - timestampBitLength;
+    if (timestampBitLength <= 0 || shardBitLength < 0 || shardBitLength > 31
+        || seqNumBitLength <= 0) {
       throw new NumatrixNumberGenerateException("number stracture size over 64bits.");
     }
-    seqNumAndUniqueueIdBitLength = instanceIdBitLength + seqNumBitLength;
-    maxSeqNum = (1 << seqNumBitLength) - 1;
+    int shardId = getShardId();
+    if (shardId < 0 || shardId >= 1L << shardBitLength) {
+      throw new NumatrixNumberGenerateException("shard id is out of range. " + shardId);
+    }
+    maxTimestamp = (1L << timestampBitLength) - 1;
+    seqNumShift = instanceIdBitLength + shardBitLength;
+    seqNumAndUniqueueIdBitLength = seqNumShift + seqNumBitLength;
+    shardMask = ((1L << shardBitLength) - 1) << instanceIdBitLength;
+    shardField = (long) shardId << instanceIdBitLength;
+    clock = getClock();
+    baseTimeMillis = getBaseTime().getTime();
+    NumatrixTickUnit tickUnit = getTickUnit();
+    tickMillis = tickUnit.getMillis();
+    layout = new NumatrixNumberLayout(timestampBitLength, seqNumBitLength, shardBitLength,
+        instanceIdBitLength,
+        generatorCountPerJvm > 0 ? generatorCountPerJvm
+            : (int) Math.min(1L << instanceIdBitLength, Integer.MAX_VALUE),
+        tickUnit, baseTimeMillis, isOutMinus());
+    maxDriftTimestamp = getMaxDriftMillis() / tickMillis;
+    clockRegressionPolicy = getClockRegressionPolicy();
+    if (metrics != null) {
+      metrics.init(layout);
+    }
+    long maxSeqNum = (1L << seqNumBitLength) - 1;
+    initialPosition = maxSeqNum;
+    if (checkpointFile != null) {
+      initialPosition = resumePosition(seqNumBitLength, maxSeqNum);
+      currentTimestamp = initialPosition >>> seqNumBitLength;
+      currentSeqNum = (initialPosition & maxSeqNum) + 1;
+      checkpointSeqNumLimit = checkpointSeqNumLimit(currentTimestamp, seqNumBitLength, maxSeqNum);
+    }
+    this.maxSeqNum = maxSeqNum;
+  }
+
+  /**
+   * チェックポイントに記録された位置から、最後に使用した位置とみなす位置を返します.<br>
+   * 位置はタイムスタンプを上位ビット、連続した番号を下位ビットにまとめた値です。
+   * 記録されたタイムスタンプが現在時刻のタイムスタンプより前の場合は、次の数値の生成時に現在時刻のタイムスタンプに更新します。
+   * そうでない場合は、記録された連続した番号の次から生成します。記録されたタイムスタンプの連続した番号を使い切っている場合は、
+   * 待機せずにタイムスタンプを1つ先に進めます。
+   *
+   * @param seqNumBitLength 連続した番号のビット長
+   * @param maxSeqNum 連続した番号の最大値
+   * @return 最後に使用した位置とみなす位置
+   * @throws NumatrixNumberGenerateException タイムスタンプが最大値を超えた場合
+   */
+  private long resumePosition(int seqNumBitLength, long maxSeqNum)
+      throws NumatrixNumberGenerateException {
+    long position = checkpointFile.read(checkpointSlot);
+    checkpointPosition = position;
+    if (position == 0) {
+      return maxSeqNum;
+    }
+    long timestamp = position >>> seqNumBitLength;
+    if (makeTimestamp() > timestamp) {
+      return position | maxSeqNum;
+    }
+    if ((position & maxSeqNum) != maxSeqNum) {
+      return position;
+    }
+    if (timestamp >= maxTimestamp) {
+      throw new NumatrixNumberGenerateException(
+          "timestamp element of the number structure is over maximum.");
+    }
+    return (timestamp + 1) << seqNumBitLength;
+  }
+
+  /**
+   * 指定されたタイムスタンプで、チェックポイントを記録せずに使用できる連続した番号の上限を返します.
+   *
+   * @param timestamp タイムスタンプ
+   * @param seqNumBitLength 連続した番号のビット長
+   * @param maxSeqNum 連続した番号の最大値
+   * @return チェックポイントを記録せずに使用できる連続した番号の上限（この値を含まない）
+   */
+  private long checkpointSeqNumLimit(long timestamp, int seqNumBitLength, long maxSeqNum) {
+    if (checkpointFile == null) {
+      return Long.MAX_VALUE;
+    }
+    long position = checkpointPosition;
+    return (position >>> seqNumBitLength) == timestamp ? (position & maxSeqNum) + 1 : 0;
+  }
+
+  /**
+   * 指定された位置までの予約をチェックポイントに記録します.<br>
+   * 記録は{@link NumatrixNumberGeneratorFactory#getCheckpointBlockSize()}の数だけ先の位置までまとめて行います。
+   * ただし、指定された位置のタイムスタンプを超えることはありません。
+   *
+   * @param position 予約された最後の位置
+   * @return 記録された位置
+   */
+  final synchronized long checkpoint(long position) {
+    long end = Math.min(position + checkpointBlockSize, position | maxSeqNum);
+    if (end > checkpointPosition) {
+      checkpointFile.write(checkpointSlot, end);
+      checkpointPosition = end;
+    }
+    return checkpointPosition;
+  }
+
+  /**
+   * チェックポイントに記録された位置を返します.<br>
+   * チェックポイントを使用しない場合は{@link Long#MAX_VALUE}を返します。
+   *
+   * @return チェックポイントに記録された位置
+   */
+  final long getCheckpointPosition() {
+    return checkpointPosition;
+  }
+
+  /**
+   * 初期化時に、最後に使用した位置とみなした位置を返します.<br>
+   * チェックポイントを使用しない場合は、タイムスタンプが0で連続した番号を使い切った位置です。
+   *
+   * @return 最後に使用した位置とみなした位置
+   */
+  final long getInitialPosition() {
+    return initialPosition;
   }
 
   /**
@@ -75,28 +248,248 @@ public class NumatrixNumberGenerator {
     return 32;
   }
 
+  /**
+   * 数値を構成するシャードのIDのビット長を返します.<br>
+   * シャードのIDは連続した番号とこのインスタンスのIDの間に置かれ、{@link NumatrixNumberLayout#shardIdOf(long)}で取り出せます。
+   * 初期値は0で、シャードのIDを持ちません。ビット長を増やすと、その分だけ連続した番号のビット長が短くなります。<br>
+   * 変更したい場合は、オーバーライドして0から31までの値を返してください。このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @return 数値を構成するシャードのIDのビット長
+   */
+  public int getShardBitLength() {
+    return 0;
+  }
+
+  /**
+   * シャードを指定せずに生成する数値のシャードのIDを返します.<br>
+   * 初期値は0です。インスタンス毎に変更したい場合は、オーバーライドして{@link #getShardBitLength()}の範囲の値を返してください。
+   * このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @return シャードのID
+   */
+  public int getShardId() {
+    return 0;
+  }
+
+  /**
+   * 数値を構成するタイムスタンプの1単位の長さを返します.<br>
+   * 初期値は{@link NumatrixTickUnit#SECONDS}です。
+   * 短くすると連続した番号がより頻繁に0に戻るため、スレッド毎の秒間最大出力数が増えますが、{@link #getTimestampBitLength()}で表すことのできる期間は短くなります。<br>
+   * 変更したい場合は、オーバーライドして戻り値を変更してください。このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @return 数値を構成するタイムスタンプの1単位の長さ
+   */
+  public NumatrixTickUnit getTickUnit() {
+    return NumatrixTickUnit.SECONDS;
+  }
+
+  /**
+   * 連続した番号を使い切った場合に、タイムスタンプを現在時刻より先に進めてよい最大の時間を返します.<br>
+   * 初期値は0で、連続した番号を使い切った場合はタイムスタンプが更新されるまで待機します。<br>
+   * 0より大きい値を返す場合、連続した番号を使い切ると待機せずにタイムスタンプを1つ先に進め、数値の生成を続けます。
+   * タイムスタンプと現在時刻の差がこの時間を超える場合だけ、差がこの時間に収まるまで待機します。
+   * 時間は{@link #getTickUnit()}の単位に切り捨てられます。現在の差は{@link #getDriftMillis()}で確認できます。<br>
+   * 変更したい場合は、オーバーライドして戻り値を変更してください。このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @return タイムスタンプを現在時刻より先に進めてよい最大の時間（ミリ秒）
+   */
+  public long getMaxDriftMillis() {
+    return 0L;
+  }
+
+  /**
+   * 時計が過去に戻った場合の動作を返します.<br>
+   * 初期値は{@link NumatrixClockRegressionPolicy#WAIT}です。
+   * 変更したい場合は、オーバーライドして戻り値を変更してください。このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @return 時計が過去に戻った場合の動作
+   */
+  public NumatrixClockRegressionPolicy getClockRegressionPolicy() {
+    return NumatrixClockRegressionPolicy.WAIT;
+  }
+
   /**
    * 数値を構成するタイムスタンプの基準となる時間を返します.<br>
-   * 初期値から変更したい場合は、オーバーライドして戻り値を変更してください。
+   * 初期値から変更したい場合は、オーバーライドして戻り値を変更してください。<br>
+   * このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
    *
    * @return 数値を構成するタイムスタンプの基準となる時間
    */
   public Date getBaseTime() {
-    try {
-      return new SimpleDateFormat("yyyyMMdd").parse("2017113");
-    } catch (ParseException e) {
-      throw new RuntimeException();
-    }
+    return new Date(DEFAULT_BASE_TIME);
+  }
+
+  /**
+   * 数値を構成するタイムスタンプを作るための時計を返します.<br>
+   * 初期値は{@link NumatrixClock#SYSTEM}です。{@link CoarseNumatrixClock}などに変更したい場合は、オーバーライドして戻り値を変更してください。<br>
+   * このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @return 数値を構成するタイムスタンプを作るための時計
+   */
+  public NumatrixClock getClock() {
+    return NumatrixClock.SYSTEM;
   }
 
   /**
    * 数値を構成するタイムスタンプを返します.<br>
-   * タイムスタンプは基準となる時間からの秒数で表します。
+   * タイムスタンプは基準となる時間からの経過時間を{@link #getTickUnit()}の単位で表します。
    *
    * @return 数値を構成するタイムスタンプ
    */
   private final long makeTimestamp() {
-    return (System.currentTimeMillis() - getBaseTime().getTime()) / 1000L;
+    return (clock.currentTimeMillis() - baseTimeMillis) / tickMillis;
+  }
+
+  /**
+   * 指定されたタイムスタンプから更新されたタイムスタンプを返します.<br>
+   * 現在時刻のタイムスタンプが指定されたタイムスタンプより大きくなるまで待機します。
+   * ただし、{@link #getMaxDriftMillis()}の範囲内であれば、待機せずに指定されたタイムスタンプの次のタイムスタンプを返します。
+   * 時計が過去に戻っている場合は{@link #getClockRegressionPolicy()}に従います。
+   *
+   * @param timestamp 使い切ったタイムスタンプ
+   * @param wait 待機する場合は{@code true}、待機せずに{@link WouldBlockException}を投げる場合は{@code false}
+   * @return 更新されたタイムスタンプ
+   * @throws NumatrixNumberGenerateException タイムスタンプが最大値を超えた場合
+   * @throws NumatrixClockRegressionException 時計が過去に戻り、{@link #getClockRegressionPolicy()}が
+   *         {@link NumatrixClockRegressionPolicy#FAIL}の場合
+   */
+  final long nextTimestamp(long timestamp, boolean wait) throws NumatrixNumberGenerateException {
+    long nextTimestamp = awaitNextTimestamp(timestamp, wait);
+    rollover(timestamp, nextTimestamp);
+    return nextTimestamp;
+  }
+
+  /**
+   * 指定されたタイムスタンプから更新されたタイムスタンプを返します.<br>
+   * {@link #nextTimestamp(long, boolean)}と同じですが、タイムスタンプを更新したことを{@link NumatrixNumberGeneratorMetrics}に記録しません。
+   * 更新したタイムスタンプを他のスレッドと競合して反映する場合は、反映に成功した後に{@link #rollover(long, long)}を呼んでください。
+   *
+   * @param timestamp 使い切ったタイムスタンプ
+   * @param wait 待機する場合は{@code true}、待機せずに{@link WouldBlockException}を投げる場合は{@code false}
+   * @return 更新されたタイムスタンプ
+   * @throws NumatrixNumberGenerateException タイムスタンプが最大値を超えた場合
+   * @throws NumatrixClockRegressionException 時計が過去に戻り、{@link #getClockRegressionPolicy()}が
+   *         {@link NumatrixClockRegressionPolicy#FAIL}の場合
+   */
+  final long awaitNextTimestamp(long timestamp, boolean wait)
+      throws NumatrixNumberGenerateException {
+    long nextTimestamp;
+    long waitStartNanos = 0;
+    boolean waited = false;
+    for (;;) {
+      long millis = clock.currentTimeMillis();
+      long regressionMillis = checkClockRegression(millis);
+      nextTimestamp = (millis - baseTimeMillis) / tickMillis;
+      if (nextTimestamp > timestamp) {
+        break;
+      }
+      if (timestamp - nextTimestamp < maxDriftTimestamp) {
+        nextTimestamp = timestamp + 1;
+        break;
+      }
+      if (regressionMillis > 0) {
+        if (clockRegressionPolicy == NumatrixClockRegressionPolicy.BORROW) {
+          nextTimestamp = timestamp + 1;
+          break;
+        }
+        if (clockRegressionPolicy == NumatrixClockRegressionPolicy.FAIL) {
+          throw new NumatrixClockRegressionException(regressionMillis);
+        }
+      }
+      if (!wait) {
+        throw WOULD_BLOCK;
+      }
+      if (!waited && metrics != null) {
+        waitStartNanos = System.nanoTime();
+        waited = true;
+      }
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        ;
+      }
+    }
+    if (nextTimestamp > maxTimestamp) {
+      throw new NumatrixNumberGenerateException(
+          "timestamp element of the number structure is over maximum.");
+    }
+    if (waited) {
+      metrics.blockedWait(System.nanoTime() - waitStartNanos);
+    }
+    return nextTimestamp;
+  }
+
+  /**
+   * タイムスタンプを更新したことを{@link NumatrixNumberGeneratorMetrics}に記録します.
+   *
+   * @param timestamp 使い切ったタイムスタンプ
+   * @param nextTimestamp 更新されたタイムスタンプ
+   */
+  final void rollover(long timestamp, long nextTimestamp) {
+    if (metrics != null) {
+      metrics.rollover(timestamp, nextTimestamp);
+    }
+  }
+
+  /**
+   * 時計から読んだ時刻が、これまでに読んだ最も新しい時刻より過去に戻っていないかを確認します.<br>
+   * 過去に戻っている場合は、その回数と最大の時間を記録します。
+   *
+   * @param millis 時計から読んだ時刻
+   * @return これまでに読んだ最も新しい時刻から戻った時間（ミリ秒）、戻っていない場合は0
+   */
+  private long checkClockRegression(long millis) {
+    long highWaterMillis = clockHighWaterMillis.get();
+    if (millis >= highWaterMillis) {
+      if (millis > highWaterMillis) {
+        clockHighWaterMillis.compareAndSet(highWaterMillis, millis);
+      }
+      clockRegressed = false;
+      return 0L;
+    }
+    long regressionMillis = highWaterMillis - millis;
+    if (!clockRegressed) {
+      clockRegressed = true;
+      clockRegressionCount.incrementAndGet();
+    }
+    long maxRegressionMillis;
+    while (regressionMillis > (maxRegressionMillis = maxClockRegressionMillis.get())) {
+      if (maxClockRegressionMillis.compareAndSet(maxRegressionMillis, regressionMillis)) {
+        break;
+      }
+    }
+    return regressionMillis;
+  }
+
+  /**
+   * タイムスタンプと連続した番号から数値を構成します.
+   *
+   * @param timestamp タイムスタンプ
+   * @param seqNum 連続した番号
+   * @return 構成された数値
+   */
+  final long compose(long timestamp, long seqNum) {
+    long timestampFild = timestamp << seqNumAndUniqueueIdBitLength;
+    long seqNumFild = seqNum << seqNumShift;
+    return timestampFild | seqNumFild | shardField | (long) instanceId;
+  }
+
+  /**
+   * 連続した番号のビット長を返します.
+   *
+   * @return 連続した番号のビット長
+   */
+  final int getSeqNumBitLength() {
+    return seqNumAndUniqueueIdBitLength - seqNumShift;
+  }
+
+  /**
+   * 連続した番号の最大値を返します.
+   *
+   * @return 連続した番号の最大値
+   */
+  final long getMaxSeqNum() {
+    return maxSeqNum;
   }
 
   /**
@@ -104,40 +497,556 @@ public class NumatrixNumberGenerator {
    *
    * @return 現在のタイムスタンプ
    */
-  public final long getCurrentTimestamp() {
+  public long getCurrentTimestamp() {
     return currentTimestamp;
   }
 
   /**
-   * 数値を生成します.
+   * 現在のタイムスタンプで残っている連続した番号の数を返します.<br>
+   * 0の場合、次に数値を生成する時にタイムスタンプを更新します。
+   *
+   * @return 現在のタイムスタンプで残っている連続した番号の数
+   */
+  public long getRemainingSeqNum() {
+    if (currentSeqNum > maxSeqNum) {
+      return 0L;
+    }
+    return maxSeqNum - currentSeqNum + 1;
+  }
+
+  /**
+   * 現在のタイムスタンプが現在時刻より先に進んでいる時間を返します.<br>
+   * {@link #getMaxDriftMillis()}によってタイムスタンプを先に進めていない場合は0を返します。
+   *
+   * @return 現在のタイムスタンプが現在時刻より先に進んでいる時間（ミリ秒）
+   */
+  public final long getDriftMillis() {
+    if (maxSeqNum < 0) {
+      return 0L;
+    }
+    return Math.max(0L, getCurrentTimestamp() - makeTimestamp()) * tickMillis;
+  }
+
+  /**
+   * 時計が過去に戻ったことを検出した回数を返します.<br>
+   * 時計はタイムスタンプを更新する時だけ読まれるため、その間に戻って追いついた場合は検出されません。
+   *
+   * @return 時計が過去に戻ったことを検出した回数
+   */
+  public final long getClockRegressionCount() {
+    return clockRegressionCount.get();
+  }
+
+  /**
+   * 検出した時計が過去に戻った時間の最大値を返します.
+   *
+   * @return 時計が過去に戻った時間の最大値（ミリ秒）
+   */
+  public final long getMaxClockRegressionMillis() {
+    return maxClockRegressionMillis.get();
+  }
+
+  /**
+   * このインスタンスが数値を生成できる期限を返します.<br>
+   * この時間以降はタイムスタンプが最大値を超えるため、数値を生成できません。
+   *
+   * @return このインスタンスが数値を生成できる期限
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  public final Date getExpireTime() throws NumatrixNumberGenerateException {
+    init();
+    return layout.getExpireTime();
+  }
+
+  /**
+   * このインスタンスが生成する数値の構成を返します.
+   *
+   * @return このインスタンスが生成する数値の構成
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  public final NumatrixNumberLayout getLayout() throws NumatrixNumberGenerateException {
+    init();
+    return layout;
+  }
+
+  /**
+   * JVM毎のインスタンス数の上限値を設定します.<br>
+   * {@link NumatrixNumberLayout#jvmIdOf(long)}で使用されます。初期化より前に設定してください。
+   *
+   * @param generatorCountPerJvm JVM毎のインスタンス数の上限値
+   */
+  final void setGeneratorCountPerJvm(int generatorCountPerJvm) {
+    this.generatorCountPerJvm = generatorCountPerJvm;
+  }
+
+  /**
+   * 計測値を集計する{@link NumatrixNumberGeneratorMetrics}を設定します.<br>
+   * 設定しない場合は計測しません。初期化より前に設定してください。
+   *
+   * @param metrics 計測値を集計する{@link NumatrixNumberGeneratorMetrics}
+   */
+  final void setMetrics(NumatrixNumberGeneratorMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * 連続した番号を使い切った場合に、使われていない他のインスタンスを借りるプールを設定します.<br>
+   * 設定しない場合は借りません。初期化より前に設定してください。
+   *
+   * @param cooperativePool 同じ区分のインスタンスのプール
+   */
+  final void setCooperativePool(RecyclePool<NumatrixNumberGenerator> cooperativePool) {
+    this.cooperativePool = cooperativePool;
+  }
+
+  /**
+   * 予約を記録するチェックポイントを設定します.<br>
+   * 設定しない場合は記録しません。初期化より前に設定してください。
+   *
+   * @param checkpointFile チェックポイントのファイル
+   * @param checkpointSlot このインスタンスの枠
+   * @param checkpointBlockSize まとめて記録する連続した番号の数
+   */
+  final void setCheckpoint(NumatrixCheckpointFile checkpointFile, int checkpointSlot,
+      int checkpointBlockSize) {
+    this.checkpointFile = checkpointFile;
+    this.checkpointSlot = checkpointSlot;
+    this.checkpointBlockSize = checkpointBlockSize;
+  }
+
+  /**
+   * 数値を生成します.<br>
+   * このインスタンスは{@link NumatrixNumberGeneratorFactory#getGenerator()}を呼んだスレッドだけが使用してください。
    *
    * @return 生成された数値
    * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
    */
   public final long generate() throws NumatrixNumberGenerateException {
+    long number = nextNumbers(1);
+    if (metrics != null) {
+      metrics.issued(1L);
+    }
+    return number;
+  }
+
+  /**
+   * 指定された配列の範囲に数値を生成します.<br>
+   * 数値は{@link #reserve(int)}で予約した範囲からまとめて生成されます。
+   *
+   * @param dst 生成された数値を格納する配列
+   * @param off 格納を開始する位置
+   * @param len 生成する数値の数
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public final void generate(long[] dst, int off, int len) throws NumatrixNumberGenerateException {
+    if (off < 0 || len < 0 || off > dst.length - len) {
+      throw new IndexOutOfBoundsException(
+          "offset: " + off + ", length: " + len + ", array length: " + dst.length);
+    }
+    int end = off + len;
+    while (off < end) {
+      int remaining = end - off;
+      long number = nextNumbers(remaining);
+      long stride = 1L << seqNumShift;
+      for (int i = countReserved(number, remaining); i > 0; i--) {
+        dst[off++] = number;
+        number += stride;
+      }
+    }
+    if (metrics != null) {
+      metrics.issued(len);
+    }
+  }
+
+  /**
+   * 指定されたバッファの残りの要素に数値を生成します.<br>
+   * バッファの位置は生成された数値の数だけ進みます。
+   *
+   * @param dst 生成された数値を格納するバッファ
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  public final void generate(LongBuffer dst) throws NumatrixNumberGenerateException {
+    int len = dst.remaining();
+    while (dst.hasRemaining()) {
+      int remaining = dst.remaining();
+      long number = nextNumbers(remaining);
+      long stride = 1L << seqNumShift;
+      for (int i = countReserved(number, remaining); i > 0; i--) {
+        dst.put(number);
+        number += stride;
+      }
+    }
+    if (metrics != null) {
+      metrics.issued(len);
+    }
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約し、その範囲を返します.<br>
+   * 予約は1度の更新で行われます。範囲はタイムスタンプの更新をまたがないため、現在のタイムスタンプで残っている連続した番号が指定された数より少ない場合は、
+   * 残っている数だけ予約します。<br>
+   * 予約した範囲の数値は{@link NumatrixNumberRange#get(int)}や{@code start + index * stride}で計算できます。
+   *
+   * @param count 予約する数値の最大数
+   * @return 予約された範囲
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   * @throws IllegalArgumentException 予約する数値の最大数が0以下の場合
+   */
+  public final NumatrixNumberRange reserve(int count) throws NumatrixNumberGenerateException {
+    if (count <= 0) {
+      throw new IllegalArgumentException("count must be positive.");
+    }
+    long number = nextNumbers(count);
+    int reserved = countReserved(number, count);
+    if (metrics != null) {
+      metrics.issued(reserved);
+    }
+    return new NumatrixNumberRange(number, reserved, 1L << seqNumShift);
+  }
+
+  /**
+   * 指定されたシャードのIDを持つ数値を生成します.<br>
+   * シャードのIDは数値毎に指定できます。連続した番号はシャードに関係なく進むため、数値はシャードをまたいでも重複しません。
+   *
+   * @param shardId シャードのID
+   * @return 生成された数値
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   * @throws IllegalArgumentException シャードのIDが{@link #getShardBitLength()}の範囲外の場合
+   */
+  public final long generate(int shardId) throws NumatrixNumberGenerateException {
+    long shard = checkShardId(shardId);
+    long number = (nextNumbers(1) & ~shardMask) | shard;
+    if (metrics != null) {
+      metrics.issued(1L);
+    }
+    return number;
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約し、指定されたシャードのIDを持つ範囲を返します.<br>
+   * 予約する範囲は{@link #reserve(int)}と同じです。
+   *
+   * @param count 予約する数値の最大数
+   * @param shardId シャードのID
+   * @return 予約された範囲
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   * @throws IllegalArgumentException 予約する数値の最大数が0以下の場合、
+   *         またはシャードのIDが{@link #getShardBitLength()}の範囲外の場合
+   */
+  public final NumatrixNumberRange reserve(int count, int shardId)
+      throws NumatrixNumberGenerateException {
+    if (count <= 0) {
+      throw new IllegalArgumentException("count must be positive.");
+    }
+    long shard = checkShardId(shardId);
+    long number = nextNumbers(count);
+    int reserved = countReserved(number, count);
+    if (metrics != null) {
+      metrics.issued(reserved);
+    }
+    return new NumatrixNumberRange((number & ~shardMask) | shard, reserved,
+        1L << seqNumShift);
+  }
+
+  /**
+   * シャードのIDが範囲内であることを確認し、数値に埋め込む値を返します.
+   *
+   * @param shardId シャードのID
+   * @return 数値のシャードのIDの部分
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   * @throws IllegalArgumentException シャードのIDが{@link #getShardBitLength()}の範囲外の場合
+   */
+  private long checkShardId(int shardId) throws NumatrixNumberGenerateException {
+    init();
+    if (shardId < 0 || shardId > shardMask >>> instanceIdBitLength) {
+      throw new IllegalArgumentException("shard id is out of range. " + shardId);
+    }
+    return (long) shardId << instanceIdBitLength;
+  }
+
+  /**
+   * 待機せずに、指定された配列の範囲に生成できるだけの数値を生成します.<br>
+   * 現在のタイムスタンプの連続した番号を使い切り、タイムスタンプの更新を待つ必要がある場合は、そこで生成をやめて生成した数を返します。
+   * イベントループのスレッドなど、待機できないスレッドから使用してください。
+   * 生成できなかった場合の戻り値は0で、例外のインスタンスも生成しません。
+   *
+   * @param dst 生成された数値を格納する配列
+   * @param off 格納を開始する位置
+   * @param len 生成する数値の最大数
+   * @return 生成された数値の数
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public final int tryGenerate(long[] dst, int off, int len)
+      throws NumatrixNumberGenerateException {
+    if (off < 0 || len < 0 || off > dst.length - len) {
+      throw new IndexOutOfBoundsException(
+          "offset: " + off + ", length: " + len + ", array length: " + dst.length);
+    }
+    int start = off;
+    int end = off + len;
+    try {
+      while (off < end) {
+        int remaining = end - off;
+        long number = nextNumbers(remaining, false);
+        long stride = 1L << seqNumShift;
+        for (int i = countReserved(number, remaining); i > 0; i--) {
+          dst[off++] = number;
+          number += stride;
+        }
+      }
+    } catch (WouldBlockException e) {
+      ;
+    }
+    int generated = off - start;
+    if (metrics != null && generated > 0) {
+      metrics.issued(generated);
+    }
+    return generated;
+  }
+
+  /**
+   * 待機せずに数値を生成し、生成された数値で完了する{@link CompletableFuture}を返します.<br>
+   * 呼んだスレッドで生成を試み、タイムスタンプの更新を待つ必要がある場合は、次のタイムスタンプになる時刻に指定されたスケジューラで生成をやり直します。
+   * スレッドを待機させないため、イベントループのスレッドから使用できます。
+   * 数値を生成できない場合、またはスケジューラが実行を拒否した場合は、その例外で完了します。<br>
+   * スレッドセーフでないインスタンスは、このインスタンスを使用するスレッドで実行するスケジューラ（例えばそのスレッドのイベントループ）を指定してください。
+   *
+   * @param scheduler 生成をやり直すスケジューラ
+   * @return 生成された数値で完了する{@link CompletableFuture}
+   */
+  public final CompletableFuture<Long> generateAsync(ScheduledExecutorService scheduler) {
+    Objects.requireNonNull(scheduler);
+    CompletableFuture<Long> future = new CompletableFuture<>();
+    completeAsync(future, scheduler);
+    return future;
+  }
+
+  /**
+   * 待機せずに数値を生成して指定された{@link CompletableFuture}を完了します.<br>
+   * タイムスタンプの更新を待つ必要がある場合は、次のタイムスタンプになる時刻にやり直します。
+   *
+   * @param future 完了する{@link CompletableFuture}
+   * @param scheduler 生成をやり直すスケジューラ
+   */
+  private void completeAsync(final CompletableFuture<Long> future,
+      final ScheduledExecutorService scheduler) {
+    if (future.isDone()) {
+      return;
+    }
+    try {
+      long number = nextNumbers(1, false);
+      if (metrics != null) {
+        metrics.issued(1L);
+      }
+      future.complete(number);
+      return;
+    } catch (WouldBlockException e) {
+      ;
+    } catch (NumatrixNumberGenerateException | RuntimeException e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    try {
+      scheduler.schedule(() -> completeAsync(future, scheduler), millisUntilNextTimestamp(),
+          TimeUnit.MILLISECONDS);
+    } catch (NumatrixNumberGenerateException | RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * 待機せずにタイムスタンプを更新できるようになるまでの時間を返します.<br>
+   * {@link #getMaxDriftMillis()}の範囲内であれば更新できるため、その分だけ短くなります。
+   *
+   * @return 待機せずにタイムスタンプを更新できるようになるまでの時間（ミリ秒）、最小で1
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  private long millisUntilNextTimestamp() throws NumatrixNumberGenerateException {
+    init();
+    long nextTimestamp = getCurrentTimestamp() + 1 - maxDriftTimestamp;
+    return Math.max(1L, baseTimeMillis + nextTimestamp * tickMillis - clock.currentTimeMillis());
+  }
+
+  /**
+   * 数値を返し続ける{@link LongStream}を返します.<br>
+   * {@link #stream(long)}に{@link Long#MAX_VALUE}を指定した場合と同じです。
+   *
+   * @return 数値を返し続ける{@link LongStream}
+   */
+  public final LongStream stream() {
+    return stream(Long.MAX_VALUE);
+  }
+
+  /**
+   * 指定された数の数値を返す{@link LongStream}を返します.<br>
+   * 数値は{@link #reserve(int)}でまとめて予約され、ボクシングせずに返されます。
+   * 並列ストリームの場合、スレッドセーフなインスタンスでは分割されたそれぞれが自分の範囲を予約します。
+   * スレッドセーフでないインスタンスは分割されず、1つのスレッドで生成します。<br>
+   * 数値を生成できない場合は{@link NumatrixUncheckedNumberGenerateException}が発生します。
+   * 途中で打ち切られた場合、予約済みで返されなかった数値は捨てられます。
+   *
+   * @param count 返す数値の数
+   * @return 指定された数の数値を返す{@link LongStream}
+   * @throws IllegalArgumentException 数値の数が負の場合
+   */
+  public final LongStream stream(long count) {
+    return StreamSupport.longStream(spliterator(count), false);
+  }
+
+  /**
+   * 指定された数の数値を返す{@link Spliterator.OfLong}を返します.<br>
+   * {@link #stream(long)}が使用するものと同じです。
+   *
+   * @param count 返す数値の数
+   * @return 指定された数の数値を返す{@link Spliterator.OfLong}
+   * @throws IllegalArgumentException 数値の数が負の場合
+   */
+  public final Spliterator.OfLong spliterator(long count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("count must not be negative.");
+    }
+    return new NumatrixNumberSpliterator(this, count);
+  }
+
+  /**
+   * 数値を返し続ける{@link PrimitiveIterator.OfLong}を返します.<br>
+   * 数値は{@link #reserve(int)}でまとめて予約され、ボクシングせずに返されます。
+   * 数値を生成できない場合は{@link NumatrixUncheckedNumberGenerateException}が発生します。
+   *
+   * @return 数値を返し続ける{@link PrimitiveIterator.OfLong}
+   */
+  public final PrimitiveIterator.OfLong iterator() {
+    return Spliterators.iterator(spliterator(Long.MAX_VALUE));
+  }
+
+  /**
+   * 最初に数値を生成する時に行う初期化を前もって行います.
+   *
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  void warmUp() throws NumatrixNumberGenerateException {
+    init();
+  }
+
+  /**
+   * 複数のスレッドから同時に使用できるかを返します.<br>
+   * {@link #stream(long)}の分割に使用されます。
+   *
+   * @return 複数のスレッドから同時に使用できる場合は{@code true}
+   */
+  boolean isThreadSafe() {
+    return false;
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約し、最初の数値を返します.<br>
+   * 現在のタイムスタンプの連続した番号を使い切っている場合は、タイムスタンプを更新してから予約します。
+   * 予約された数は{@link #countReserved(long, int)}で求めます。
+   *
+   * @param count 予約する数値の最大数
+   * @return 予約された最初の数値
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  final long nextNumbers(int count) throws NumatrixNumberGenerateException {
+    return nextNumbers(count, true);
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約し、最初の数値を返します.<br>
+   * 現在のタイムスタンプの連続した番号を使い切っている場合は、タイムスタンプを更新してから予約します。
+   * 待機しない場合、タイムスタンプの更新を待つ必要があれば何も予約せずに{@link WouldBlockException}を投げます。
+   *
+   * @param count 予約する数値の最大数
+   * @param wait タイムスタンプの更新を待つ場合は{@code true}
+   * @return 予約された最初の数値
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合、
+   *         または待機せずにタイムスタンプを更新できない場合
+   */
+  long nextNumbers(int count, boolean wait) throws NumatrixNumberGenerateException {
     long timestamp = currentTimestamp;
     if (currentSeqNum > maxSeqNum) {
-      if (maxSeqNum < 0) {
-        init();
-      }
-      currentSeqNum = 0;
-      while (timestamp == (currentTimestamp = makeTimestamp())) {
+      NumatrixNumberGenerator sibling = cooperativePool != null ? borrowSibling() : null;
+      if (sibling != null) {
         try {
-          Thread.sleep(1);
-        } catch (InterruptedException e) {
-          ;
+          return sibling.nextNumbers(count, wait);
+        } finally {
+          cooperativePool.giveBack(sibling);
         }
       }
-      if (currentTimestamp > maxTimestamp) {
-        throw new NumatrixNumberGenerateException(
-            "timestamp element of the number structure is over maximum.");
+      init();
+      timestamp = nextTimestamp(timestamp, wait);
+      currentTimestamp = timestamp;
+      currentSeqNum = 0;
+      checkpointSeqNumLimit = checkpointSeqNumLimit(timestamp, getSeqNumBitLength(), maxSeqNum);
+    }
+    long seqNum = currentSeqNum;
+    currentSeqNum = seqNum + Math.min(count, maxSeqNum - seqNum + 1);
+    if (currentSeqNum > checkpointSeqNumLimit) {
+      long position = checkpoint((timestamp << getSeqNumBitLength()) | (currentSeqNum - 1));
+      checkpointSeqNumLimit = (position & maxSeqNum) + 1;
+    }
+    return compose(timestamp, seqNum);
+  }
+
+  /**
+   * 連続した番号を使い切った時に、待機せずに数値を生成できる同じ区分の他のインスタンスをプールから借ります.<br>
+   * タイムスタンプを更新するために待機する必要がある場合だけ借ります。プールから取り出したインスタンスは他のスレッドから使用されないため、
+   * 借りている間はそのインスタンスのIDと連続した番号を重複せずに使用できます。
+   * 借りている間に別のスレッドがインスタンスを取得する場合は、{@link RecyclePool#get()}が返却を待つため、使用した後はすぐにプールに戻してください。<br>
+   * 現在のタイムスタンプの連続した番号が残っているか、待機せずにタイムスタンプを更新できるインスタンスを、最大{@code 8}個まで探します。
+   *
+   * @return 借りたインスタンス、借りられない場合は{@code null}
+   */
+  private NumatrixNumberGenerator borrowSibling() {
+    if (maxSeqNum < 0) {
+      return null;
+    }
+    long now = makeTimestamp();
+    if (now > currentTimestamp || currentTimestamp - now < maxDriftTimestamp) {
+      return null;
+    }
+    for (int i = 0; i < 8; i++) {
+      NumatrixNumberGenerator sibling = cooperativePool.borrow();
+      if (sibling == null) {
+        return null;
+      }
+      if (sibling.maxSeqNum >= 0
+          && (sibling.currentSeqNum <= sibling.maxSeqNum || sibling.currentTimestamp < now)) {
+        return sibling;
       }
-      timestamp = currentTimestamp;
+      cooperativePool.giveBack(sibling);
+    }
+    return null;
+  }
+
+  /**
+   * {@link #nextNumbers(int)}で予約された数を返します.
+   *
+   * @param number 予約された最初の数値
+   * @param count 予約する数値の最大数
+   * @return 予約された数
+   */
+  final int countReserved(long number, int count) {
+    long seqNum = (number >>> seqNumShift) & maxSeqNum;
+    return (int) Math.min(count, maxSeqNum - seqNum + 1);
+  }
+
+  /**
+   * 待機しない生成で、タイムスタンプの更新を待つ必要がある場合に投げられる例外です.<br>
+   * 呼び出し元に渡されることはありません。
+   */
+  private static final class WouldBlockException extends NumatrixNumberGenerateException {
+
+    WouldBlockException() {
+      super("timestamp is not updatable without waiting.");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
     }
-    int seqNum = currentSeqNum++;
-    long timestampFild = ((long) timestamp) << (seqNumAndUniqueueIdBitLength);
-    long seqNumFild = ((long) seqNum) << instanceIdBitLength;
-    return timestampFild | seqNumFild | (long) instanceId;
   }
 
 }
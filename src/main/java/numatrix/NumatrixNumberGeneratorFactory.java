@@ -1,24 +1,33 @@
 package numatrix;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * {@link #getTypeId()}の実装毎に一意な数値を生成する{@link NumatrixNumberGenerator}を生成する抽象クラスです.<br>
- * {@link NumatrixNumberGenerator}のインスタンスは{@link #getGenerator()}で取得できます。
+ * {@link NumatrixNumberGenerator}のインスタンスは{@link #getGenerator()}で取得できます。<br>
+ * <br>
+ * {@link #getTypeId()}以外の設定を返すメソッドは、区分毎に最初に{@link NumatrixNumberGenerator}インスタンスを取得した時に1度だけ呼ばれ、
+ * その結果は区分毎に保持されます。同じ区分の実装クラスのインスタンスを複数生成しても、設定は最初のインスタンスのものが使われます。
  *
  */
 public abstract class NumatrixNumberGeneratorFactory {
 
-  private static final Map<Integer, RecyclePool<NumatrixNumberGenerator>> generatorPoolMap =
-      new HashMap<>();
+  private static final ConcurrentMap<Integer, GeneratorType> generatorTypeMap =
+      new ConcurrentHashMap<>();
 
-  private static final Map<Integer, AtomicInteger> generatorNumberMap = new HashMap<>();
+  private volatile GeneratorType generatorType;
 
   /**
    * 実装クラスの区分を返します.<br>
-   * 区分は実装クラス毎に固定で一意でなければなりません。
+   * 区分は実装クラス毎に固定で一意でなければなりません。このメソッドはこのクラスのインスタンス毎に1度だけ呼ばれます。
    *
    * @return 区分
    */
@@ -26,11 +35,13 @@ public abstract class NumatrixNumberGeneratorFactory {
 
   /**
    * このクラスを使用するJVMのIDを返します.<br>
-   * JVMのIDは同じクラスを使用するJVM毎に一意でなければなりません。
+   * JVMのIDは同じクラスを使用するJVM毎に一意でなければなりません。<br>
+   * JVMのIDを共有するディレクトリから自動的に借りる場合は、{@link NumatrixLeasedJvmIdGeneratorFactory}を継承してください。
    *
    * @return このクラスを使用するJVMのID
+   * @throws NumatrixNumberGenerateException JVMのIDを決められない場合
    */
-  protected abstract int getJvmId();
+  protected abstract int getJvmId() throws NumatrixNumberGenerateException;
 
   /**
    * このクラスを使用するJVM数の上限値を返します.
@@ -59,25 +70,152 @@ public abstract class NumatrixNumberGeneratorFactory {
   }
 
   /**
-   * {@link NumatrixNumberGenerator}インスタンスを返します.
+   * スレッドごとのインスタンスの代わりに、複数のスレッドから同時に使用できるインスタンスを使用するかを返します.<br>
+   * {@code true}を返す場合、{@link #getGenerator()}はどのスレッドから呼ばれても区分毎に1つの{@link NumatrixSharedNumberGenerator}インスタンスを返します。
+   * このインスタンスはスレッド数にかかわらず{@link #getMaxGeneratorCount()}を1つだけ消費します。<br>
+   * 仮想スレッドなど、多数のスレッドから数値を生成する場合は、オーバーライドして戻り値を{@code true}に変更してください。
+   *
+   * @return 複数のスレッドから同時に使用できるインスタンスを使用する場合は{@code true}、そうでない場合は{@code false}
+   */
+  protected boolean isSharedGenerator() {
+    return false;
+  }
+
+  /**
+   * スレッドごとのインスタンスが、連続した番号を使い切った時に使われていない他のインスタンスを借りるかを返します.<br>
+   * {@code true}を返す場合、区分毎に最初に{@link NumatrixNumberGenerator}インスタンスを取得した時に{@link #getMaxGeneratorCount()}の数のインスタンスをすべて生成し、
+   * スレッドに割り当てられていないインスタンスをプールに置きます。連続した番号を使い切ったインスタンスは、タイムスタンプの更新を待つ代わりに、
+   * プールから連続した番号が残っているインスタンスを借りて、そのインスタンスのIDで数値を生成します。
+   * 借りている間は他のスレッドに割り当てられないため、数値は重複しません。<br>
+   * この場合、1つのスレッドが生成する数値は、同じタイムスタンプの間は増加するとは限りません。
+   * {@link #isSharedGenerator()}が{@code true}を返す場合、または{@link #getStripeCount()}が0より大きい値を返す場合は使用されません。<br>
+   * 少数のスレッドが多数の数値を生成する場合は、オーバーライドして戻り値を{@code true}に変更してください。
+   *
+   * @return 使われていない他のインスタンスを借りる場合は{@code true}、そうでない場合は{@code false}
+   */
+  protected boolean isCooperativeGenerator() {
+    return false;
+  }
+
+  /**
+   * {@link NumatrixSharedNumberGenerator}インスタンスを生成します.<br>
+   * {@link NumatrixSharedNumberGenerator}を継承したクラスを生成させたい場合、オーバーライドして戻り値を変更してください。
+   *
+   * @param generatorId {@link NumatrixSharedNumberGenerator}のインスタンスのID
+   * @param generatorIdBitLength {@link NumatrixSharedNumberGenerator}のインスタンスのIDのビット長
+   * @return {@link NumatrixSharedNumberGenerator}インスタンス
+   */
+  protected NumatrixSharedNumberGenerator makeSharedGenerator(int generatorId,
+      int generatorIdBitLength) {
+    return new NumatrixSharedNumberGenerator(generatorId, generatorIdBitLength);
+  }
+
+  /**
+   * 同じホストの複数のJVMで状態を共有するファイルを返します.<br>
+   * {@code null}以外を返す場合、{@link #getGenerator()}は区分毎に1つの{@link NumatrixHostSharedNumberGenerator}インスタンスを返します。
+   * このインスタンスはタイムスタンプと連続した番号をファイル上で更新するため、同じファイルを使用するすべてのJVMが1つのインスタンスのIDを共有します。<br>
+   * この場合、{@link #getJvmId()}と{@link #getMaxJvmCount()}はホスト毎のIDとホスト数の上限値として扱われ、
+   * {@link #getMaxGeneratorCount()}、{@link #isSharedGenerator()}、{@link #getStripeCount()}は使用されません。
+   * ファイルは区分とホスト毎に一意で、{@code /dev/shm}などメモリ上のファイルシステムに置くことを推奨します。<br>
+   * 同じホストの複数のJVMで共有したい場合は、オーバーライドして戻り値を変更してください。
+   *
+   * @return 状態を共有するファイル。共有しない場合は{@code null}
+   */
+  protected File getHostSharedFile() {
+    return null;
+  }
+
+  /**
+   * {@link NumatrixHostSharedNumberGenerator}インスタンスを生成します.<br>
+   * {@link NumatrixHostSharedNumberGenerator}を継承したクラスを生成させたい場合、オーバーライドして戻り値を変更してください。
+   *
+   * @param generatorId {@link NumatrixHostSharedNumberGenerator}のインスタンスのID
+   * @param generatorIdBitLength {@link NumatrixHostSharedNumberGenerator}のインスタンスのIDのビット長
+   * @param file 状態を共有するファイル
+   * @return {@link NumatrixHostSharedNumberGenerator}インスタンス
+   */
+  protected NumatrixHostSharedNumberGenerator makeHostSharedGenerator(int generatorId,
+      int generatorIdBitLength, File file) {
+    return new NumatrixHostSharedNumberGenerator(generatorId, generatorIdBitLength, file);
+  }
+
+  /**
+   * スレッドごとのインスタンスの代わりに、ストライプに分けたインスタンスを使用する場合のストライプの数を返します.<br>
+   * 0より大きい値を返す場合、{@link #getGenerator()}はどのスレッドから呼ばれても区分毎に1つの{@link NumatrixStripedNumberGenerator}インスタンスを返します。
+   * このインスタンスは指定された数の{@link NumatrixSharedNumberGenerator}をストライプとして束ね、スレッドは競合の少ないストライプを選んで数値を生成します。
+   * この場合、{@link #getMaxGeneratorCount()}と{@link #isSharedGenerator()}は使用されず、インスタンスのIDのビット長は{@link #getMaxJvmCount()}とストライプの数で決まります。<br>
+   * 多数のスレッドから数値を生成し、1つの共有インスタンスでは競合が多い場合は、オーバーライドしてCPU数程度の値を返してください。
+   * ストライプの数は数値の構成を決めるため、同じクラスを使用するすべてのJVMで同じ値でなければなりません。
+   * {@link Runtime#availableProcessors()}はJVM毎に異なる場合があるため、固定の値を返すことを推奨します。
+   *
+   * @return ストライプの数。ストライプに分けたインスタンスを使用しない場合は0
+   */
+  protected int getStripeCount() {
+    return 0;
+  }
+
+  /**
+   * {@link NumatrixNumberGenerator}インスタンスの計測値を集計するかを返します.<br>
+   * {@code true}を返す場合、区分毎に{@link NumatrixNumberGeneratorMetrics}を生成してJMXに登録します。
+   * 計測値は{@link #getMetrics()}でも取得できます。{@code false}を返す場合、数値の生成時に計測値を集計しません。<br>
+   * 計測値を集計したい場合は、オーバーライドして戻り値を{@code true}に変更してください。
+   *
+   * @return 計測値を集計する場合は{@code true}、そうでない場合は{@code false}
+   */
+  protected boolean isMetricsEnabled() {
+    return false;
+  }
+
+  /**
+   * {@link NumatrixNumberGenerator}インスタンスの予約済みの位置を記録するファイルを返します.<br>
+   * {@code null}以外を返す場合、各インスタンスは予約した連続した番号を{@link #getCheckpointBlockSize()}の数ずつまとめて、
+   * メモリマップファイルに記録します。JVMを再起動した場合、同じIDのインスタンスは記録された位置より後から数値を生成するため、
+   * 同じタイムスタンプの間に再起動しても待機せずに重複しない数値を生成できます。<br>
+   * ファイルは区分とJVMのID毎に一意で、再起動後も同じものを返してください。
+   * 記録はOSが保持している限りプロセスの異常終了では失われませんが、OSの停止では失われる場合があります。
+   * タイムスタンプの単位や基準となる時間を変更した場合は、ファイルを削除してください。<br>
+   * 記録したい場合は、オーバーライドして戻り値を変更してください。
+   *
+   * @return 予約済みの位置を記録するファイル。記録しない場合は{@code null}
+   */
+  protected File getCheckpointFile() {
+    return null;
+  }
+
+  /**
+   * {@link #getCheckpointFile()}にまとめて記録する連続した番号の数を返します.<br>
+   * 大きくするとファイルへの書き込みが減りますが、再起動した時に使われずに飛ばされる連続した番号が増えます。
+   * 変更したい場合は、オーバーライドして戻り値を変更してください。
+   *
+   * @return まとめて記録する連続した番号の数
+   */
+  protected int getCheckpointBlockSize() {
+    return 4096;
+  }
+
+  /**
+   * {@link NumatrixNumberGenerator}インスタンスを返します.<br>
+   * 同じスレッドから2回目以降に呼ばれた場合は、ロックせずにそのスレッドのインスタンスを返します。
    *
    * @return {@link NumatrixNumberGenerator}インスタンス
-   * @throws NumatrixNumberGenerateException {@link NumatrixNumberGenerator}インスタンスを生成できない場合
+   * @throws NumatrixNumberGenerateException {@link NumatrixNumberGenerator}インスタンスを生成できない場合、
+   *         または{@link NumatrixNumberGenerator}の数値の構成に必要なサイズが64ビットを超えた場合
    */
   public final NumatrixNumberGenerator getGenerator() throws NumatrixNumberGenerateException {
-    RecyclePool<NumatrixNumberGenerator> generatorPool;
-    synchronized (generatorPoolMap) {
-      if ((generatorPool = generatorPoolMap.get(getTypeId())) == null) {
-        generatorPool = new RecyclePool<NumatrixNumberGenerator>();
-        generatorPoolMap.put(getTypeId(), generatorPool);
-      }
+    GeneratorType type = getGeneratorType();
+    if (type.striped) {
+      return getStripedGenerator(type);
+    }
+    if (type.shared) {
+      return getSharedGenerator(type);
     }
+    RecyclePool<NumatrixNumberGenerator> generatorPool = type.generatorPool;
     NumatrixNumberGenerator generator = generatorPool.get();
     if (generator != null) {
       return generator;
     }
     synchronized (generatorPool) {
-      if (generatorPool.size() >= getMaxGeneratorCount()) {
+      if (generatorPool.size() >= type.maxGeneratorCount) {
         generatorPool.refresh();
         generator = generatorPool.get();
         if (generator != null) {
@@ -86,26 +224,398 @@ public abstract class NumatrixNumberGeneratorFactory {
         throw new NumatrixNumberGenerateException("generator instance count is over maximum. "
             + "please reduce threads that using this class.");
       }
-      AtomicInteger generatorNumber;
-      synchronized (generatorNumberMap) {
-        if ((generatorNumber = generatorNumberMap.get(getTypeId())) == null) {
-          generatorNumber = new AtomicInteger();
-          generatorNumberMap.put(getTypeId(), generatorNumber);
+      int generatorId = nextGeneratorId(type, 0);
+      generator = makeGenerator(generatorId, type.generatorIdBitLength);
+      initGenerator(type, generator, generatorId);
+      issueGeneratorIds(type, 1);
+      generatorPool.add(generator);
+      if (type.cooperative) {
+        addIdleGenerators(type, type.maxGeneratorCount);
+      }
+    }
+    return generator;
+  }
+
+  /**
+   * 区分の設定を読み込んで数値の構成を検証し、指定された数の{@link NumatrixNumberGenerator}インスタンスを事前に生成します.<br>
+   * 区分毎に最初に{@link #getGenerator()}を呼んだ時に行われる処理を、起動時などに前もって行います。
+   * 数値の構成が64ビットを超えるなど設定が不正な場合は、最初に数値を生成する時ではなくこのメソッドで例外が発生します。<br>
+   * 事前に生成したインスタンスはどのスレッドにも割り当てられず、{@link #getGenerator()}を呼んだスレッドに割り当てられます。
+   * 既に生成されているインスタンスも数に含め、{@link #getMaxGeneratorCount()}を超える分は生成しません。
+   * 複数のスレッドで共有するインスタンスやストライプに分けたインスタンスを使用する場合は、数にかかわらずそのインスタンスを生成して状態を初期化します。
+   *
+   * @param generatorCount 事前に生成するインスタンスの数
+   * @return 数値の構成
+   * @throws NumatrixNumberGenerateException 設定が不正な場合、または{@link NumatrixNumberGenerator}インスタンスを生成できない場合
+   * @throws IllegalArgumentException 事前に生成するインスタンスの数が負の場合
+   */
+  public final NumatrixNumberLayout warmUp(int generatorCount)
+      throws NumatrixNumberGenerateException {
+    if (generatorCount < 0) {
+      throw new IllegalArgumentException("generatorCount must not be negative.");
+    }
+    NumatrixNumberLayout layout = getLayout();
+    GeneratorType type = getGeneratorType();
+    if (type.striped) {
+      getStripedGenerator(type).warmUp();
+    } else if (type.shared) {
+      getSharedGenerator(type).warmUp();
+    } else {
+      synchronized (type.generatorPool) {
+        addIdleGenerators(type, type.cooperative ? type.maxGeneratorCount : generatorCount);
+      }
+    }
+    return layout;
+  }
+
+  /**
+   * どのスレッドにも割り当てない{@link NumatrixNumberGenerator}インスタンスを、プールのインスタンス数が指定された数になるまで生成します.<br>
+   * プールで同期して呼んでください。
+   *
+   * @param type 区分の設定
+   * @param generatorCount プールのインスタンス数
+   * @throws NumatrixNumberGenerateException {@link NumatrixNumberGenerator}インスタンスを生成できない場合
+   */
+  private void addIdleGenerators(GeneratorType type, int generatorCount)
+      throws NumatrixNumberGenerateException {
+    RecyclePool<NumatrixNumberGenerator> generatorPool = type.generatorPool;
+    int count = Math.min(generatorCount, type.maxGeneratorCount);
+    while (generatorPool.size() < count) {
+      int generatorId = nextGeneratorId(type, 0);
+      NumatrixNumberGenerator generator = makeGenerator(generatorId, type.generatorIdBitLength);
+      initGenerator(type, generator, generatorId);
+      issueGeneratorIds(type, 1);
+      generatorPool.addIdle(generator);
+    }
+  }
+
+  /**
+   * {@link NumatrixNumberGenerator}インスタンスを貸し出します.<br>
+   * 貸し出された{@link NumatrixNumberGenerator}インスタンスは{@link #getGenerator()}と同じく、これを呼んだスレッドに割り当てられます。
+   * 貸し出しを{@link NumatrixNumberGeneratorLease#close()}で返却すると、スレッドが消滅するのを待たずに別のスレッドに再利用されます。<br>
+   * {@link #isSharedGenerator()}が{@code true}を返す場合、または{@link #getStripeCount()}が0より大きい値を返す場合、返却しても何もしません。
+   *
+   * @return {@link NumatrixNumberGenerator}インスタンスの貸し出し
+   * @throws NumatrixNumberGenerateException {@link NumatrixNumberGenerator}インスタンスを生成できない場合、
+   *         または{@link NumatrixNumberGenerator}の数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  public final NumatrixNumberGeneratorLease leaseGenerator() throws NumatrixNumberGenerateException {
+    NumatrixNumberGenerator generator = getGenerator();
+    GeneratorType type = getGeneratorType();
+    if (type.shared || type.striped) {
+      return new NumatrixNumberGeneratorLease(generator, null);
+    }
+    return new NumatrixNumberGeneratorLease(generator, type.generatorPool.lease());
+  }
+
+  /**
+   * このクラスが生成する{@link NumatrixNumberGenerator}インスタンスの数値の構成を返します.<br>
+   * 数値の構成は区分毎に1度だけ求められます。{@link NumatrixNumberGenerator}インスタンスのIDは消費しません。
+   *
+   * @return 数値の構成
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  public final NumatrixNumberLayout getLayout() throws NumatrixNumberGenerateException {
+    GeneratorType type = getGeneratorType();
+    NumatrixNumberLayout layout = type.layout;
+    if (layout != null) {
+      return layout;
+    }
+    synchronized (type) {
+      if (type.layout == null) {
+        int generatorId = type.jvmId * type.maxGeneratorCount;
+        NumatrixNumberGenerator generator = type.shared || type.striped
+            ? makeSharedGenerator(type, generatorId)
+            : makeGenerator(generatorId, type.generatorIdBitLength);
+        generator.setGeneratorCountPerJvm(type.maxGeneratorCount);
+        type.layout = generator.getLayout();
+      }
+      return type.layout;
+    }
+  }
+
+  /**
+   * このクラスが生成する{@link NumatrixNumberGenerator}インスタンスの計測値を返します.
+   *
+   * @return 計測値。{@link #isMetricsEnabled()}が{@code false}を返す場合は{@code null}
+   * @throws NumatrixNumberGenerateException JVMのIDが不正な場合、JVMのIDを借りられない場合、または計測値をJMXに登録できない場合
+   */
+  public final NumatrixNumberGeneratorMetrics getMetrics() throws NumatrixNumberGenerateException {
+    return getGeneratorType().metrics;
+  }
+
+  /**
+   * このインスタンスの区分の設定を返します.<br>
+   * 区分の設定が登録されていない場合は、設定を返すメソッドを呼んで登録します。
+   * 複数のスレッドから同時に呼ばれても、設定を返すメソッドは区分毎に1度だけ呼ばれます。
+   *
+   * @return 区分の設定
+   * @throws NumatrixNumberGenerateException JVMのIDが不正な場合、JVMのIDを借りられない場合、または計測値をJMXに登録できない場合
+   */
+  private GeneratorType getGeneratorType() throws NumatrixNumberGenerateException {
+    GeneratorType type = generatorType;
+    if (type != null) {
+      return type;
+    }
+    int typeId = getTypeId();
+    type = generatorTypeMap.get(typeId);
+    if (type == null) {
+      synchronized (generatorTypeMap) {
+        type = generatorTypeMap.get(typeId);
+        if (type == null) {
+          type = new GeneratorType(typeId, this);
+          if (type.metrics != null) {
+            registerMetrics(type.metrics);
+          }
+          generatorTypeMap.put(typeId, type);
+        }
+      }
+    }
+    generatorType = type;
+    return type;
+  }
+
+  /**
+   * 計測値をJMXに登録します.<br>
+   * 同じ名前で登録されている場合は置き換えます。
+   *
+   * @param metrics 計測値
+   * @throws NumatrixNumberGenerateException 計測値をJMXに登録できない場合
+   */
+  private static void registerMetrics(NumatrixNumberGeneratorMetrics metrics)
+      throws NumatrixNumberGenerateException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = NumatrixNumberGeneratorMetrics.objectName(metrics.getTypeId());
+    try {
+      try {
+        server.registerMBean(metrics, name);
+      } catch (InstanceAlreadyExistsException e) {
+        server.unregisterMBean(name);
+        server.registerMBean(metrics, name);
+      }
+    } catch (JMException e) {
+      throw new NumatrixNumberGenerateException("failed to register metrics. " + e.getMessage());
+    }
+  }
+
+  /**
+   * 区分毎に1つだけ生成される{@link NumatrixSharedNumberGenerator}インスタンスを返します.
+   *
+   * @param type 区分の設定
+   * @return {@link NumatrixSharedNumberGenerator}インスタンス
+   * @throws NumatrixNumberGenerateException {@link NumatrixSharedNumberGenerator}インスタンスを生成できない場合、
+   *         または数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  private NumatrixNumberGenerator getSharedGenerator(GeneratorType type)
+      throws NumatrixNumberGenerateException {
+    NumatrixSharedNumberGenerator generator = type.sharedGenerator;
+    if (generator != null) {
+      return generator;
+    }
+    synchronized (type) {
+      if (type.sharedGenerator == null) {
+        int generatorId = nextGeneratorId(type, 0);
+        generator = makeSharedGenerator(type, generatorId);
+        initGenerator(type, generator, generatorId);
+        issueGeneratorIds(type, 1);
+        type.sharedGenerator = generator;
+      }
+      return type.sharedGenerator;
+    }
+  }
+
+  /**
+   * 区分毎に1つだけ生成される{@link NumatrixStripedNumberGenerator}インスタンスを返します.
+   *
+   * @param type 区分の設定
+   * @return {@link NumatrixStripedNumberGenerator}インスタンス
+   * @throws NumatrixNumberGenerateException {@link NumatrixSharedNumberGenerator}インスタンスを生成できない場合、
+   *         または数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  private NumatrixNumberGenerator getStripedGenerator(GeneratorType type)
+      throws NumatrixNumberGenerateException {
+    NumatrixStripedNumberGenerator generator = type.stripedGenerator;
+    if (generator != null) {
+      return generator;
+    }
+    synchronized (type) {
+      if (type.stripedGenerator == null) {
+        NumatrixSharedNumberGenerator[] stripes =
+            new NumatrixSharedNumberGenerator[type.maxGeneratorCount];
+        for (int i = 0; i < stripes.length; i++) {
+          int generatorId = nextGeneratorId(type, i);
+          stripes[i] = makeSharedGenerator(type, generatorId);
+          initGenerator(type, stripes[i], generatorId);
         }
+        issueGeneratorIds(type, stripes.length);
+        generator = new NumatrixStripedNumberGenerator(type.jvmId * type.maxGeneratorCount,
+            type.generatorIdBitLength, stripes);
+        generator.setGeneratorCountPerJvm(type.maxGeneratorCount);
+        generator.setMetrics(type.metrics);
+        generator.init();
+        type.stripedGenerator = generator;
+      }
+      return type.stripedGenerator;
+    }
+  }
+
+  /**
+   * 区分の設定に従って、{@link NumatrixSharedNumberGenerator}インスタンスを生成します.<br>
+   * 同じホストの複数のJVMで状態を共有する場合は、{@link NumatrixHostSharedNumberGenerator}インスタンスを生成します。
+   *
+   * @param type 区分の設定
+   * @param generatorId {@link NumatrixSharedNumberGenerator}のインスタンスのID
+   * @return {@link NumatrixSharedNumberGenerator}インスタンス
+   */
+  private NumatrixSharedNumberGenerator makeSharedGenerator(GeneratorType type, int generatorId) {
+    if (type.hostSharedFile != null) {
+      return makeHostSharedGenerator(generatorId, type.generatorIdBitLength, type.hostSharedFile);
+    }
+    return makeSharedGenerator(generatorId, type.generatorIdBitLength);
+  }
+
+  /**
+   * 生成した{@link NumatrixNumberGenerator}インスタンスに区分の設定を与えて初期化します.
+   *
+   * @param type 区分の設定
+   * @param generator 生成した{@link NumatrixNumberGenerator}インスタンス
+   * @param generatorId 生成した{@link NumatrixNumberGenerator}インスタンスのID
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合、
+   *         または予約済みの位置を記録するファイルを開けない場合
+   */
+  private void initGenerator(GeneratorType type, NumatrixNumberGenerator generator,
+      int generatorId) throws NumatrixNumberGenerateException {
+    generator.setGeneratorCountPerJvm(type.maxGeneratorCount);
+    generator.setMetrics(type.metrics);
+    if (type.cooperative) {
+      generator.setCooperativePool(type.generatorPool);
+    }
+    if (type.checkpoint != null) {
+      generator.setCheckpoint(getCheckpointFile(type),
+          generatorId - (type.jvmId * type.maxGeneratorCount), type.checkpointBlockSize);
+    }
+    generator.init();
+    if (type.metrics != null) {
+      type.metrics.addGenerator();
+    }
+  }
+
+  /**
+   * 区分毎に1つだけ開かれる、予約済みの位置を記録するファイルを返します.
+   *
+   * @param type 区分の設定
+   * @return 予約済みの位置を記録するファイル
+   * @throws NumatrixNumberGenerateException ファイルを開けない場合、または数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  private NumatrixCheckpointFile getCheckpointFile(GeneratorType type)
+      throws NumatrixNumberGenerateException {
+    NumatrixCheckpointFile checkpointFile = type.checkpointFile;
+    if (checkpointFile != null) {
+      return checkpointFile;
+    }
+    synchronized (type) {
+      if (type.checkpointFile == null) {
+        type.checkpointFile = new NumatrixCheckpointFile(type.checkpoint, type.maxGeneratorCount,
+            getLayout().getSeqNumBitLength());
       }
-      int maxGeneratorId = (getMaxJvmCount() * getMaxGeneratorCount()) - 1;
-      int generatorId = (getJvmId() * getMaxGeneratorCount()) + generatorNumber.getAndIncrement();
-      if (generatorId > maxGeneratorId) {
+      return type.checkpointFile;
+    }
+  }
+
+  /**
+   * 新しい{@link NumatrixNumberGenerator}インスタンスのIDを返します.<br>
+   * IDは発行済みのIDから{@code offset}だけ後のIDで、{@link #issueGeneratorIds(GeneratorType, int)}を呼ぶまで発行されません。
+   * インスタンスの初期化に失敗した場合にIDを消費しないよう、初期化に成功した後に発行してください。
+   * 区分のインスタンスを生成するロックで同期して呼んでください。
+   *
+   * @param type 区分の設定
+   * @param offset 発行済みのIDからの位置
+   * @return {@link NumatrixNumberGenerator}インスタンスのID
+   * @throws NumatrixNumberGenerateException インスタンス数の上限値を超える場合
+   */
+  private static int nextGeneratorId(GeneratorType type, int offset)
+      throws NumatrixNumberGenerateException {
+    int number = type.generatorNumber.get() + offset;
+    if (number >= type.maxGeneratorCount) {
+      throw new NumatrixNumberGenerateException("generator instance count is over maximum. "
+          + "please reduce threads that using this class.");
+    }
+    return (type.jvmId * type.maxGeneratorCount) + number;
+  }
+
+  /**
+   * {@link #nextGeneratorId(GeneratorType, int)}で返したIDを、指定された数だけ発行済みにします.
+   *
+   * @param type 区分の設定
+   * @param count 発行するIDの数
+   */
+  private static void issueGeneratorIds(GeneratorType type, int count) {
+    type.generatorNumber.addAndGet(count);
+  }
+
+  /**
+   * 指定されたIDの最大値を表すのに必要な、インスタンスのIDのビット長を返します.<br>
+   * 最小で1ビットです。
+   *
+   * @param maxGeneratorId インスタンスのIDの最大値
+   * @return インスタンスのIDのビット長
+   */
+  static int generatorIdBitLength(int maxGeneratorId) {
+    int generatorIdBitCount = 1;
+    while (0 < (maxGeneratorId >>> generatorIdBitCount)) {
+      generatorIdBitCount++;
+    }
+    return generatorIdBitCount;
+  }
+
+  /**
+   * 区分毎の設定です.<br>
+   * 設定を返すメソッドの結果と、区分毎の{@link NumatrixNumberGenerator}インスタンスを保持します。
+   * ストライプに分ける場合、JVM毎のインスタンス数の上限値はストライプの数です。
+   * 同じホストの複数のJVMで状態を共有する場合は1です。
+   */
+  private static final class GeneratorType {
+
+    final int jvmId;
+    final int maxGeneratorCount;
+    final int generatorIdBitLength;
+    final boolean shared;
+    final boolean striped;
+    final boolean cooperative;
+    final RecyclePool<NumatrixNumberGenerator> generatorPool = new RecyclePool<>();
+    final AtomicInteger generatorNumber = new AtomicInteger();
+    volatile NumatrixSharedNumberGenerator sharedGenerator;
+    volatile NumatrixStripedNumberGenerator stripedGenerator;
+    final NumatrixNumberGeneratorMetrics metrics;
+    final File checkpoint;
+    final File hostSharedFile;
+    final int checkpointBlockSize;
+    volatile NumatrixCheckpointFile checkpointFile;
+    volatile NumatrixNumberLayout layout;
+
+    GeneratorType(int typeId, NumatrixNumberGeneratorFactory factory)
+        throws NumatrixNumberGenerateException {
+      int jvmId = factory.getJvmId();
+      File hostSharedFile = factory.getHostSharedFile();
+      int stripeCount = hostSharedFile != null ? 0 : factory.getStripeCount();
+      int maxGeneratorCount = hostSharedFile != null ? 1
+          : stripeCount > 0 ? stripeCount : factory.getMaxGeneratorCount();
+      int maxGeneratorId = (factory.getMaxJvmCount() * maxGeneratorCount) - 1;
+      if (jvmId < 0 || (jvmId * maxGeneratorCount) > maxGeneratorId) {
         throw new NumatrixNumberGenerateException(
             "JVM ID is invalid. " + "please implement to lower getJmvId returns.");
       }
-      int generatorIdBitCount = 1;
-      while (0 < (maxGeneratorId >>> generatorIdBitCount)) {
-        generatorIdBitCount++;
-      }
-      generator = makeGenerator(generatorId, generatorIdBitCount);
-      generatorPool.add(generator);
+      this.jvmId = jvmId;
+      this.maxGeneratorCount = maxGeneratorCount;
+      this.generatorIdBitLength = generatorIdBitLength(maxGeneratorId);
+      this.shared = hostSharedFile != null || factory.isSharedGenerator();
+      this.striped = stripeCount > 0;
+      this.cooperative = !this.shared && !this.striped && factory.isCooperativeGenerator();
+      this.metrics = factory.isMetricsEnabled()
+          ? new NumatrixNumberGeneratorMetrics(typeId, maxGeneratorCount, generatorPool) : null;
+      this.checkpoint = factory.getCheckpointFile();
+      this.checkpointBlockSize = Math.max(1, factory.getCheckpointBlockSize());
+      this.hostSharedFile = hostSharedFile;
     }
-    return generator;
   }
 }
@@ -0,0 +1,49 @@
+package numatrix;
+
+/**
+ * {@link NumatrixNumberGeneratorFactory#leaseGenerator()}で取得した{@link NumatrixNumberGenerator}インスタンスの貸し出しです.<br>
+ * {@link #close()}で返却すると、{@link NumatrixNumberGenerator}インスタンスはすぐに別のスレッドに再利用されます。
+ * 返却した後は{@link NumatrixNumberGenerator}インスタンスを使用しないでください。
+ * <pre>
+ * try (NumatrixNumberGeneratorLease lease = factory.leaseGenerator()) {
+ *   long number = lease.getGenerator().generate();
+ * }
+ * </pre>
+ */
+public final class NumatrixNumberGeneratorLease implements AutoCloseable {
+
+  private final NumatrixNumberGenerator generator;
+  private final RecyclePool.Lease<NumatrixNumberGenerator> lease;
+
+  /**
+   * 指定された{@link NumatrixNumberGenerator}インスタンスの貸し出しを生成します.
+   *
+   * @param generator {@link NumatrixNumberGenerator}インスタンス
+   * @param lease プールからの貸し出し、返却の必要がない場合は{@code null}
+   */
+  NumatrixNumberGeneratorLease(NumatrixNumberGenerator generator,
+      RecyclePool.Lease<NumatrixNumberGenerator> lease) {
+    this.generator = generator;
+    this.lease = lease;
+  }
+
+  /**
+   * 貸し出された{@link NumatrixNumberGenerator}インスタンスを返します.
+   *
+   * @return {@link NumatrixNumberGenerator}インスタンス
+   */
+  public NumatrixNumberGenerator getGenerator() {
+    return generator;
+  }
+
+  /**
+   * {@link NumatrixNumberGenerator}インスタンスを返却します.<br>
+   * 2回目以降の呼び出しは何もしません。
+   */
+  @Override
+  public void close() {
+    if (lease != null) {
+      lease.close();
+    }
+  }
+}
@@ -0,0 +1,367 @@
+package numatrix;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * 区分毎の{@link NumatrixNumberGenerator}インスタンスの計測値を集計します.<br>
+ * {@link NumatrixNumberGeneratorFactory#isMetricsEnabled()}が{@code true}を返す場合だけ区分毎に1つ生成され、
+ * {@link NumatrixNumberGeneratorFactory#getMetrics()}で取得できます。
+ * 同時に{@code numatrix:type=NumatrixNumberGenerator,typeId=<区分>}という名前でJMXに登録されます。<br>
+ * 数値の生成毎に更新する計測値は、スレッド間で競合しないように分散したカウンタで集計します。
+ * このクラスのメソッドは現在の値を返します。ある時点の値をまとめて取得する場合は{@link #snapshot()}を使用してください。
+ */
+public final class NumatrixNumberGeneratorMetrics implements NumatrixNumberGeneratorMetricsMBean {
+
+  private static final int WAIT_TIME_BUCKET_COUNT = 16;
+
+  private final int typeId;
+  private final int maxGeneratorCount;
+  private final RecyclePool<?> generatorPool;
+  private final Counter issuedCount = new Counter();
+  private final Counter rolloverCount = new Counter();
+  private final AtomicLong blockedWaitCount = new AtomicLong();
+  private final AtomicLong blockedWaitNanos = new AtomicLong();
+  private final AtomicLongArray waitTimeHistogram = new AtomicLongArray(WAIT_TIME_BUCKET_COUNT);
+  private final AtomicInteger generatorCount = new AtomicInteger();
+  private final AtomicLong latestTimestamp = new AtomicLong(-1L);
+  private final AtomicLong minRolloverTicks = new AtomicLong(Long.MAX_VALUE);
+  private volatile NumatrixNumberLayout layout;
+
+  /**
+   * 指定された区分の計測値を集計します.
+   *
+   * @param typeId 区分
+   * @param maxGeneratorCount JVM毎の{@link NumatrixNumberGenerator}インスタンス数の上限値
+   * @param generatorPool スレッド毎の{@link NumatrixNumberGenerator}インスタンスを保持するプール
+   */
+  NumatrixNumberGeneratorMetrics(int typeId, int maxGeneratorCount,
+      RecyclePool<?> generatorPool) {
+    this.typeId = typeId;
+    this.maxGeneratorCount = maxGeneratorCount;
+    this.generatorPool = generatorPool;
+  }
+
+  /**
+   * 指定された区分の計測値をJMXに登録する名前を返します.
+   *
+   * @param typeId 区分
+   * @return JMXに登録する名前
+   */
+  static ObjectName objectName(int typeId) {
+    try {
+      return new ObjectName("numatrix:type=NumatrixNumberGenerator,typeId=" + typeId);
+    } catch (MalformedObjectNameException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * 数値の構成を設定します.<br>
+   * 最初に初期化された{@link NumatrixNumberGenerator}インスタンスの数値の構成が使われます。
+   *
+   * @param layout 数値の構成
+   */
+  void init(NumatrixNumberLayout layout) {
+    if (this.layout == null) {
+      this.layout = layout;
+    }
+  }
+
+  /**
+   * {@link NumatrixNumberGenerator}インスタンスが生成されたことを記録します.
+   */
+  void addGenerator() {
+    generatorCount.incrementAndGet();
+  }
+
+  /**
+   * 数値が生成または予約されたことを記録します.
+   *
+   * @param count 生成または予約された数値の数
+   */
+  void issued(long count) {
+    issuedCount.add(count);
+  }
+
+  /**
+   * タイムスタンプを更新したことを記録します.<br>
+   * 更新前のタイムスタンプからの間隔は、連続した番号をすべて使い切るまでにかかった時間として記録します。
+   *
+   * @param previousTimestamp 使い切ったタイムスタンプ
+   * @param timestamp 更新されたタイムスタンプ
+   */
+  void rollover(long previousTimestamp, long timestamp) {
+    rolloverCount.add(1L);
+    long latest;
+    while (timestamp > (latest = latestTimestamp.get())) {
+      if (latestTimestamp.compareAndSet(latest, timestamp)) {
+        break;
+      }
+    }
+    long ticks = timestamp - previousTimestamp;
+    long min;
+    while (ticks < (min = minRolloverTicks.get())) {
+      if (minRolloverTicks.compareAndSet(min, ticks)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * 前回呼ばれてから、いずれかのインスタンスが連続した番号をすべて使い切るまでにかかった最短の間隔を返し、記録を消去します.<br>
+   * 間隔はタイムスタンプの単位で、1の場合はタイムスタンプの1単位の間に連続した番号をほぼ使い切ったことを表します。
+   * {@link NumatrixHeadroomMonitor}が使用します。
+   *
+   * @return 最短の間隔、タイムスタンプを更新していない場合は{@link Long#MAX_VALUE}
+   */
+  long takeMinRolloverTicks() {
+    return minRolloverTicks.getAndSet(Long.MAX_VALUE);
+  }
+
+  /**
+   * 数値の構成を返します.
+   *
+   * @return 数値の構成、インスタンスが初期化されていない場合は{@code null}
+   */
+  NumatrixNumberLayout getLayout() {
+    return layout;
+  }
+
+  /**
+   * タイムスタンプを更新するために待機したことを記録します.
+   *
+   * @param nanos 待機した時間（ナノ秒）
+   */
+  void blockedWait(long nanos) {
+    blockedWaitCount.incrementAndGet();
+    blockedWaitNanos.addAndGet(nanos);
+    long millis = nanos / 1000000L;
+    int bucket = 0;
+    while (millis > 0 && bucket < WAIT_TIME_BUCKET_COUNT - 1) {
+      millis >>>= 1;
+      bucket++;
+    }
+    waitTimeHistogram.incrementAndGet(bucket);
+  }
+
+  @Override
+  public int getTypeId() {
+    return typeId;
+  }
+
+  @Override
+  public long getIssuedCount() {
+    return issuedCount.sum();
+  }
+
+  @Override
+  public long getRolloverCount() {
+    return rolloverCount.sum();
+  }
+
+  @Override
+  public long getBlockedWaitCount() {
+    return blockedWaitCount.get();
+  }
+
+  @Override
+  public long getBlockedWaitMillis() {
+    return blockedWaitNanos.get() / 1000000L;
+  }
+
+  @Override
+  public long[] getWaitTimeHistogram() {
+    long[] histogram = new long[WAIT_TIME_BUCKET_COUNT];
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] = waitTimeHistogram.get(i);
+    }
+    return histogram;
+  }
+
+  @Override
+  public int getGeneratorCount() {
+    return generatorCount.get();
+  }
+
+  @Override
+  public int getMaxGeneratorCount() {
+    return maxGeneratorCount;
+  }
+
+  @Override
+  public int getIdleGeneratorCount() {
+    return generatorPool.idleSize();
+  }
+
+  @Override
+  public long getReclaimedGeneratorCount() {
+    return generatorPool.getReclaimedCount();
+  }
+
+  @Override
+  public long getRemainingTimestampMillis() {
+    NumatrixNumberLayout layout = this.layout;
+    if (layout == null) {
+      return -1L;
+    }
+    long millis = System.currentTimeMillis();
+    long timestamp = latestTimestamp.get();
+    if (timestamp >= 0) {
+      millis = Math.max(millis, layout.getBaseTime().getTime()
+          + (timestamp + 1) * layout.getTickUnit().getMillis());
+    }
+    return Math.max(0L, layout.getExpireTimeMillis() - millis);
+  }
+
+  /**
+   * 現在の計測値をまとめて返します.<br>
+   * 戻り値は変更されません。
+   *
+   * @return 現在の計測値
+   */
+  public NumatrixNumberGeneratorMetricsMBean snapshot() {
+    return new Snapshot(this);
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+  /**
+   * スレッド間で競合しないように分散したカウンタです.<br>
+   * スレッドのIDから選んだセルに加算し、読む時にすべてのセルを合計します。
+   */
+  private static final class Counter {
+
+    /** 異なるセルが同じキャッシュラインに載らないように空ける間隔です. */
+    private static final int CELL_STRIDE = 8;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    Counter() {
+      int cellCount = 1;
+      while (cellCount < Runtime.getRuntime().availableProcessors()) {
+        cellCount <<= 1;
+      }
+      cells = new AtomicLongArray(cellCount * CELL_STRIDE);
+      mask = cellCount - 1;
+    }
+
+    void add(long value) {
+      long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+      cells.getAndAdd(((int) (hash >>> 32) & mask) * CELL_STRIDE, value);
+    }
+
+    long sum() {
+      long sum = 0;
+      for (int i = 0; i < cells.length(); i += CELL_STRIDE) {
+        sum += cells.get(i);
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * ある時点の計測値です.
+   */
+  private static final class Snapshot implements NumatrixNumberGeneratorMetricsMBean {
+
+    private final int typeId;
+    private final long issuedCount;
+    private final long rolloverCount;
+    private final long blockedWaitCount;
+    private final long blockedWaitMillis;
+    private final long[] waitTimeHistogram;
+    private final int generatorCount;
+    private final int maxGeneratorCount;
+    private final int idleGeneratorCount;
+    private final long reclaimedGeneratorCount;
+    private final long remainingTimestampMillis;
+
+    Snapshot(NumatrixNumberGeneratorMetricsMBean metrics) {
+      typeId = metrics.getTypeId();
+      issuedCount = metrics.getIssuedCount();
+      rolloverCount = metrics.getRolloverCount();
+      blockedWaitCount = metrics.getBlockedWaitCount();
+      blockedWaitMillis = metrics.getBlockedWaitMillis();
+      waitTimeHistogram = metrics.getWaitTimeHistogram();
+      generatorCount = metrics.getGeneratorCount();
+      maxGeneratorCount = metrics.getMaxGeneratorCount();
+      idleGeneratorCount = metrics.getIdleGeneratorCount();
+      reclaimedGeneratorCount = metrics.getReclaimedGeneratorCount();
+      remainingTimestampMillis = metrics.getRemainingTimestampMillis();
+    }
+
+    @Override
+    public int getTypeId() {
+      return typeId;
+    }
+
+    @Override
+    public long getIssuedCount() {
+      return issuedCount;
+    }
+
+    @Override
+    public long getRolloverCount() {
+      return rolloverCount;
+    }
+
+    @Override
+    public long getBlockedWaitCount() {
+      return blockedWaitCount;
+    }
+
+    @Override
+    public long getBlockedWaitMillis() {
+      return blockedWaitMillis;
+    }
+
+    @Override
+    public long[] getWaitTimeHistogram() {
+      return waitTimeHistogram.clone();
+    }
+
+    @Override
+    public int getGeneratorCount() {
+      return generatorCount;
+    }
+
+    @Override
+    public int getMaxGeneratorCount() {
+      return maxGeneratorCount;
+    }
+
+    @Override
+    public int getIdleGeneratorCount() {
+      return idleGeneratorCount;
+    }
+
+    @Override
+    public long getReclaimedGeneratorCount() {
+      return reclaimedGeneratorCount;
+    }
+
+    @Override
+    public long getRemainingTimestampMillis() {
+      return remainingTimestampMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "NumatrixNumberGeneratorMetrics[typeId=" + typeId + ", issuedCount=" + issuedCount
+          + ", rolloverCount=" + rolloverCount + ", blockedWaitCount=" + blockedWaitCount
+          + ", blockedWaitMillis=" + blockedWaitMillis + ", generatorCount=" + generatorCount
+          + ", maxGeneratorCount=" + maxGeneratorCount + ", idleGeneratorCount="
+          + idleGeneratorCount + ", reclaimedGeneratorCount=" + reclaimedGeneratorCount
+          + ", remainingTimestampMillis=" + remainingTimestampMillis + "]";
+    }
+  }
+
+}
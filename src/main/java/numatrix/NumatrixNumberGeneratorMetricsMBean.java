@@ -0,0 +1,92 @@
+package numatrix;
+
+/**
+ * 区分毎の{@link NumatrixNumberGenerator}インスタンスの計測値です.<br>
+ * {@link NumatrixNumberGeneratorMetrics}がJMXに公開するインターフェースで、{@link NumatrixNumberGeneratorMetrics#snapshot()}の戻り値でもあります。
+ */
+public interface NumatrixNumberGeneratorMetricsMBean {
+
+  /**
+   * 計測している区分を返します.
+   *
+   * @return 区分
+   */
+  int getTypeId();
+
+  /**
+   * 生成または予約された数値の数を返します.
+   *
+   * @return 生成または予約された数値の数
+   */
+  long getIssuedCount();
+
+  /**
+   * 連続した番号を使い切ってタイムスタンプを更新した回数を返します.<br>
+   * 複数のスレッドで共有するインスタンスでは、他のスレッドとの競合に勝って反映された更新だけを数えます。
+   *
+   * @return タイムスタンプを更新した回数
+   */
+  long getRolloverCount();
+
+  /**
+   * タイムスタンプを更新するために待機した回数を返します.
+   *
+   * @return タイムスタンプを更新するために待機した回数
+   */
+  long getBlockedWaitCount();
+
+  /**
+   * タイムスタンプを更新するために待機した時間の合計を返します.
+   *
+   * @return 待機した時間の合計（ミリ秒）
+   */
+  long getBlockedWaitMillis();
+
+  /**
+   * タイムスタンプを更新するために待機した時間の分布を返します.<br>
+   * 要素0は1ミリ秒未満、要素{@code i}は2<sup>i-1</sup>ミリ秒以上2<sup>i</sup>ミリ秒未満の待機の回数です。
+   * 最後の要素はそれ以上の待機の回数です。
+   *
+   * @return 待機した時間の分布
+   */
+  long[] getWaitTimeHistogram();
+
+  /**
+   * 生成された{@link NumatrixNumberGenerator}インスタンスの数を返します.
+   *
+   * @return 生成された{@link NumatrixNumberGenerator}インスタンスの数
+   */
+  int getGeneratorCount();
+
+  /**
+   * JVM毎の{@link NumatrixNumberGenerator}インスタンス数の上限値を返します.
+   *
+   * @return JVM毎の{@link NumatrixNumberGenerator}インスタンス数の上限値
+   */
+  int getMaxGeneratorCount();
+
+  /**
+   * どのスレッドにも割り当てられていない{@link NumatrixNumberGenerator}インスタンスの数を返します.
+   *
+   * @return どのスレッドにも割り当てられていない{@link NumatrixNumberGenerator}インスタンスの数
+   */
+  int getIdleGeneratorCount();
+
+  /**
+   * スレッドへの割り当てが解除された回数を返します.<br>
+   * 返却された場合と、割り当てられたスレッドが消滅した場合の両方を数えます。
+   *
+   * @return スレッドへの割り当てが解除された回数
+   */
+  long getReclaimedGeneratorCount();
+
+  /**
+   * タイムスタンプが最大値を超えるまでの残りの時間を返します.<br>
+   * 現在時刻と、タイムスタンプを先に進めている場合はそのタイムスタンプのうち、遅い方から数えます。
+   * {@link NumatrixNumberGenerator}インスタンスがまだ生成されていない場合は-1を返します。
+   *
+   * @return タイムスタンプが最大値を超えるまでの残りの時間（ミリ秒）
+   */
+  long getRemainingTimestampMillis();
+
+}
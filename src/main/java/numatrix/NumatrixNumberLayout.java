@@ -0,0 +1,491 @@
+package numatrix;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Date;
+
+/**
+ * {@link NumatrixNumberGenerator}が生成する数値の構成です.<br>
+ * 数値を[タイムスタンプ・連続した番号・シャードのID・インスタンスのID]に分解するメソッドと、時間の範囲から数値の範囲を求めるメソッドを提供します。
+ * このクラスのインスタンスは不変で、{@link NumatrixNumberGenerator#getLayout()}または{@link NumatrixNumberGeneratorFactory#getLayout()}で取得できます。<br>
+ * <br>
+ * 分解するメソッドはオブジェクトを生成しません。大量の数値を分解する場合は配列やバッファを受け取るメソッドを使用してください。<br>
+ * シャードのIDはシフトとマスクだけで取り出せるため、数値からシャードを選ぶ場合に対応表を引く必要はありません。
+ */
+public final class NumatrixNumberLayout {
+
+  private final int timestampBitLength;
+  private final int seqNumBitLength;
+  private final int shardBitLength;
+  private final int instanceIdBitLength;
+  private final int timestampShift;
+  private final int seqNumShift;
+  private final long maxTimestamp;
+  private final long maxSeqNum;
+  private final long shardIdMask;
+  private final long instanceIdMask;
+  private final int generatorCountPerJvm;
+  private final NumatrixTickUnit tickUnit;
+  private final long tickMillis;
+  private final long baseTimeMillis;
+  private final boolean outMinus;
+
+  /**
+   * 指定された構成で生成します.
+   *
+   * @param timestampBitLength タイムスタンプのビット長
+   * @param seqNumBitLength 連続した番号のビット長
+   * @param shardBitLength シャードのIDのビット長
+   * @param instanceIdBitLength インスタンスのIDのビット長
+   * @param generatorCountPerJvm JVM毎のインスタンス数の上限値
+   * @param tickUnit タイムスタンプの1単位の長さ
+   * @param baseTimeMillis タイムスタンプの基準となる時間（ミリ秒）
+   * @param outMinus マイナス値を許可する場合は{@code true}
+   */
+  NumatrixNumberLayout(int timestampBitLength, int seqNumBitLength, int shardBitLength,
+      int instanceIdBitLength, int generatorCountPerJvm, NumatrixTickUnit tickUnit,
+      long baseTimeMillis, boolean outMinus) {
+    this.timestampBitLength = timestampBitLength;
+    this.seqNumBitLength = seqNumBitLength;
+    this.shardBitLength = shardBitLength;
+    this.instanceIdBitLength = instanceIdBitLength;
+    this.seqNumShift = shardBitLength + instanceIdBitLength;
+    this.timestampShift = seqNumBitLength + seqNumShift;
+    this.maxTimestamp = (1L << timestampBitLength) - 1;
+    this.maxSeqNum = (1L << seqNumBitLength) - 1;
+    this.shardIdMask = (1L << shardBitLength) - 1;
+    this.instanceIdMask = (1L << instanceIdBitLength) - 1;
+    this.generatorCountPerJvm = generatorCountPerJvm;
+    this.tickUnit = tickUnit;
+    this.tickMillis = tickUnit.getMillis();
+    this.baseTimeMillis = baseTimeMillis;
+    this.outMinus = outMinus;
+  }
+
+  /**
+   * タイムスタンプのビット長を返します.
+   *
+   * @return タイムスタンプのビット長
+   */
+  public int getTimestampBitLength() {
+    return timestampBitLength;
+  }
+
+  /**
+   * 連続した番号のビット長を返します.
+   *
+   * @return 連続した番号のビット長
+   */
+  public int getSeqNumBitLength() {
+    return seqNumBitLength;
+  }
+
+  /**
+   * シャードのIDのビット長を返します.<br>
+   * シャードのIDを持たない構成では0を返します。
+   *
+   * @return シャードのIDのビット長
+   */
+  public int getShardBitLength() {
+    return shardBitLength;
+  }
+
+  /**
+   * シャードのIDの位置を返します.<br>
+   * {@code (number >>> getShardIdShift()) & getShardIdMask()}でシャードのIDを取り出せます。
+   * Java以外のサービスで数値からシャードを選ぶ場合に使用してください。
+   *
+   * @return シャードのIDを取り出すために右シフトするビット数
+   */
+  public int getShardIdShift() {
+    return instanceIdBitLength;
+  }
+
+  /**
+   * 右シフトした後にシャードのIDを取り出すマスクを返します.
+   *
+   * @return シャードのIDのマスク
+   */
+  public long getShardIdMask() {
+    return shardIdMask;
+  }
+
+  /**
+   * インスタンスのIDのビット長を返します.
+   *
+   * @return インスタンスのIDのビット長
+   */
+  public int getInstanceIdBitLength() {
+    return instanceIdBitLength;
+  }
+
+  /**
+   * タイムスタンプの最大値を返します.
+   *
+   * @return タイムスタンプの最大値
+   */
+  public long getMaxTimestamp() {
+    return maxTimestamp;
+  }
+
+  /**
+   * 連続した番号の最大値を返します.<br>
+   * インスタンス毎にタイムスタンプの1単位の間に生成できる数値の数は、この値に1を足した数です。
+   *
+   * @return 連続した番号の最大値
+   */
+  public long getMaxSeqNum() {
+    return maxSeqNum;
+  }
+
+  /**
+   * JVM毎のインスタンス数の上限値を返します.
+   *
+   * @return JVM毎のインスタンス数の上限値
+   */
+  public int getGeneratorCountPerJvm() {
+    return generatorCountPerJvm;
+  }
+
+  /**
+   * タイムスタンプの1単位の長さを返します.
+   *
+   * @return タイムスタンプの1単位の長さ
+   */
+  public NumatrixTickUnit getTickUnit() {
+    return tickUnit;
+  }
+
+  /**
+   * タイムスタンプの基準となる時間を返します.
+   *
+   * @return タイムスタンプの基準となる時間
+   */
+  public Date getBaseTime() {
+    return new Date(baseTimeMillis);
+  }
+
+  /**
+   * 数値を生成できる期限を返します.<br>
+   * この時間以降はタイムスタンプが最大値を超えるため、数値を生成できません。
+   *
+   * @return 数値を生成できる期限
+   */
+  public Date getExpireTime() {
+    return new Date(getExpireTimeMillis());
+  }
+
+  /**
+   * 数値を生成できる期限をミリ秒で返します.
+   *
+   * @return 数値を生成できる期限（ミリ秒）
+   */
+  long getExpireTimeMillis() {
+    if (maxTimestamp >= (Long.MAX_VALUE - baseTimeMillis) / tickMillis) {
+      return Long.MAX_VALUE;
+    }
+    return baseTimeMillis + (maxTimestamp + 1) * tickMillis;
+  }
+
+  /**
+   * マイナス値を許可するかを返します.
+   *
+   * @return マイナス値を許可する場合は{@code true}
+   */
+  public boolean isOutMinus() {
+    return outMinus;
+  }
+
+  /**
+   * 数値のタイムスタンプを返します.
+   *
+   * @param number 数値
+   * @return タイムスタンプ
+   */
+  public long timestampOf(long number) {
+    return number >>> timestampShift;
+  }
+
+  /**
+   * 数値のタイムスタンプが表す時間を1970年1月1日0時(UTC)からのミリ秒で返します.
+   *
+   * @param number 数値
+   * @return タイムスタンプが表す時間（ミリ秒）
+   */
+  public long epochMillisOf(long number) {
+    return baseTimeMillis + (number >>> timestampShift) * tickMillis;
+  }
+
+  /**
+   * 数値の連続した番号を返します.
+   *
+   * @param number 数値
+   * @return 連続した番号
+   */
+  public long sequenceOf(long number) {
+    return (number >>> seqNumShift) & maxSeqNum;
+  }
+
+  /**
+   * 数値のシャードのIDを返します.
+   *
+   * @param number 数値
+   * @return シャードのID
+   */
+  public int shardIdOf(long number) {
+    return (int) ((number >>> instanceIdBitLength) & shardIdMask);
+  }
+
+  /**
+   * 数値のインスタンスのIDを返します.
+   *
+   * @param number 数値
+   * @return インスタンスのID
+   */
+  public int instanceIdOf(long number) {
+    return (int) (number & instanceIdMask);
+  }
+
+  /**
+   * 数値を生成したJVMのIDを返します.
+   *
+   * @param number 数値
+   * @return JVMのID
+   */
+  public int jvmIdOf(long number) {
+    return (int) (number & instanceIdMask) / generatorCountPerJvm;
+  }
+
+  /**
+   * 指定された配列の範囲の数値のタイムスタンプを、別の配列に格納します.
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst タイムスタンプを格納する配列
+   * @param dstOff タイムスタンプを格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void timestampOf(long[] src, int srcOff, long[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, dst.length, dstOff, len);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = src[srcOff + i] >>> timestampShift;
+    }
+  }
+
+  /**
+   * 指定された配列の範囲の数値のタイムスタンプが表す時間を、別の配列に格納します.
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst 時間（ミリ秒）を格納する配列
+   * @param dstOff 時間を格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void epochMillisOf(long[] src, int srcOff, long[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, dst.length, dstOff, len);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = baseTimeMillis + (src[srcOff + i] >>> timestampShift) * tickMillis;
+    }
+  }
+
+  /**
+   * 指定された配列の範囲の数値の連続した番号を、別の配列に格納します.
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst 連続した番号を格納する配列
+   * @param dstOff 連続した番号を格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void sequenceOf(long[] src, int srcOff, long[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, dst.length, dstOff, len);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = (src[srcOff + i] >>> seqNumShift) & maxSeqNum;
+    }
+  }
+
+  /**
+   * 指定された配列の範囲の数値のシャードのIDを、別の配列に格納します.
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst シャードのIDを格納する配列
+   * @param dstOff シャードのIDを格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void shardIdOf(long[] src, int srcOff, int[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, dst.length, dstOff, len);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = (int) ((src[srcOff + i] >>> instanceIdBitLength) & shardIdMask);
+    }
+  }
+
+  /**
+   * 指定された配列の範囲の数値のインスタンスのIDを、別の配列に格納します.
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst インスタンスのIDを格納する配列
+   * @param dstOff インスタンスのIDを格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void instanceIdOf(long[] src, int srcOff, int[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, dst.length, dstOff, len);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = (int) (src[srcOff + i] & instanceIdMask);
+    }
+  }
+
+  /**
+   * 指定された配列の範囲の数値を生成したJVMのIDを、別の配列に格納します.
+   *
+   * @param src 数値の配列
+   * @param srcOff 数値の配列の開始位置
+   * @param dst JVMのIDを格納する配列
+   * @param dstOff JVMのIDを格納する配列の開始位置
+   * @param len 数値の数
+   * @throws IndexOutOfBoundsException 指定された範囲が配列の範囲外の場合
+   */
+  public void jvmIdOf(long[] src, int srcOff, int[] dst, int dstOff, int len) {
+    checkRange(src.length, srcOff, dst.length, dstOff, len);
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = (int) (src[srcOff + i] & instanceIdMask) / generatorCountPerJvm;
+    }
+  }
+
+  /**
+   * バッファの残りの数値のタイムスタンプを、別のバッファに格納します.<br>
+   * 処理する数値の数は2つのバッファの残りの要素数の小さい方です。両方のバッファの位置はその数だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst タイムスタンプを格納するバッファ
+   */
+  public void timestampOf(LongBuffer src, LongBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining()); i > 0; i--) {
+      dst.put(src.get() >>> timestampShift);
+    }
+  }
+
+  /**
+   * バッファの残りの数値のタイムスタンプが表す時間を、別のバッファに格納します.<br>
+   * 処理する数値の数は2つのバッファの残りの要素数の小さい方です。両方のバッファの位置はその数だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst 時間（ミリ秒）を格納するバッファ
+   */
+  public void epochMillisOf(LongBuffer src, LongBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining()); i > 0; i--) {
+      dst.put(baseTimeMillis + (src.get() >>> timestampShift) * tickMillis);
+    }
+  }
+
+  /**
+   * バッファの残りの数値の連続した番号を、別のバッファに格納します.<br>
+   * 処理する数値の数は2つのバッファの残りの要素数の小さい方です。両方のバッファの位置はその数だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst 連続した番号を格納するバッファ
+   */
+  public void sequenceOf(LongBuffer src, LongBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining()); i > 0; i--) {
+      dst.put((src.get() >>> seqNumShift) & maxSeqNum);
+    }
+  }
+
+  /**
+   * バッファの残りの数値のシャードのIDを、別のバッファに格納します.<br>
+   * 処理する数値の数は2つのバッファの残りの要素数の小さい方です。両方のバッファの位置はその数だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst シャードのIDを格納するバッファ
+   */
+  public void shardIdOf(LongBuffer src, IntBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining()); i > 0; i--) {
+      dst.put((int) ((src.get() >>> instanceIdBitLength) & shardIdMask));
+    }
+  }
+
+  /**
+   * バッファの残りの数値のインスタンスのIDを、別のバッファに格納します.<br>
+   * 処理する数値の数は2つのバッファの残りの要素数の小さい方です。両方のバッファの位置はその数だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst インスタンスのIDを格納するバッファ
+   */
+  public void instanceIdOf(LongBuffer src, IntBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining()); i > 0; i--) {
+      dst.put((int) (src.get() & instanceIdMask));
+    }
+  }
+
+  /**
+   * バッファの残りの数値を生成したJVMのIDを、別のバッファに格納します.<br>
+   * 処理する数値の数は2つのバッファの残りの要素数の小さい方です。両方のバッファの位置はその数だけ進みます。
+   *
+   * @param src 数値のバッファ
+   * @param dst JVMのIDを格納するバッファ
+   */
+  public void jvmIdOf(LongBuffer src, IntBuffer dst) {
+    for (int i = Math.min(src.remaining(), dst.remaining()); i > 0; i--) {
+      dst.put((int) (src.get() & instanceIdMask) / generatorCountPerJvm);
+    }
+  }
+
+  /**
+   * 指定された時間を含むタイムスタンプを持つ数値の最小値を返します.<br>
+   * 時間が基準となる時間より前の場合は最小のタイムスタンプ、期限以降の場合は最大のタイムスタンプで計算します。
+   * {@link #maxNumberAt(long)}とあわせて、時間の範囲で数値を検索する場合に使用します。
+   * マイナス値を許可する構成では、数値を符号なしで比較してください。
+   *
+   * @param epochMillis 1970年1月1日0時(UTC)からのミリ秒
+   * @return 指定された時間を含むタイムスタンプを持つ数値の最小値
+   */
+  public long minNumberAt(long epochMillis) {
+    return timestampAt(epochMillis) << timestampShift;
+  }
+
+  /**
+   * 指定された時間を含むタイムスタンプを持つ数値の最大値を返します.<br>
+   * 時間が基準となる時間より前の場合は最小のタイムスタンプ、期限以降の場合は最大のタイムスタンプで計算します。
+   * マイナス値を許可する構成では、数値を符号なしで比較してください。
+   *
+   * @param epochMillis 1970年1月1日0時(UTC)からのミリ秒
+   * @return 指定された時間を含むタイムスタンプを持つ数値の最大値
+   */
+  public long maxNumberAt(long epochMillis) {
+    return (timestampAt(epochMillis) << timestampShift) | ((1L << timestampShift) - 1);
+  }
+
+  /**
+   * 指定された時間を含むタイムスタンプを返します.
+   *
+   * @param epochMillis 1970年1月1日0時(UTC)からのミリ秒
+   * @return タイムスタンプ
+   */
+  private long timestampAt(long epochMillis) {
+    if (epochMillis < baseTimeMillis) {
+      return 0L;
+    }
+    return Math.min((epochMillis - baseTimeMillis) / tickMillis, maxTimestamp);
+  }
+
+  private static void checkRange(int srcLength, int srcOff, int dstLength, int dstOff, int len) {
+    if (srcOff < 0 || dstOff < 0 || len < 0 || srcOff > srcLength - len
+        || dstOff > dstLength - len) {
+      throw new IndexOutOfBoundsException("source offset: " + srcOff + ", destination offset: "
+          + dstOff + ", length: " + len);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "NumatrixNumberLayout[timestamp=" + timestampBitLength + "bits, seqNum="
+        + seqNumBitLength + "bits, shardId=" + shardBitLength + "bits, instanceId=" + instanceIdBitLength + "bits, tickUnit="
+        + tickUnit + ", outMinus=" + outMinus + "]";
+  }
+}
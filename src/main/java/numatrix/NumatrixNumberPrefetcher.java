@@ -0,0 +1,195 @@
+package numatrix;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 数値を事前に生成してバッファに蓄え、待機せずに返すクラスです.<br>
+ * バックグラウンドのスレッドが{@link NumatrixNumberGeneratorFactory#getGenerator()}で取得した{@link NumatrixNumberGenerator}から数値を生成し、
+ * 固定長のリングバッファに書き込みます。バッファに書き込むのはこのスレッドだけで、{@link #generate()}は複数のスレッドから同時に呼べます。<br>
+ * バッファに残っている数値が{@code lowWatermark}以下になるとバックグラウンドのスレッドが再開し、{@code highWatermark}まで補充します。
+ * 連続した番号を使い切った場合の待機はバックグラウンドのスレッドで行われるため、{@link #generate()}はバッファが空の場合だけ待機します。<br>
+ * <br>
+ * 使い終わったら{@link #close()}を呼んでください。バックグラウンドのスレッドが停止し、{@link NumatrixNumberGenerator}インスタンスは返却されます。
+ * バッファに残っている数値は破棄され、それ以降どこからも返されません。破棄された数値の数は{@link #getDiscardedCount()}で確認できます。
+ */
+public class NumatrixNumberPrefetcher implements AutoCloseable {
+
+  private static final AtomicInteger threadNumber = new AtomicInteger();
+
+  private final long[] buffer;
+  private final int mask;
+  private final int lowWatermark;
+  private final int highWatermark;
+  private final AtomicLong head = new AtomicLong();
+  private volatile long tail;
+  private volatile boolean waiting;
+  private volatile boolean closed;
+  private volatile Throwable failure;
+  private volatile long discardedCount;
+  private final Thread worker;
+
+  /**
+   * 指定されたファクトリから取得した{@link NumatrixNumberGenerator}で数値を事前に生成します.<br>
+   * バッファの大きさは{@code highWatermark}以上の2のべき乗に切り上げられます。
+   * バックグラウンドのスレッドはこのコンストラクタで開始されます。
+   *
+   * @param factory 数値を生成する{@link NumatrixNumberGenerator}を取得するファクトリ
+   * @param lowWatermark 補充を再開するバッファに残っている数値の数
+   * @param highWatermark 補充を停止するバッファに残っている数値の数
+   * @throws IllegalArgumentException {@code 0 <= lowWatermark < highWatermark}でない場合
+   */
+  public NumatrixNumberPrefetcher(final NumatrixNumberGeneratorFactory factory, int lowWatermark,
+      int highWatermark) {
+    if (lowWatermark < 0 || highWatermark <= lowWatermark || highWatermark > (1 << 30)) {
+      throw new IllegalArgumentException(
+          "lowWatermark: " + lowWatermark + ", highWatermark: " + highWatermark);
+    }
+    int capacity = 1;
+    while (capacity < highWatermark) {
+      capacity <<= 1;
+    }
+    buffer = new long[capacity];
+    mask = capacity - 1;
+    this.lowWatermark = lowWatermark;
+    this.highWatermark = highWatermark;
+    worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        fill(factory);
+      }
+    }, "numatrix-prefetcher-" + threadNumber.incrementAndGet());
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * バッファから数値を返します.<br>
+   * バッファが空の場合は、バックグラウンドのスレッドが補充するまで待機します。このメソッドはスレッドセーフです。
+   *
+   * @return 生成された数値
+   * @throws NumatrixNumberGenerateException {@link #close()}が呼ばれた場合、
+   *         またはバックグラウンドのスレッドが数値を生成できなくなった後にバッファが空になった場合
+   */
+  public long generate() throws NumatrixNumberGenerateException {
+    for (int spins = 0;; spins++) {
+      if (closed) {
+        throw new NumatrixNumberGenerateException("prefetcher is closed.");
+      }
+      long index = head.get();
+      long available = tail - index;
+      if (available > 0) {
+        long number = buffer[(int) index & mask];
+        if (head.compareAndSet(index, index + 1)) {
+          if (available <= lowWatermark + 1 && waiting) {
+            LockSupport.unpark(worker);
+          }
+          return number;
+        }
+        continue;
+      }
+      Throwable failure = this.failure;
+      if (failure != null) {
+        if (failure instanceof NumatrixNumberGenerateException) {
+          throw (NumatrixNumberGenerateException) failure;
+        }
+        throw new NumatrixNumberGenerateException("prefetcher is stopped. " + failure);
+      }
+      LockSupport.unpark(worker);
+      if (spins < 100) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, 100000L);
+      }
+    }
+  }
+
+  /**
+   * バッファに残っている数値の数を返します.
+   *
+   * @return バッファに残っている数値の数
+   */
+  public int size() {
+    return (int) Math.max(0L, tail - head.get());
+  }
+
+  /**
+   * {@link #close()}で破棄された数値の数を返します.
+   *
+   * @return 破棄された数値の数
+   */
+  public long getDiscardedCount() {
+    return discardedCount;
+  }
+
+  /**
+   * バックグラウンドのスレッドを停止し、バッファに残っている数値を破棄します.<br>
+   * バックグラウンドのスレッドが停止するまで待機します。これ以降、{@link #generate()}は例外を発生させます。
+   * 2回目以降の呼び出しは何もしません。
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(worker);
+    boolean interrupted = false;
+    while (worker.isAlive()) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    synchronized (this) {
+      long index;
+      long end = tail;
+      while ((index = head.get()) < end) {
+        if (head.compareAndSet(index, end)) {
+          discardedCount += end - index;
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * バックグラウンドのスレッドの処理です.<br>
+   * バッファに残っている数値が{@code lowWatermark}以下になるたびに{@code highWatermark}まで補充します。
+   *
+   * @param factory 数値を生成する{@link NumatrixNumberGenerator}を取得するファクトリ
+   */
+  private void fill(NumatrixNumberGeneratorFactory factory) {
+    try (NumatrixNumberGeneratorLease lease = factory.leaseGenerator()) {
+      NumatrixNumberGenerator generator = lease.getGenerator();
+      while (!closed) {
+        long end = tail;
+        int size = (int) (end - head.get());
+        if (size > lowWatermark) {
+          waiting = true;
+          if ((int) (tail - head.get()) > lowWatermark && !closed) {
+            LockSupport.park(this);
+          }
+          waiting = false;
+          continue;
+        }
+        while (size < highWatermark && !closed) {
+          int off = (int) end & mask;
+          int len = Math.min(highWatermark - size, buffer.length - off);
+          generator.generate(buffer, off, len);
+          end += len;
+          tail = end;
+          size = (int) (end - head.get());
+        }
+      }
+    } catch (Throwable e) {
+      failure = e;
+    }
+  }
+
+}
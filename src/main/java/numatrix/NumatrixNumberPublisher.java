@@ -0,0 +1,267 @@
+package numatrix;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 購読者の要求した数だけ数値を通知するパブリッシャです.<br>
+ * 購読者の要求に応じて{@link NumatrixNumberGenerator#reserve(int)}で最大{@code batchSize}ずつ数値を予約し、
+ * 1つずつボクシングせずに{@link Subscriber#onNext(long)}で通知します。要求された数より多くは予約しません。<br>
+ * インタフェースはReactive Streamsと同じ規約に従います。通知は{@link Subscription#request(long)}を呼んだスレッドで行われ、
+ * 1つの購読への通知が同時に行われることはありません。{@link Subscriber#onNext(long)}の中から{@link Subscription#request(long)}を呼んでも、
+ * 通知が再帰することはありません。<br>
+ * {@link NumatrixNumberGenerator}を指定する場合は、複数のスレッドで共有するインスタンスかストライプに分けたインスタンスを指定してください。
+ * スレッドごとのインスタンスを使用する場合は{@link NumatrixNumberGeneratorFactory}を指定してください。
+ * 通知するスレッドが{@link NumatrixNumberGeneratorFactory#getGenerator()}で取得した自分のインスタンスから予約します。<br>
+ * 購読を取り消した場合、予約済みで通知されなかった数値は捨てられます。
+ */
+public class NumatrixNumberPublisher {
+
+  /**
+   * 数値を受け取る購読者です.
+   */
+  public interface Subscriber {
+
+    /**
+     * 購読が開始された時に、他の通知より前に1度だけ呼ばれます.
+     *
+     * @param subscription 数値を要求する購読
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * 数値を通知します.
+     *
+     * @param number 生成された数値
+     */
+    void onNext(long number);
+
+    /**
+     * 数値を生成できない場合、または不正な数を要求された場合に呼ばれます.<br>
+     * この後は通知されません。
+     *
+     * @param throwable 発生した例外
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * 指定された数の数値をすべて通知した場合に呼ばれます.<br>
+     * この後は通知されません。
+     */
+    void onComplete();
+  }
+
+  /**
+   * 購読者が数値を要求する購読です.
+   */
+  public interface Subscription {
+
+    /**
+     * 指定された数の数値を追加で要求します.
+     *
+     * @param n 要求する数値の数。0以下の場合は{@link Subscriber#onError(Throwable)}が呼ばれます
+     */
+    void request(long n);
+
+    /**
+     * 購読を取り消します.<br>
+     * この後は通知されません。
+     */
+    void cancel();
+  }
+
+  private final NumatrixNumberGenerator generator;
+  private final NumatrixNumberGeneratorFactory factory;
+  private final long count;
+  private final int batchSize;
+
+  /**
+   * 指定されたインスタンスから数値を通知し続けるパブリッシャを生成します.
+   *
+   * @param generator 数値を生成する、複数のスレッドから同時に使用できるインスタンス
+   * @param batchSize 1度に予約する数値の最大数
+   * @throws IllegalArgumentException 1度に予約する数値の最大数が0以下の場合、
+   *         またはインスタンスが複数のスレッドから同時に使用できない場合
+   */
+  public NumatrixNumberPublisher(NumatrixNumberGenerator generator, int batchSize) {
+    this(generator, Long.MAX_VALUE, batchSize);
+  }
+
+  /**
+   * 指定されたインスタンスから、購読毎に指定された数の数値を通知するパブリッシャを生成します.
+   *
+   * @param generator 数値を生成する、複数のスレッドから同時に使用できるインスタンス
+   * @param count 購読毎に通知する数値の数
+   * @param batchSize 1度に予約する数値の最大数
+   * @throws IllegalArgumentException 数値の数が負の場合、1度に予約する数値の最大数が0以下の場合、
+   *         またはインスタンスが複数のスレッドから同時に使用できない場合
+   */
+  public NumatrixNumberPublisher(NumatrixNumberGenerator generator, long count, int batchSize) {
+    this(Objects.requireNonNull(generator), null, count, batchSize);
+    if (!generator.isThreadSafe()) {
+      throw new IllegalArgumentException("generator must be thread-safe. "
+          + "use a shared or striped generator, or pass the factory.");
+    }
+  }
+
+  /**
+   * 指定されたファクトリのインスタンスから数値を通知し続けるパブリッシャを生成します.
+   *
+   * @param factory 通知するスレッドのインスタンスを取得するファクトリ
+   * @param batchSize 1度に予約する数値の最大数
+   * @throws IllegalArgumentException 1度に予約する数値の最大数が0以下の場合
+   */
+  public NumatrixNumberPublisher(NumatrixNumberGeneratorFactory factory, int batchSize) {
+    this(factory, Long.MAX_VALUE, batchSize);
+  }
+
+  /**
+   * 指定されたファクトリのインスタンスから、購読毎に指定された数の数値を通知するパブリッシャを生成します.
+   *
+   * @param factory 通知するスレッドのインスタンスを取得するファクトリ
+   * @param count 購読毎に通知する数値の数
+   * @param batchSize 1度に予約する数値の最大数
+   * @throws IllegalArgumentException 数値の数が負の場合、または1度に予約する数値の最大数が0以下の場合
+   */
+  public NumatrixNumberPublisher(NumatrixNumberGeneratorFactory factory, long count,
+      int batchSize) {
+    this(null, Objects.requireNonNull(factory), count, batchSize);
+  }
+
+  private NumatrixNumberPublisher(NumatrixNumberGenerator generator,
+      NumatrixNumberGeneratorFactory factory, long count, int batchSize) {
+    if (count < 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("count: " + count + ", batchSize: " + batchSize);
+    }
+    this.generator = generator;
+    this.factory = factory;
+    this.count = count;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * 購読を開始します.<br>
+   * {@link Subscriber#onSubscribe(Subscription)}はこのメソッドを呼んだスレッドで呼ばれます。
+   *
+   * @param subscriber 購読者
+   */
+  public void subscribe(Subscriber subscriber) {
+    Objects.requireNonNull(subscriber);
+    NumberSubscription subscription = new NumberSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    subscription.drain();
+  }
+
+  /**
+   * 通知するスレッドが予約に使用するインスタンスを返します.
+   */
+  private NumatrixNumberGenerator generator() throws NumatrixNumberGenerateException {
+    return generator != null ? generator : factory.getGenerator();
+  }
+
+  /**
+   * 要求された数を保持し、1つのスレッドだけが通知するように調整する購読です.
+   */
+  private final class NumberSubscription implements Subscription {
+
+    private final Subscriber subscriber;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException invalidRequest;
+    /** まだ通知していない数値の数です. 通知するスレッドだけが更新します. */
+    private long remaining = count;
+    /** 完了または失敗を通知したかです. 通知するスレッドだけが更新します. */
+    private boolean terminated;
+
+    NumberSubscription(Subscriber subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("request must be positive. " + n);
+        cancelled = true;
+      } else {
+        for (;;) {
+          long current = requested.get();
+          long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+          if (current == Long.MAX_VALUE || requested.compareAndSet(current, next)) {
+            break;
+          }
+        }
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    /**
+     * 他のスレッドが通知していなければ、要求された数だけ通知します.<br>
+     * 通知中に要求が追加された場合は、通知しているスレッドが続けて通知します。
+     */
+    void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        emit();
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void emit() {
+      if (terminated) {
+        return;
+      }
+      if (cancelled) {
+        terminated = true;
+        if (invalidRequest != null) {
+          subscriber.onError(invalidRequest);
+        }
+        return;
+      }
+      long emitted = 0;
+      long limit = requested.get();
+      NumatrixNumberGenerator source = null;
+      while (!cancelled && remaining > 0 && emitted != limit) {
+        NumatrixNumberRange range;
+        try {
+          if (source == null) {
+            source = generator();
+          }
+          range = source.reserve(
+              (int) Math.min(Math.min(limit - emitted, remaining), batchSize));
+        } catch (NumatrixNumberGenerateException e) {
+          terminated = true;
+          subscriber.onError(e);
+          return;
+        }
+        long number = range.getStart();
+        for (int i = range.getCount(); i > 0; i--) {
+          if (cancelled) {
+            return;
+          }
+          subscriber.onNext(number);
+          number += range.getStride();
+        }
+        emitted += range.getCount();
+        remaining -= range.getCount();
+      }
+      if (emitted != 0 && limit != Long.MAX_VALUE) {
+        requested.addAndGet(-emitted);
+      }
+      if (remaining == 0 && !cancelled) {
+        terminated = true;
+        subscriber.onComplete();
+      }
+    }
+  }
+
+}
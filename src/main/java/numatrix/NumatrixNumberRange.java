@@ -0,0 +1,72 @@
+package numatrix;
+
+/**
+ * {@link NumatrixNumberGenerator#reserve(int)}で予約された連続した番号の範囲です.<br>
+ * 範囲内の数値は{@link #getStart()}から{@link #getStride()}ずつ増加します。範囲内の数値はすべて同じタイムスタンプを持ちます。
+ */
+public final class NumatrixNumberRange {
+
+  private final long start;
+  private final int count;
+  private final long stride;
+
+  /**
+   * 指定された範囲を生成します.<br>
+   * {@link NumatrixNumberGenerator#reserve(int)}以外で予約された範囲を表す場合に使用します。
+   *
+   * @param start 範囲内の最初の数値
+   * @param count 範囲内の数値の数
+   * @param stride 範囲内の数値の間隔
+   */
+  public NumatrixNumberRange(long start, int count, long stride) {
+    this.start = start;
+    this.count = count;
+    this.stride = stride;
+  }
+
+  /**
+   * 範囲内の最初の数値を返します.
+   *
+   * @return 範囲内の最初の数値
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * 範囲内の数値の数を返します.
+   *
+   * @return 範囲内の数値の数
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * 範囲内の数値の間隔を返します.
+   *
+   * @return 範囲内の数値の間隔
+   */
+  public long getStride() {
+    return stride;
+  }
+
+  /**
+   * 範囲内の指定された位置の数値を返します.
+   *
+   * @param index 範囲内の位置
+   * @return 範囲内の指定された位置の数値
+   * @throws IndexOutOfBoundsException 位置が範囲外の場合
+   */
+  public long get(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("index: " + index + ", count: " + count);
+    }
+    return start + index * stride;
+  }
+
+  @Override
+  public String toString() {
+    return "NumatrixNumberRange[start=" + start + ", count=" + count + ", stride=" + stride + "]";
+  }
+}
@@ -0,0 +1,118 @@
+package numatrix;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link NumatrixNumberGenerator}から指定された数の数値を返す{@link Spliterator.OfLong}です.<br>
+ * 数値は{@link NumatrixNumberGenerator#reserve(int)}でまとめて予約します。
+ * 予約する数は1から始めて、{@link #MAX_BATCH_SIZE}まで倍に増やすため、少しだけ使う場合に多くの数値を捨てません。<br>
+ * 分割はスレッドセーフなインスタンスの場合だけ行い、分割されたそれぞれが自分の範囲を予約します。<br>
+ * 数値の数が{@link Long#MAX_VALUE}の場合は数値を返し続けるため、{@link java.util.stream.LongStream#generate}と同じく
+ * {@link #SIZED}と{@link #SUBSIZED}を持ちません。
+ */
+final class NumatrixNumberSpliterator implements Spliterator.OfLong {
+
+  /** 1度に予約する数の最大値です. */
+  static final int MAX_BATCH_SIZE = 1024;
+
+  private final NumatrixNumberGenerator generator;
+  private final boolean sized;
+  /** まだ返していない数値の数です. 予約済みで返していない数値を含みます. */
+  private long remaining;
+  private int batchSize = 1;
+  private long next;
+  private long stride;
+  private int available;
+
+  /**
+   * 指定されたインスタンスから指定された数の数値を返します.
+   *
+   * @param generator 数値を生成するインスタンス
+   * @param count 返す数値の数
+   */
+  NumatrixNumberSpliterator(NumatrixNumberGenerator generator, long count) {
+    this(generator, count, count != Long.MAX_VALUE);
+  }
+
+  private NumatrixNumberSpliterator(NumatrixNumberGenerator generator, long count,
+      boolean sized) {
+    this.generator = generator;
+    this.remaining = count;
+    this.sized = sized;
+  }
+
+  @Override
+  public boolean tryAdvance(LongConsumer action) {
+    if (remaining == 0) {
+      return false;
+    }
+    if (available == 0) {
+      reserve();
+    }
+    long number = next;
+    next += stride;
+    available--;
+    remaining--;
+    action.accept(number);
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(LongConsumer action) {
+    while (remaining > 0) {
+      if (available == 0) {
+        reserve();
+      }
+      long number = next;
+      long step = stride;
+      int count = available;
+      next += count * step;
+      available = 0;
+      remaining -= count;
+      for (int i = count; i > 0; i--) {
+        action.accept(number);
+        number += step;
+      }
+    }
+  }
+
+  /**
+   * まだ予約していない数値の半分を分割します.<br>
+   * スレッドセーフでないインスタンスの場合は分割しません。
+   */
+  @Override
+  public Spliterator.OfLong trySplit() {
+    long half = (remaining - available) >>> 1;
+    if (half == 0 || !generator.isThreadSafe()) {
+      return null;
+    }
+    remaining -= half;
+    return new NumatrixNumberSpliterator(generator, half, sized);
+  }
+
+  @Override
+  public long estimateSize() {
+    return remaining;
+  }
+
+  @Override
+  public int characteristics() {
+    int characteristics = DISTINCT | NONNULL | IMMUTABLE;
+    return sized ? characteristics | SIZED | SUBSIZED : characteristics;
+  }
+
+  private void reserve() {
+    NumatrixNumberRange range;
+    try {
+      range = generator.reserve((int) Math.min(remaining, batchSize));
+    } catch (NumatrixNumberGenerateException e) {
+      throw new NumatrixUncheckedNumberGenerateException(e);
+    }
+    next = range.getStart();
+    stride = range.getStride();
+    available = range.getCount();
+    batchSize = Math.min(batchSize << 1, MAX_BATCH_SIZE);
+  }
+
+}
@@ -0,0 +1,148 @@
+package numatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * 複数のプロセスから同時に更新できる、メモリマップファイル上の{@code long}です.<br>
+ * 値は1つの{@code long}で、CASで更新するため、更新の途中でプロセスが異常終了しても中途半端な値は残りません。<br>
+ * ファイルの先頭には、値を使用する{@link NumatrixNumberGenerator}の数値の構成を記録します。
+ * 異なる構成で同じファイルを使用しようとした場合は例外が発生します。
+ */
+final class NumatrixSharedMemory {
+
+  private static final int MAGIC = 0x4E4D534D;
+  private static final int HEADER_SIZE = 64;
+  private static final int FILE_SIZE = HEADER_SIZE + 8;
+
+  private static final MethodHandle GET_LONG_VOLATILE;
+  private static final MethodHandle COMPARE_AND_SWAP_LONG;
+  private static final long ADDRESS_OFFSET;
+  private static final MethodHandle GET_LONG;
+  private static final Throwable UNSUPPORTED_CAUSE;
+
+  static {
+    MethodHandle getLongVolatile = null;
+    MethodHandle compareAndSwapLong = null;
+    MethodHandle getLong = null;
+    long addressOffset = 0;
+    Throwable unsupportedCause = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      Object unsafe = field.get(null);
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      getLongVolatile = lookup.findVirtual(unsafeClass, "getLongVolatile",
+          MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+      compareAndSwapLong = lookup.findVirtual(unsafeClass, "compareAndSwapLong",
+          MethodType.methodType(boolean.class, Object.class, long.class, long.class, long.class))
+          .bindTo(unsafe);
+      getLong = lookup.findVirtual(unsafeClass, "getLong",
+          MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+      MethodHandle objectFieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset",
+          MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+      addressOffset = (long) objectFieldOffset.invoke(Buffer.class.getDeclaredField("address"));
+    } catch (Throwable e) {
+      unsupportedCause = e;
+    }
+    GET_LONG_VOLATILE = getLongVolatile;
+    COMPARE_AND_SWAP_LONG = compareAndSwapLong;
+    GET_LONG = getLong;
+    ADDRESS_OFFSET = addressOffset;
+    UNSUPPORTED_CAUSE = unsupportedCause;
+  }
+
+  /** ファイルが解放されないように、割り当てたバッファを保持します. */
+  private final MappedByteBuffer buffer;
+  private final long address;
+
+  /**
+   * 指定されたファイルを開いてメモリに割り当てます.<br>
+   * ファイルが存在しない場合、または初期化されていない場合は、ファイルをロックして数値の構成を記録し、値を0にします。
+   *
+   * @param file ファイル
+   * @param layout 値を使用する{@link NumatrixNumberGenerator}の数値の構成
+   * @param instanceId 値を使用する{@link NumatrixNumberGenerator}のID
+   * @throws NumatrixNumberGenerateException ファイルを開けない場合、異なる構成で記録されている場合、
+   *         またはこのJVMでメモリマップファイルをCASで更新できない場合
+   */
+  NumatrixSharedMemory(File file, NumatrixNumberLayout layout, int instanceId)
+      throws NumatrixNumberGenerateException {
+    if (UNSUPPORTED_CAUSE != null) {
+      throw new NumatrixNumberGenerateException(
+          "shared memory is not supported on this JVM. " + UNSUPPORTED_CAUSE);
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      FileLock lock = raf.getChannel().lock();
+      try {
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        long[] header = {layout.getTimestampBitLength(), layout.getSeqNumBitLength(),
+            layout.getInstanceIdBitLength(), instanceId, layout.getTickUnit().getMillis(),
+            layout.getBaseTime().getTime(), layout.isOutMinus() ? 1 : 0};
+        if (buffer.getInt(0) != MAGIC) {
+          for (int i = 0; i < header.length; i++) {
+            buffer.putLong(8 + i * 8, header[i]);
+          }
+          buffer.putLong(HEADER_SIZE, 0L);
+          buffer.putInt(0, MAGIC);
+        } else {
+          for (int i = 0; i < header.length; i++) {
+            if (buffer.getLong(8 + i * 8) != header[i]) {
+              throw new NumatrixNumberGenerateException(
+                  "shared memory file is used by a different layout. " + file.getAbsolutePath());
+            }
+          }
+        }
+        address = (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET) + HEADER_SIZE;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      throw new NumatrixNumberGenerateException(
+          "failed to open shared memory file. " + e.getMessage());
+    } catch (NumatrixNumberGenerateException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new NumatrixNumberGenerateException("shared memory is not supported on this JVM. " + e);
+    }
+  }
+
+  /**
+   * 現在の値を返します.
+   *
+   * @return 現在の値
+   */
+  long get() {
+    try {
+      return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * 現在の値が指定された値と等しい場合だけ、値を更新します.
+   *
+   * @param expect 期待する値
+   * @param update 新しい値
+   * @return 更新した場合は{@code true}
+   */
+  boolean compareAndSet(long expect, long update) {
+    try {
+      return (boolean) COMPARE_AND_SWAP_LONG.invokeExact((Object) null, address, expect, update);
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
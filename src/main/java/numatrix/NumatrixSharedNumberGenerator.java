@@ -0,0 +1,176 @@
+package numatrix;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 複数のスレッドから同時に使用できる{@link NumatrixNumberGenerator}です.<br>
+ * タイムスタンプと連続した番号を1つの{@code long}にまとめ、CASで更新することでロックせずに数値を生成します。<br>
+ * スレッドごとにインスタンスを割り当てないため、仮想スレッドや頻繁に入れ替わるスレッドプールから使用しても、
+ * {@link NumatrixNumberGeneratorFactory#getMaxGeneratorCount()}の上限に達しません。
+ * {@link #generate()}、{@link #generate(long[], int, int)}、{@link #reserve(int)}はすべてスレッドセーフです。<br>
+ * ファクトリからこのクラスのインスタンスを取得する場合は{@link NumatrixNumberGeneratorFactory#isSharedGenerator()}をオーバーライドしてください。
+ */
+public class NumatrixSharedNumberGenerator extends NumatrixNumberGenerator {
+
+  /**
+   * 最後に生成した数値のタイムスタンプと連続した番号です.<br>
+   * 上位ビットがタイムスタンプ、下位{@link #getSeqNumBitLength()}ビットが連続した番号です。
+   * 連続した番号が最大値の場合は、次の数値を生成する前にタイムスタンプを更新します。
+   */
+  private final AtomicLong state = new AtomicLong();
+  private volatile boolean initialized;
+
+  /**
+   * 指定されたIDで生成します.
+   *
+   * @param generatorId このインスタンスのID
+   * @param generatorIdBitLength このインスタンスのIDのビット長
+   */
+  public NumatrixSharedNumberGenerator(int generatorId, int generatorIdBitLength) {
+    super(generatorId, generatorIdBitLength);
+  }
+
+  @Override
+  public long getCurrentTimestamp() {
+    return initialized ? getStateValue() >>> getSeqNumBitLength() : 0;
+  }
+
+  @Override
+  public long getRemainingSeqNum() {
+    return initialized ? getMaxSeqNum() - (getStateValue() & getMaxSeqNum()) : 0;
+  }
+
+  @Override
+  boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  void warmUp() throws NumatrixNumberGenerateException {
+    ensureInitialized();
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約し、最初の数値を返します.<br>
+   * このメソッドはスレッドセーフです。
+   *
+   * @param count 予約する数値の最大数
+   * @param wait タイムスタンプの更新を待つ場合は{@code true}
+   * @return 予約された最初の数値
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合、
+   *         または待機せずにタイムスタンプを更新できない場合
+   */
+  @Override
+  long nextNumbers(int count, boolean wait) throws NumatrixNumberGenerateException {
+    ensureInitialized();
+    for (;;) {
+      long current = getStateValue();
+      long next = nextState(current, count, wait);
+      if (compareAndSetState(current, next)) {
+        return commit(current, next);
+      }
+    }
+  }
+
+  /**
+   * 初期化されていない場合は初期化します.
+   *
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  final void ensureInitialized() throws NumatrixNumberGenerateException {
+    if (!initialized) {
+      initialize();
+    }
+  }
+
+  /**
+   * 最後に生成した数値のタイムスタンプと連続した番号を返します.<br>
+   * 上位ビットがタイムスタンプ、下位{@link #getSeqNumBitLength()}ビットが連続した番号です。
+   *
+   * @return 最後に生成した数値のタイムスタンプと連続した番号
+   */
+  long getStateValue() {
+    return state.get();
+  }
+
+  /**
+   * 最後に生成した数値のタイムスタンプと連続した番号が指定された値と等しい場合だけ、更新します.
+   *
+   * @param expect 期待する値
+   * @param update 新しい値
+   * @return 更新した場合は{@code true}
+   */
+  boolean compareAndSetState(long expect, long update) {
+    return state.compareAndSet(expect, update);
+  }
+
+  /**
+   * 最後に生成した数値のタイムスタンプと連続した番号を初期化します.<br>
+   * このメソッドはインスタンスの初期化時に1度だけ呼ばれます。
+   *
+   * @param initialPosition 最後に使用した位置とみなす位置
+   * @throws NumatrixNumberGenerateException 初期化できない場合
+   */
+  void initState(long initialPosition) throws NumatrixNumberGenerateException {
+    state.set(initialPosition);
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約した後のタイムスタンプと連続した番号を返します.<br>
+   * 現在のタイムスタンプの連続した番号を使い切っている場合は、タイムスタンプを更新します。
+   * 更新に失敗して再試行する場合があるため、タイムスタンプを更新したことは{@link #commit(long, long)}で記録します。
+   *
+   * @param current 予約する前のタイムスタンプと連続した番号
+   * @param count 予約する数値の最大数
+   * @param wait タイムスタンプの更新を待つ場合は{@code true}
+   * @return 予約した後のタイムスタンプと連続した番号
+   * @throws NumatrixNumberGenerateException タイムスタンプを更新できない場合
+   */
+  final long nextState(long current, int count, boolean wait)
+      throws NumatrixNumberGenerateException {
+    long maxSeqNum = getMaxSeqNum();
+    long seqNum = current & maxSeqNum;
+    if (seqNum != maxSeqNum) {
+      return current + Math.min(count, maxSeqNum - seqNum);
+    }
+    long nextTimestamp = awaitNextTimestamp(current >>> getSeqNumBitLength(), wait);
+    return (nextTimestamp << getSeqNumBitLength()) + Math.min(count, maxSeqNum + 1) - 1;
+  }
+
+  /**
+   * {@link #nextState(long, int, boolean)}で予約された最初の数値を返します.<br>
+   * チェックポイントを使用する場合、予約がチェックポイントに記録されていなければ記録します。
+   * タイムスタンプを更新した場合は、更新したことを記録します。
+   * 更新に成功した後に、更新したスレッドから呼んでください。
+   *
+   * @param current 予約する前のタイムスタンプと連続した番号
+   * @param next 予約した後のタイムスタンプと連続した番号
+   * @return 予約された最初の数値
+   */
+  final long commit(long current, long next) {
+    if (next > getCheckpointPosition()) {
+      checkpoint(next);
+    }
+    int seqNumBitLength = getSeqNumBitLength();
+    long maxSeqNum = getMaxSeqNum();
+    if ((current & maxSeqNum) != maxSeqNum) {
+      return compose(current >>> seqNumBitLength, (current & maxSeqNum) + 1);
+    }
+    rollover(current >>> seqNumBitLength, next >>> seqNumBitLength);
+    return compose(next >>> seqNumBitLength, 0);
+  }
+
+  /**
+   * このインスタンスを初期化します.
+   *
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合
+   */
+  private synchronized void initialize() throws NumatrixNumberGenerateException {
+    if (!initialized) {
+      init();
+      initState(getInitialPosition());
+      initialized = true;
+    }
+  }
+
+}
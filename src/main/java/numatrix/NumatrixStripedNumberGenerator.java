@@ -0,0 +1,178 @@
+package numatrix;
+
+import java.util.Date;
+
+/**
+ * 複数の{@link NumatrixSharedNumberGenerator}を束ねて、複数のスレッドから同時に使用できる{@link NumatrixNumberGenerator}です.<br>
+ * 束ねられた{@link NumatrixSharedNumberGenerator}をストライプと呼びます。各スレッドはスレッド毎の値からストライプを選び、
+ * 選んだストライプの更新が他のスレッドと競合した場合は別のストライプに移ります。<br>
+ * インスタンスのIDはスレッド毎ではなくストライプ毎に割り当てられるため、インスタンスのIDのビット長はスレッド数ではなくストライプ数で決まります。
+ * {@link #generate()}、{@link #generate(long[], int, int)}、{@link #reserve(int)}はすべてスレッドセーフです。<br>
+ * 数値の構成に関するメソッドは最初のストライプの値を返します。
+ * ファクトリからこのクラスのインスタンスを取得する場合は{@link NumatrixNumberGeneratorFactory#getStripeCount()}をオーバーライドしてください。
+ */
+public class NumatrixStripedNumberGenerator extends NumatrixNumberGenerator {
+
+  /**
+   * スレッド毎のストライプを選ぶための値です.<br>
+   * 初期値はスレッドのIDから求め、競合した場合に更新します。
+   */
+  private static final ThreadLocal<int[]> probe = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      int value = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32);
+      return new int[] {value != 0 ? value : 1};
+    }
+  };
+
+  private final NumatrixSharedNumberGenerator[] stripes;
+
+  /**
+   * 指定されたストライプを束ねて生成します.<br>
+   * ストライプはすべて同じ数値の構成でなければなりません。
+   *
+   * @param generatorId このインスタンスのID。最初のストライプのIDを指定してください
+   * @param generatorIdBitLength このインスタンスのIDのビット長
+   * @param stripes ストライプ
+   * @throws IllegalArgumentException ストライプが指定されていない場合
+   */
+  public NumatrixStripedNumberGenerator(int generatorId, int generatorIdBitLength,
+      NumatrixSharedNumberGenerator... stripes) {
+    super(generatorId, generatorIdBitLength);
+    if (stripes.length == 0) {
+      throw new IllegalArgumentException("stripes must not be empty.");
+    }
+    this.stripes = stripes.clone();
+  }
+
+  /**
+   * ストライプの数を返します.
+   *
+   * @return ストライプの数
+   */
+  public final int getStripeCount() {
+    return stripes.length;
+  }
+
+  @Override
+  public boolean isOutMinus() {
+    return stripes[0].isOutMinus();
+  }
+
+  @Override
+  public int getTimestampBitLength() {
+    return stripes[0].getTimestampBitLength();
+  }
+
+  @Override
+  public int getShardBitLength() {
+    return stripes[0].getShardBitLength();
+  }
+
+  @Override
+  public int getShardId() {
+    return stripes[0].getShardId();
+  }
+
+  @Override
+  public NumatrixTickUnit getTickUnit() {
+    return stripes[0].getTickUnit();
+  }
+
+  @Override
+  public long getMaxDriftMillis() {
+    return stripes[0].getMaxDriftMillis();
+  }
+
+  @Override
+  public NumatrixClockRegressionPolicy getClockRegressionPolicy() {
+    return stripes[0].getClockRegressionPolicy();
+  }
+
+  @Override
+  public Date getBaseTime() {
+    return stripes[0].getBaseTime();
+  }
+
+  @Override
+  public NumatrixClock getClock() {
+    return stripes[0].getClock();
+  }
+
+  /**
+   * すべてのストライプの現在のタイムスタンプのうち、最大のものを返します.
+   *
+   * @return 現在のタイムスタンプ
+   */
+  @Override
+  public long getCurrentTimestamp() {
+    long timestamp = 0;
+    for (NumatrixSharedNumberGenerator stripe : stripes) {
+      timestamp = Math.max(timestamp, stripe.getCurrentTimestamp());
+    }
+    return timestamp;
+  }
+
+  /**
+   * すべてのストライプの現在のタイムスタンプで残っている連続した番号の数の合計を返します.
+   *
+   * @return 現在のタイムスタンプで残っている連続した番号の数
+   */
+  @Override
+  public long getRemainingSeqNum() {
+    long remaining = 0;
+    for (NumatrixSharedNumberGenerator stripe : stripes) {
+      remaining += stripe.getRemainingSeqNum();
+    }
+    return remaining;
+  }
+
+  @Override
+  boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  void warmUp() throws NumatrixNumberGenerateException {
+    init();
+    for (NumatrixSharedNumberGenerator stripe : stripes) {
+      stripe.ensureInitialized();
+    }
+  }
+
+  /**
+   * 連続した番号を最大で指定された数だけ予約し、最初の数値を返します.<br>
+   * スレッド毎に選んだストライプから予約します。ストライプの更新が他のスレッドと競合した場合は、別のストライプを選び直します。<br>
+   * このメソッドはスレッドセーフです。
+   *
+   * @param count 予約する数値の最大数
+   * @param wait タイムスタンプの更新を待つ場合は{@code true}
+   * @return 予約された最初の数値
+   * @throws NumatrixNumberGenerateException 数値の構成に必要なサイズが64ビットを超えた場合、
+   *         または待機せずにタイムスタンプを更新できない場合
+   */
+  @Override
+  long nextNumbers(int count, boolean wait) throws NumatrixNumberGenerateException {
+    init();
+    int[] threadProbe = probe.get();
+    int value = threadProbe[0];
+    boolean contended = false;
+    for (;;) {
+      NumatrixSharedNumberGenerator stripe = stripes[(value & Integer.MAX_VALUE) % stripes.length];
+      stripe.ensureInitialized();
+      long current = stripe.getStateValue();
+      long next = stripe.nextState(current, count, wait);
+      if (stripe.compareAndSetState(current, next)) {
+        if (contended) {
+          threadProbe[0] = value;
+        }
+        return stripe.commit(current, next);
+      }
+      value ^= value << 13;
+      value ^= value >>> 17;
+      value ^= value << 5;
+      contended = true;
+    }
+  }
+
+}
@@ -0,0 +1,35 @@
+package numatrix;
+
+/**
+ * 数値を構成するタイムスタンプの1単位の長さです.<br>
+ * {@link NumatrixNumberGenerator#getTickUnit()}をオーバーライドして変更します。
+ */
+public enum NumatrixTickUnit {
+
+  /** 1ミリ秒. */
+  MILLISECONDS(1L),
+
+  /** 10ミリ秒. */
+  TEN_MILLISECONDS(10L),
+
+  /** 100ミリ秒. */
+  HUNDRED_MILLISECONDS(100L),
+
+  /** 1秒. */
+  SECONDS(1000L);
+
+  private final long millis;
+
+  private NumatrixTickUnit(long millis) {
+    this.millis = millis;
+  }
+
+  /**
+   * 1単位の長さをミリ秒で返します.
+   *
+   * @return 1単位の長さ（ミリ秒）
+   */
+  public long getMillis() {
+    return millis;
+  }
+}
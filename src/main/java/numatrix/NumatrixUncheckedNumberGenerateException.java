@@ -0,0 +1,28 @@
+package numatrix;
+
+/**
+ * {@link NumatrixNumberGenerateException}を非チェック例外で包んだ例外です.<br>
+ * {@link NumatrixNumberGenerator#stream()}や{@link NumatrixNumberGenerator#iterator()}など、
+ * チェック例外を投げられないメソッドで数値を生成できない場合に発生します。
+ */
+public class NumatrixUncheckedNumberGenerateException extends RuntimeException {
+
+  /**
+   * 指定された例外を包みます.
+   *
+   * @param cause 数値を生成できなかった例外
+   */
+  public NumatrixUncheckedNumberGenerateException(NumatrixNumberGenerateException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  /**
+   * 数値を生成できなかった例外を返します.
+   *
+   * @return 数値を生成できなかった例外
+   */
+  @Override
+  public synchronized NumatrixNumberGenerateException getCause() {
+    return (NumatrixNumberGenerateException) super.getCause();
+  }
+}
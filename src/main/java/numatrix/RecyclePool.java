@@ -1,29 +1,57 @@
 package numatrix;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.WeakHashMap;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Keep element of each thread, and another thread can reuse element when that thread disappears.
+ * <p>
+ * Elements that are not kept by any thread are held in a lock-free free list, so {@link #get()},
+ * {@link #add(Object)} and {@link #release()} take constant time. An element is returned to the
+ * free list either explicitly by {@link #release()} or {@link Lease#close()}, or, when the keeping
+ * thread disappears without releasing it, by a background thread that watches a
+ * {@link ReferenceQueue} of the keeping threads. This pool never requests garbage collection; an
+ * element of a disappeared thread becomes reusable after the next garbage collection that clears
+ * the thread, or by {@link #refresh()} as soon as the thread terminates.
  *
  * @param <E> The element type of this pool
  */
 public class RecyclePool<E> {
 
-  private final List<E> elementList = new ArrayList<>();
-  private final WeakHashMap<Thread, E> weakElementMap = new WeakHashMap<>();
+  private final ThreadLocal<Owner<E>> localOwner = new ThreadLocal<>();
+  private final Set<Owner<E>> owners =
+      Collections.newSetFromMap(new ConcurrentHashMap<Owner<E>, Boolean>());
+  private final Queue<E> freeList = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicInteger borrowedCount = new AtomicInteger();
+  private final AtomicLong reclaimedCount = new AtomicLong();
 
   /**
-   * Appends the specified element to the this pool.
+   * Appends the specified element to the this pool. the element is kept by current thread.
    *
    * @param element element to be appended to this pool
    */
   public void add(E element) {
-    synchronized (elementList) {
-      elementList.add(element);
-      weakElementMap.put(Thread.currentThread(), element);
-    }
+    size.incrementAndGet();
+    keep(element);
+  }
+
+  /**
+   * Appends the specified element to the this pool without keeping it. the element can be returned
+   * by {@link #get()} of any thread.
+   *
+   * @param element element to be appended to this pool
+   */
+  public void addIdle(E element) {
+    size.incrementAndGet();
+    freeList.offer(element);
   }
 
   /**
@@ -32,50 +60,225 @@ public class RecyclePool<E> {
    * @return the number of elements in this pool
    */
   public int size() {
-    return elementList.size();
+    return size.get();
+  }
+
+  /**
+   * Returns the number of elements in this pool that are not kept by any thread. this method takes
+   * time proportional to that number.
+   *
+   * @return the number of elements not kept by any thread
+   */
+  public int idleSize() {
+    return freeList.size();
+  }
+
+  /**
+   * Returns how many times an element has been returned to the free list, either released or
+   * reclaimed from a disappeared thread.
+   *
+   * @return the number of times an element has been returned to the free list
+   */
+  public long getReclaimedCount() {
+    return reclaimedCount.get();
   }
 
   /**
    * Returns the element keeping by current thread. if current thread does not keep element then,
    * keeping and returning the element kept by disappear thread. or {@code null} if all elements of
-   * this pool are kept by other threads.
+   * this pool are kept by other threads. if the free list is empty only because elements are
+   * borrowed by {@link #borrow()}, waits until one of them is given back.
    *
    * @return the element kept by current thread
    */
   public E get() {
-    Thread currentThread = Thread.currentThread();
-    E myElement = weakElementMap.get(currentThread);
-    if (myElement != null) {
-      return myElement;
+    Owner<E> owner = localOwner.get();
+    if (owner != null && !owner.released) {
+      return owner.element;
+    }
+    E element = freeList.poll();
+    while (element == null && borrowedCount.get() > 0) {
+      Thread.yield();
+      element = freeList.poll();
+    }
+    if (element == null) {
+      return null;
     }
-    synchronized (elementList) {
-      if (elementList.size() <= weakElementMap.size()) {
-        return null;
+    keep(element);
+    return element;
+  }
+
+  /**
+   * Returns the lease of the element kept by current thread, or {@code null} if current thread
+   * does not keep element. closing the lease releases the element.
+   *
+   * @return the lease of the element kept by current thread
+   */
+  public Lease<E> lease() {
+    Owner<E> owner = localOwner.get();
+    if (owner == null || owner.released) {
+      return null;
+    }
+    return owner;
+  }
+
+  /**
+   * Releases the element kept by current thread, and another thread can reuse it immediately. do
+   * nothing if current thread does not keep element.
+   */
+  public void release() {
+    Owner<E> owner = localOwner.get();
+    if (owner != null) {
+      owner.close();
+    }
+  }
+
+  /**
+   * Reclaims elements kept by the threads already terminated. this method takes time proportional
+   * to the number of kept elements, so call it only when {@link #get()} returns {@code null}.
+   */
+  public void refresh() {
+    Reclaimer.drain();
+    for (Owner<E> owner : owners) {
+      Thread thread = owner.get();
+      if (thread == null || !thread.isAlive()) {
+        owner.reclaim();
       }
-      for (E element : elementList) {
-        if (!weakElementMap.containsValue(element)) {
-          weakElementMap.put(currentThread, element);
-          myElement = element;
-          break;
-        }
+    }
+  }
+
+  /**
+   * Removes an element that is not kept by any thread from this pool without keeping it, or returns
+   * {@code null} if there is no such element. the caller has exclusive use of the element until it
+   * passes the element to {@link #giveBack(Object)}. while the element is borrowed, {@link #get()}
+   * of other threads waits for it instead of returning {@code null}, so give it back promptly.
+   *
+   * @return the element removed from the free list
+   */
+  public E borrow() {
+    // count before polling, so that get() never sees an element that is neither free nor counted
+    borrowedCount.incrementAndGet();
+    E element = freeList.poll();
+    if (element == null) {
+      borrowedCount.decrementAndGet();
+    }
+    return element;
+  }
+
+  /**
+   * Returns the element removed by {@link #borrow()} to this pool, and another thread can reuse it
+   * immediately.
+   *
+   * @param element the element removed by {@link #borrow()}
+   */
+  public void giveBack(E element) {
+    freeList.offer(element);
+    borrowedCount.decrementAndGet();
+  }
+
+  private void keep(E element) {
+    Owner<E> owner = new Owner<>(this, element);
+    owners.add(owner);
+    localOwner.set(owner);
+  }
+
+  /**
+   * Lease of the element kept by a thread.
+   *
+   * @param <E> The element type of the pool
+   */
+  public interface Lease<E> extends AutoCloseable {
+
+    /**
+     * Returns the element of this lease.
+     *
+     * @return the element of this lease
+     */
+    E getElement();
+
+    /**
+     * Releases the element of this lease, and another thread can reuse it immediately. closing a
+     * lease more than once has no effect.
+     */
+    @Override
+    void close();
+  }
+
+  /**
+   * Weak reference to the thread keeping an element.
+   *
+   * @param <E> The element type of the pool
+   */
+  private static final class Owner<E> extends WeakReference<Thread> implements Lease<E> {
+
+    private final RecyclePool<E> pool;
+    private final E element;
+    private volatile boolean released;
+
+    Owner(RecyclePool<E> pool, E element) {
+      super(Thread.currentThread(), Reclaimer.QUEUE);
+      this.pool = pool;
+      this.element = element;
+      Reclaimer.start();
+    }
+
+    @Override
+    public E getElement() {
+      return element;
+    }
+
+    @Override
+    public void close() {
+      clear();
+      reclaim();
+    }
+
+    void reclaim() {
+      if (pool.owners.remove(this)) {
+        released = true;
+        pool.reclaimedCount.incrementAndGet();
+        pool.freeList.offer(element);
       }
     }
-    return myElement;
   }
 
   /**
-   * Execute garbage collection for reusing elements kept by the thread to be disappear.
+   * Background thread returning elements of the collected threads to their pools.
    */
-  public void refresh() {
-    for (int retry = 0; retry <= 10; retry++) {
-      System.gc();
-      if (elementList.size() > weakElementMap.size()) {
+  private static final class Reclaimer implements Runnable {
+
+    static final ReferenceQueue<Thread> QUEUE = new ReferenceQueue<>();
+    private static volatile boolean started;
+
+    static void start() {
+      if (started) {
         return;
       }
-      try {
-        Thread.sleep(1);
-      } catch (InterruptedException e) {
-        ;
+      synchronized (Reclaimer.class) {
+        if (!started) {
+          Thread thread = new Thread(new Reclaimer(), "numatrix-recycle-pool-reclaimer");
+          thread.setDaemon(true);
+          thread.start();
+          started = true;
+        }
+      }
+    }
+
+    static void drain() {
+      Owner<?> owner;
+      while ((owner = (Owner<?>) QUEUE.poll()) != null) {
+        owner.reclaim();
+      }
+    }
+
+    @Override
+    public void run() {
+      for (;;) {
+        try {
+          ((Owner<?>) QUEUE.remove()).reclaim();
+        } catch (InterruptedException e) {
+          ;
+        }
       }
     }
   }
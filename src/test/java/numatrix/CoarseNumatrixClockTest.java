@@ -0,0 +1,47 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class CoarseNumatrixClockTest {
+
+  @Test(timeout = 10000)
+  public void 停止した後も連続した番号を使い切って生成を続けるテスト() throws Exception {
+    final CoarseNumatrixClock clock = new CoarseNumatrixClock(60000L);
+    NumatrixNumberGenerator generator = new NumatrixNumberGenerator(1, 4) {
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        // 連続した番号は4ビット
+        return 55;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return clock;
+      }
+    };
+    generator.generate();
+    clock.close();
+    Set<Long> numbers = new HashSet<>();
+    long previous = -1;
+    for (int i = 0; i < 100; i++) {
+      long number = generator.generate();
+      assertTrue(number > previous);
+      previous = number;
+      numbers.add(number);
+    }
+    assertThat(numbers.size(), equalTo(100));
+    long before = System.currentTimeMillis();
+    Thread.sleep(10);
+    assertTrue(clock.currentTimeMillis() > before);
+  }
+
+}
@@ -0,0 +1,30 @@
+package numatrix;
+
+/**
+ * テストで時刻を操作するための時計です.<br>
+ * 時刻を読むたびに{@link #setStep(long)}で指定された時間だけ進みます。
+ */
+public class ManualNumatrixClock implements NumatrixClock {
+
+  private volatile long millis;
+  private volatile long step;
+
+  public ManualNumatrixClock(long millis) {
+    this.millis = millis;
+  }
+
+  public void set(long millis) {
+    this.millis = millis;
+  }
+
+  public void setStep(long step) {
+    this.step = step;
+  }
+
+  @Override
+  public synchronized long currentTimeMillis() {
+    long current = millis;
+    millis = current + step;
+    return current;
+  }
+}
@@ -0,0 +1,124 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class NumatrixBase32Test {
+
+  private static final long[] NUMBERS =
+      {0L, 1L, 31L, 32L, Long.MAX_VALUE, Long.MIN_VALUE, -1L, 0x0123456789ABCDEFL};
+
+  @Test
+  public void 固定長の文字列に変換して戻すテスト() throws Exception {
+    assertThat(NumatrixBase32.toString(0L), equalTo("0000000000000"));
+    assertThat(NumatrixBase32.toString(32L), equalTo("0000000000010"));
+    assertThat(NumatrixBase32.toString(-1L), equalTo("FZZZZZZZZZZZZ"));
+    assertThat(NumatrixBase32.toString(Long.MAX_VALUE), equalTo("7ZZZZZZZZZZZZ"));
+    for (long number : NUMBERS) {
+      String text = NumatrixBase32.toString(number);
+      assertThat(text.length(), equalTo(NumatrixBase32.LENGTH));
+      assertThat(NumatrixBase32.decode(text, 0), equalTo(number));
+      assertThat(NumatrixBase32.append(number, new StringBuilder("id=")).toString(),
+          equalTo("id=" + text));
+
+      char[] chars = new char[15];
+      assertThat(NumatrixBase32.encode(number, chars, 1), equalTo(14));
+      assertThat(new String(chars, 1, 13), equalTo(text));
+      assertThat(NumatrixBase32.decode(chars, 1), equalTo(number));
+
+      byte[] bytes = new byte[13];
+      assertThat(NumatrixBase32.encode(number, bytes, 0), equalTo(13));
+      assertThat(new String(bytes, StandardCharsets.US_ASCII), equalTo(text));
+      assertThat(NumatrixBase32.decode(bytes, 0), equalTo(number));
+
+      ByteBuffer buffer = ByteBuffer.allocate(20);
+      buffer.position(2);
+      NumatrixBase32.encode(number, buffer);
+      assertThat(buffer.position(), equalTo(15));
+      buffer.flip().position(2);
+      assertThat(NumatrixBase32.decode(buffer), equalTo(number));
+      assertThat(buffer.position(), equalTo(15));
+    }
+  }
+
+  @Test
+  public void 辞書順が符号なしの大小関係と同じになるテスト() throws Exception {
+    Random random = new Random(0);
+    long[] numbers = new long[1000];
+    String[] texts = new String[numbers.length];
+    for (int i = 0; i < numbers.length; i++) {
+      numbers[i] = random.nextLong() >>> random.nextInt(64);
+      texts[i] = NumatrixBase32.toString(numbers[i]);
+    }
+    for (int i = 1; i < numbers.length; i++) {
+      assertThat(Integer.signum(texts[i - 1].compareTo(texts[i])),
+          equalTo(Integer.signum(Long.compareUnsigned(numbers[i - 1], numbers[i]))));
+    }
+  }
+
+  @Test
+  public void まとめて変換するテスト() throws Exception {
+    char[] chars = new char[NUMBERS.length * NumatrixBase32.LENGTH];
+    assertThat(NumatrixBase32.encode(NUMBERS, 0, chars, 0, NUMBERS.length),
+        equalTo(chars.length));
+    long[] decoded = new long[NUMBERS.length];
+    NumatrixBase32.decode(chars, 0, decoded, 0, NUMBERS.length);
+    assertThat(decoded, equalTo(NUMBERS));
+
+    byte[] bytes = new byte[NUMBERS.length * NumatrixBase32.LENGTH];
+    NumatrixBase32.encode(NUMBERS, 0, bytes, 0, NUMBERS.length);
+    assertThat(new String(bytes, StandardCharsets.US_ASCII), equalTo(new String(chars)));
+    Arrays.fill(decoded, 0L);
+    NumatrixBase32.decode(bytes, 0, decoded, 0, NUMBERS.length);
+    assertThat(decoded, equalTo(NUMBERS));
+
+    LongBuffer src = LongBuffer.wrap(NUMBERS);
+    ByteBuffer dst = ByteBuffer.allocate(NumatrixBase32.LENGTH * 3 + 5);
+    NumatrixBase32.encode(src, dst);
+    assertThat(src.position(), equalTo(3));
+    assertThat(dst.position(), equalTo(NumatrixBase32.LENGTH * 3));
+
+    try {
+      NumatrixBase32.encode(NUMBERS, 0, new char[chars.length - 1], 0, NUMBERS.length);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      assertThat(e.getMessage(), equalTo("offset: 0, count: 8, length: 103"));
+    }
+  }
+
+  @Test
+  public void 紛らわしい文字と不正な文字のテスト() throws Exception {
+    assertThat(NumatrixBase32.decode("0000000000o1l", 0), equalTo(33L));
+    assertThat(NumatrixBase32.decode("000000000000I", 0), equalTo(1L));
+    assertThat(NumatrixBase32.decode("fzzzzzzzzzzzz", 0), equalTo(-1L));
+    for (String text : new String[] {"000000000000U", "G000000000000", "00000000000-0"}) {
+      try {
+        NumatrixBase32.decode(text, 0);
+        fail(text);
+      } catch (NumberFormatException e) {
+        assertThat(e.getMessage(), startsWith("invalid base32 character: "));
+      }
+    }
+    try {
+      NumatrixBase32.decode("000", 0);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      assertThat(e.getMessage(), equalTo("offset: 0, count: 1, length: 3"));
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(12);
+    try {
+      NumatrixBase32.encode(1L, buffer);
+      fail();
+    } catch (BufferOverflowException e) {
+      assertThat(buffer.position(), equalTo(0));
+    }
+  }
+
+}
@@ -0,0 +1,180 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NumatrixCheckpointFileTest {
+
+  private static final long NOW = 1600000000000L;
+
+  private File file;
+
+  class CheckpointFactory extends NumatrixNumberGeneratorFactory {
+
+    private final int typeId;
+    private final boolean shared;
+    private final NumatrixClock clock;
+
+    CheckpointFactory(int typeId, boolean shared, NumatrixClock clock) {
+      this.typeId = typeId;
+      this.shared = shared;
+      this.clock = clock;
+    }
+
+    @Override
+    protected int getTypeId() {
+      return typeId;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return 1;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 2;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return 2;
+    }
+
+    @Override
+    protected boolean isSharedGenerator() {
+      return shared;
+    }
+
+    @Override
+    protected File getCheckpointFile() {
+      return file;
+    }
+
+    @Override
+    protected int getCheckpointBlockSize() {
+      return 10;
+    }
+
+    @Override
+    protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+      return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          // 連続した番号は5ビット
+          return 56;
+        }
+
+        @Override
+        public NumatrixClock getClock() {
+          return clock;
+        }
+      };
+    }
+
+    @Override
+    protected NumatrixSharedNumberGenerator makeSharedGenerator(int generatorId,
+        int generatorIdBitLength) {
+      return new NumatrixSharedNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          return 56;
+        }
+
+        @Override
+        public NumatrixClock getClock() {
+          return clock;
+        }
+      };
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("numatrix", ".checkpoint");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test(timeout = 10000)
+  public void 同じタイムスタンプの間に再起動しても待機せずに続きから生成するテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = new CheckpointFactory(18, false, clock).getGenerator();
+    long last = 0;
+    for (int i = 0; i < 15; i++) {
+      last = generator.generate();
+    }
+    NumatrixNumberLayout layout = generator.getLayout();
+    assertThat(layout.sequenceOf(last), equalTo(14L));
+
+    NumatrixNumberGenerator restarted = new CheckpointFactory(19, false, clock).getGenerator();
+    long number = restarted.generate();
+    assertThat(layout.instanceIdOf(number), equalTo(layout.instanceIdOf(last)));
+    assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(last)));
+    assertThat(layout.sequenceOf(number), equalTo(22L));
+  }
+
+  @Test(timeout = 10000)
+  public void 連続した番号を使い切って再起動した場合はタイムスタンプを進めるテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = new CheckpointFactory(20, false, clock).getGenerator();
+    long[] numbers = new long[32];
+    generator.generate(numbers, 0, numbers.length);
+    NumatrixNumberLayout layout = generator.getLayout();
+    assertThat(layout.sequenceOf(numbers[31]), equalTo(31L));
+
+    clock.set(NOW - 1000L);
+    NumatrixNumberGenerator restarted = new CheckpointFactory(21, false, clock).getGenerator();
+    long number = restarted.generate();
+    assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(numbers[31]) + 1));
+    assertTrue(number > numbers[31]);
+    assertThat(restarted.getDriftMillis(), equalTo(1001L));
+  }
+
+  @Test(timeout = 10000)
+  public void 時刻が進んでから再起動した場合は現在時刻から生成するテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = new CheckpointFactory(22, false, clock).getGenerator();
+    long last = generator.generate();
+
+    clock.set(NOW + 5L);
+    NumatrixNumberGenerator restarted = new CheckpointFactory(23, false, clock).getGenerator();
+    long number = restarted.generate();
+    NumatrixNumberLayout layout = generator.getLayout();
+    assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(last) + 5));
+    assertThat(layout.sequenceOf(number), equalTo(0L));
+  }
+
+  @Test(timeout = 10000)
+  public void 複数のスレッドで共有するインスタンスも続きから生成するテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = new CheckpointFactory(24, true, clock).getGenerator();
+    NumatrixNumberRange range = generator.reserve(12);
+    long last = range.get(range.getCount() - 1);
+
+    NumatrixNumberGenerator restarted = new CheckpointFactory(25, true, clock).getGenerator();
+    long number = restarted.generate();
+    NumatrixNumberLayout layout = generator.getLayout();
+    assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(last)));
+    assertThat(layout.sequenceOf(number), equalTo(22L));
+  }
+
+}
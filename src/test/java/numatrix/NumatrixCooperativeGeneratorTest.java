@@ -0,0 +1,233 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class NumatrixCooperativeGeneratorTest {
+
+  private static final long NOW = 1600000000000L;
+
+  static class CooperativeFactory extends NumatrixNumberGeneratorFactory {
+
+    private final int typeId;
+    private final int maxGeneratorCount;
+    private final NumatrixClock clock;
+
+    CooperativeFactory(int typeId, int maxGeneratorCount, NumatrixClock clock) {
+      this.typeId = typeId;
+      this.maxGeneratorCount = maxGeneratorCount;
+      this.clock = clock;
+    }
+
+    @Override
+    protected int getTypeId() {
+      return typeId;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return 0;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 1;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return maxGeneratorCount;
+    }
+
+    @Override
+    protected boolean isCooperativeGenerator() {
+      return true;
+    }
+
+    @Override
+    protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+      final int timestampBitLength = 63 - generatorIdBitLength - 4;
+      return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          // 連続した番号は4ビット
+          return timestampBitLength;
+        }
+
+        @Override
+        public NumatrixClock getClock() {
+          return clock;
+        }
+      };
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void 連続した番号を使い切ったら使われていないインスタンスを借りるテスト() throws Exception {
+    final ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGeneratorFactory factory = new CooperativeFactory(30, 4, clock);
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    NumatrixNumberLayout layout = factory.getLayout();
+    long[] numbers = new long[64];
+    generator.generate(numbers, 0, numbers.length);
+    Set<Long> numberSet = new HashSet<>();
+    Set<Integer> instanceIdSet = new HashSet<>();
+    for (long number : numbers) {
+      numberSet.add(number);
+      instanceIdSet.add(layout.instanceIdOf(number));
+      assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(numbers[0])));
+    }
+    assertThat(numberSet.size(), equalTo(64));
+    assertThat(instanceIdSet.size(), equalTo(4));
+
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          ;
+        }
+        clock.set(NOW + 1);
+      }
+    }.start();
+    long number = generator.generate();
+    assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(numbers[0]) + 1));
+    assertThat(numberSet.contains(number), equalTo(false));
+  }
+
+  @Test(timeout = 10000)
+  public void スレッドに割り当てられたインスタンスは借りないテスト() throws Exception {
+    final ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    final NumatrixNumberGeneratorFactory factory = new CooperativeFactory(31, 3, clock);
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    final NumatrixNumberGenerator[] other = new NumatrixNumberGenerator[1];
+    final CountDownLatch taken = new CountDownLatch(1);
+    final CountDownLatch finished = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          other[0] = factory.getGenerator();
+          taken.countDown();
+          finished.await();
+        } catch (NumatrixNumberGenerateException | InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    thread.start();
+    taken.await();
+    NumatrixNumberLayout layout = factory.getLayout();
+    long[] numbers = new long[32];
+    generator.generate(numbers, 0, numbers.length);
+    Set<Integer> instanceIdSet = new HashSet<>();
+    for (long number : numbers) {
+      instanceIdSet.add(layout.instanceIdOf(number));
+    }
+    assertThat(instanceIdSet.size(), equalTo(2));
+    assertThat(instanceIdSet.contains(layout.instanceIdOf(other[0].generate())), equalTo(false));
+    finished.countDown();
+    thread.join();
+  }
+
+  @Test(timeout = 30000)
+  public void 複数のスレッドから同時に生成しても数値が重複しないテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    clock.setStep(1);
+    final NumatrixNumberGeneratorFactory factory = new CooperativeFactory(32, 8, clock);
+    final int threadCount = 3;
+    final int count = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws Exception {
+          NumatrixNumberGenerator generator = factory.getGenerator();
+          long[] numbers = new long[count];
+          for (int i = 0; i < count; i++) {
+            numbers[i] = generator.generate();
+          }
+          return numbers;
+        }
+      }));
+    }
+    Set<Long> numberSet = new HashSet<>();
+    for (Future<long[]> future : futures) {
+      for (long number : future.get()) {
+        numberSet.add(number);
+      }
+    }
+    executor.shutdown();
+    assertThat(numberSet.size(), equalTo(threadCount * count));
+  }
+
+  @Test(timeout = 10000)
+  public void 他のインスタンスを借りている間も新しいスレッドにインスタンスを割り当てるテスト() throws Exception {
+    final AtomicInteger armedReads = new AtomicInteger(-1);
+    final CountDownLatch borrowed = new CountDownLatch(1);
+    final CountDownLatch resume = new CountDownLatch(1);
+    // 使い切った後の2回目の読み込み（借りたインスタンスのタイムスタンプの更新）で止まる時計
+    NumatrixClock clock = new NumatrixClock() {
+      @Override
+      public long currentTimeMillis() {
+        if (armedReads.get() >= 0 && armedReads.incrementAndGet() == 2) {
+          borrowed.countDown();
+          try {
+            resume.await();
+          } catch (InterruptedException e) {
+            ;
+          }
+        }
+        return NOW;
+      }
+    };
+    final NumatrixNumberGeneratorFactory factory = new CooperativeFactory(41, 2, clock);
+    final NumatrixNumberGenerator generator = factory.getGenerator();
+    long[] numbers = new long[16];
+    generator.generate(numbers, 0, numbers.length);
+    armedReads.set(0);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<Long> busy = executor.submit(new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return generator.generate();
+      }
+    });
+    borrowed.await();
+    Future<NumatrixNumberGenerator> other = executor.submit(
+        new Callable<NumatrixNumberGenerator>() {
+          @Override
+          public NumatrixNumberGenerator call() throws Exception {
+            return factory.getGenerator();
+          }
+        });
+    Thread.sleep(100);
+    assertThat(other.isDone(), equalTo(false));
+    resume.countDown();
+    NumatrixNumberLayout layout = factory.getLayout();
+    int siblingId = layout.instanceIdOf(busy.get());
+    assertThat(siblingId, not(equalTo(layout.instanceIdOf(numbers[0]))));
+    assertThat(other.get(), not(sameInstance(generator)));
+    assertThat(layout.instanceIdOf(other.get().generate()), equalTo(siblingId));
+    executor.shutdown();
+  }
+
+}
@@ -0,0 +1,129 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.List;
+import org.junit.Test;
+
+public class NumatrixHeadroomMonitorTest {
+
+  private static final long NOW = 1600000000000L;
+
+  @Test
+  public void 連続した番号の使用率と期限を警告するテスト() throws Exception {
+    final ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGeneratorFactory factory = new NumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 36;
+      }
+
+      @Override
+      protected int getJvmId() {
+        return 0;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        return 2;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 2;
+      }
+
+      @Override
+      protected boolean isMetricsEnabled() {
+        return true;
+      }
+
+      @Override
+      protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+        return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+          @Override
+          public NumatrixTickUnit getTickUnit() {
+            return NumatrixTickUnit.MILLISECONDS;
+          }
+
+          @Override
+          public int getTimestampBitLength() {
+            // 連続した番号は3ビット
+            return 58;
+          }
+
+          @Override
+          public NumatrixClock getClock() {
+            return clock;
+          }
+        };
+      }
+    };
+    NumatrixHeadroomMonitor monitor =
+        new NumatrixHeadroomMonitor(factory.getMetrics(), 0.5, Long.MAX_VALUE);
+    assertThat(monitor.check().size(), equalTo(0));
+
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    generator.generate(new long[8], 0, 8);
+    clock.set(NOW + 1);
+    generator.generate();
+    List<String> warnings = monitor.check();
+    assertThat(warnings.size(), equalTo(2));
+    assertThat(warnings.get(0), equalTo("typeId 36: a generator used all 8 sequence numbers"
+        + " within 1 MILLISECONDS (about 8000 ids/s of 8000 ids/s per generator)."
+        + " it will sleep when the rate grows."));
+    assertThat(warnings.get(1), startsWith("typeId 36: timestamp expires in "));
+
+    // 前回から使い切っていなければ使用率は警告しない
+    warnings = monitor.check();
+    assertThat(warnings.size(), equalTo(1));
+    assertThat(warnings.get(0), startsWith("typeId 36: timestamp expires in "));
+    assertThat(new NumatrixHeadroomMonitor(factory.getMetrics(), 0.5, 0L).check().size(),
+        equalTo(0));
+  }
+
+  @Test
+  public void 引数のテスト() throws Exception {
+    try {
+      new NumatrixHeadroomMonitor(null, 0.5, 0L);
+      fail();
+    } catch (NullPointerException e) {
+      assertThat(e.getMessage(), equalTo("metrics is not enabled."));
+    }
+    NumatrixNumberGeneratorMetrics metrics = new NumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 37;
+      }
+
+      @Override
+      protected int getJvmId() {
+        return 0;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        return 1;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 1;
+      }
+
+      @Override
+      protected boolean isMetricsEnabled() {
+        return true;
+      }
+    }.getMetrics();
+    for (double threshold : new double[] {0.0, 1.5, Double.NaN}) {
+      try {
+        new NumatrixHeadroomMonitor(metrics, threshold, 0L);
+        fail();
+      } catch (IllegalArgumentException e) {
+        ;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NumatrixHostSharedNumberGeneratorTest {
+
+  private File file;
+  private final List<File> outputs = new ArrayList<>();
+
+  static class HostSharedFactory extends NumatrixNumberGeneratorFactory {
+
+    private final int typeId;
+    private final File file;
+
+    HostSharedFactory(int typeId, File file) {
+      this.typeId = typeId;
+      this.file = file;
+    }
+
+    @Override
+    protected int getTypeId() {
+      return typeId;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return 2;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 4;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return 100;
+    }
+
+    @Override
+    protected File getHostSharedFile() {
+      return file;
+    }
+  }
+
+  /**
+   * 別のプロセスで数値を生成し、ファイルに書き込みます.
+   *
+   * @param args 状態を共有するファイル、生成する数値の数、数値を書き込むファイル
+   * @throws Exception 数値を生成できない場合
+   */
+  public static void main(String[] args) throws Exception {
+    NumatrixNumberGenerator generator =
+        new HostSharedFactory(1, new File(args[0])).getGenerator();
+    int count = Integer.parseInt(args[1]);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(args[2])))) {
+      for (int i = 0; i < count; i++) {
+        out.writeLong(generator.generate());
+        if (i % 1000 == 999) {
+          out.flush();
+        }
+      }
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("numatrix", ".shm");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+    for (File output : outputs) {
+      output.delete();
+    }
+  }
+
+  @Test
+  public void 複数のインスタンスで1つのインスタンスのIDを共有するテスト() throws Exception {
+    final NumatrixNumberGenerator generator1 = new HostSharedFactory(26, file).getGenerator();
+    final NumatrixNumberGenerator generator2 = new HostSharedFactory(27, file).getGenerator();
+    assertThat(generator1, instanceOf(NumatrixHostSharedNumberGenerator.class));
+    assertThat(generator1, not(sameInstance(generator2)));
+    assertThat(generator1.getLayout().getInstanceIdBitLength(), equalTo(2));
+
+    final int count = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final NumatrixNumberGenerator generator = i % 2 == 0 ? generator1 : generator2;
+      futures.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws Exception {
+          long[] numbers = new long[count];
+          for (int i = 0; i < count; i += 10) {
+            generator.generate(numbers, i, 10);
+          }
+          return numbers;
+        }
+      }));
+    }
+    Set<Long> numberSet = new HashSet<>();
+    for (Future<long[]> future : futures) {
+      for (long number : future.get()) {
+        assertThat(number & 3, equalTo(2L));
+        numberSet.add(number);
+      }
+    }
+    executor.shutdown();
+    assertThat(numberSet.size(), equalTo(4 * count));
+    assertThat(generator1.getCurrentTimestamp(), equalTo(generator2.getCurrentTimestamp()));
+  }
+
+  @Test
+  public void 異なる構成で同じファイルを使用した場合のテスト() throws Exception {
+    new HostSharedFactory(28, file).getGenerator().generate();
+    NumatrixNumberGenerator generator = new NumatrixHostSharedNumberGenerator(2, 2, file) {
+      @Override
+      public int getTimestampBitLength() {
+        return 31;
+      }
+    };
+    try {
+      generator.generate();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), startsWith("shared memory file is used by a different layout."));
+    }
+  }
+
+  @Test
+  public void 複数のプロセスから同時に生成しても数値が重複しないテスト() throws Exception {
+    Process killed = start(10000000);
+    List<Process> processes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      processes.add(start(50000));
+    }
+    for (Process process : processes) {
+      assertThat(process.waitFor(), equalTo(0));
+    }
+    while (outputs.get(0).length() == 0) {
+      Thread.sleep(10);
+    }
+    killed.destroy();
+    killed.waitFor();
+    Process restarted = start(50000);
+    assertThat(restarted.waitFor(), equalTo(0));
+
+    Set<Long> numberSet = new HashSet<>();
+    int total = 0;
+    for (File output : outputs) {
+      long[] numbers = read(output);
+      total += numbers.length;
+      for (long number : numbers) {
+        assertThat(number & 3, equalTo(2L));
+        numberSet.add(number);
+      }
+    }
+    assertTrue(total > 4 * 50000);
+    assertThat(numberSet.size(), equalTo(total));
+  }
+
+  private Process start(int count) throws IOException {
+    File output = File.createTempFile("numatrix", ".out");
+    outputs.add(output);
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        NumatrixHostSharedNumberGeneratorTest.class.getName(), file.getAbsolutePath(),
+        String.valueOf(count), output.getAbsolutePath());
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+    return builder.start();
+  }
+
+  private static long[] read(File output) throws IOException {
+    long[] numbers = new long[(int) (output.length() / 8)];
+    try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+      for (int i = 0; i < numbers.length; i++) {
+        numbers[i] = in.readLong();
+      }
+    }
+    return numbers;
+  }
+
+}
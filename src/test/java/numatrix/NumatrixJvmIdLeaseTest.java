@@ -0,0 +1,167 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NumatrixJvmIdLeaseTest {
+
+  private File directory;
+
+  /**
+   * 別のプロセスでJVMのIDを借りて、終了されるまで待機します.
+   *
+   * @param args IDを借りるディレクトリ
+   * @throws Exception IDを借りられない場合
+   */
+  public static void main(String[] args) throws Exception {
+    NumatrixJvmIdLease.acquire(new File(args[0]), 10);
+    Thread.sleep(Long.MAX_VALUE);
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("numatrix").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void 空いているIDを順番に借りるテスト() throws Exception {
+    try (NumatrixJvmIdLease lease1 = new NumatrixJvmIdLease(directory, 2, 60000L);
+        NumatrixJvmIdLease lease2 = new NumatrixJvmIdLease(directory, 2, 60000L)) {
+      assertThat(lease1.getJvmId(), equalTo(0));
+      assertThat(lease2.getJvmId(), equalTo(1));
+      try {
+        new NumatrixJvmIdLease(directory, 2, 60000L);
+        fail();
+      } catch (NumatrixNumberGenerateException e) {
+        assertThat(e.getMessage(), startsWith("no JVM ID is available."));
+      }
+    }
+  }
+
+  @Test
+  public void 返却したIDはタイムアウトするまで再利用しないテスト() throws Exception {
+    NumatrixJvmIdLease lease1 = new NumatrixJvmIdLease(directory, 3, 60000L);
+    try (NumatrixJvmIdLease lease2 = new NumatrixJvmIdLease(directory, 3, 60000L)) {
+      assertThat(lease2.getJvmId(), equalTo(1));
+      lease1.close();
+      try (NumatrixJvmIdLease lease3 = new NumatrixJvmIdLease(directory, 3, 60000L)) {
+        assertThat(lease3.getJvmId(), equalTo(2));
+      }
+      try (NumatrixJvmIdLease lease4 = new NumatrixJvmIdLease(directory, 3, 0L)) {
+        assertThat(lease4.getJvmId(), equalTo(0));
+      }
+    }
+  }
+
+  @Test
+  public void 最後の時刻が古いIDを再利用するテスト() throws Exception {
+    try (DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(new File(directory, "0.lease")))) {
+      out.writeLong(System.currentTimeMillis() - 20000L);
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(new File(directory, "1.lease")))) {
+      out.writeLong(System.currentTimeMillis());
+    }
+    try (NumatrixJvmIdLease lease1 = new NumatrixJvmIdLease(directory, 3, 10000L);
+        NumatrixJvmIdLease lease2 = new NumatrixJvmIdLease(directory, 3, 10000L)) {
+      assertThat(lease1.getJvmId(), equalTo(0));
+      assertThat(lease2.getJvmId(), equalTo(2));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void 借りている間は時刻を書き込むテスト() throws Exception {
+    try (NumatrixJvmIdLease lease = new NumatrixJvmIdLease(directory, 1, 40L)) {
+      File file = new File(directory, lease.getJvmId() + ".lease");
+      long first = readTime(file);
+      while (readTime(file) == first) {
+        Thread.sleep(5);
+      }
+      assertTrue(readTime(file) > first);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void 異常終了したプロセスのIDを再利用するテスト() throws Exception {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        NumatrixJvmIdLeaseTest.class.getName(), directory.getAbsolutePath());
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+    Process process = builder.start();
+    File file = new File(directory, "0.lease");
+    try {
+      while (file.length() < 8) {
+        Thread.sleep(10);
+      }
+      try (NumatrixJvmIdLease lease = new NumatrixJvmIdLease(directory, 10, 0L)) {
+        assertThat(lease.getJvmId(), equalTo(1));
+      }
+    } finally {
+      process.destroy();
+      process.waitFor();
+    }
+    try (NumatrixJvmIdLease lease = new NumatrixJvmIdLease(directory, 10, 60000L)) {
+      assertThat(lease.getJvmId(), equalTo(2));
+    }
+    try (NumatrixJvmIdLease lease = new NumatrixJvmIdLease(directory, 10, 0L)) {
+      assertThat(lease.getJvmId(), equalTo(0));
+    }
+  }
+
+  @Test
+  public void ファクトリが借りたIDで数値を生成するテスト() throws Exception {
+    NumatrixNumberGeneratorFactory factory = new NumatrixLeasedJvmIdGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 29;
+      }
+
+      @Override
+      protected File getJvmIdLeaseDirectory() {
+        return directory;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        return 4;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 10;
+      }
+    };
+    NumatrixJvmIdLease lease = NumatrixJvmIdLease.acquire(directory, 4);
+    assertThat(NumatrixJvmIdLease.acquire(directory, 4), sameInstance(lease));
+    long number = factory.getGenerator().generate();
+    assertThat(factory.getLayout().jvmIdOf(number), equalTo(lease.getJvmId()));
+    lease.close();
+  }
+
+  private static long readTime(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readLong();
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class NumatrixLayoutPlannerTest {
+
+  private static final long YEAR_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+  @Test
+  public void 収まる構成を求めるテスト() throws Exception {
+    NumatrixNumberLayout layout =
+        NumatrixLayoutPlanner.plan(1000000L, 64, 16, 30 * YEAR_MILLIS);
+    assertThat(layout.getTickUnit(), equalTo(NumatrixTickUnit.MILLISECONDS));
+    assertThat(layout.getTimestampBitLength(), equalTo(41));
+    assertThat(layout.getSeqNumBitLength(), equalTo(12));
+    assertThat(layout.getShardBitLength(), equalTo(0));
+    assertThat(layout.getInstanceIdBitLength(), equalTo(10));
+    assertThat(layout.isOutMinus(), equalTo(false));
+    assertThat(layout.getBaseTime(), equalTo(new NumatrixNumberGenerator(0, 1).getBaseTime()));
+    assertTrue(layout.getExpireTime().getTime()
+        >= System.currentTimeMillis() + 30 * YEAR_MILLIS);
+  }
+
+  @Test
+  public void 粗いタイムスタンプの単位とマイナス値を選ぶテスト() throws Exception {
+    // 1ミリ秒と10ミリ秒では64ビット、100ミリ秒では63ビット必要
+    Date baseTime = new Date(System.currentTimeMillis());
+    NumatrixNumberLayout layout =
+        NumatrixLayoutPlanner.plan(4096L, 64, 32, 100 * YEAR_MILLIS, 8, baseTime);
+    assertThat(layout.getTickUnit(), equalTo(NumatrixTickUnit.HUNDRED_MILLISECONDS));
+    assertThat(layout.getTimestampBitLength(), equalTo(35));
+    assertThat(layout.getSeqNumBitLength(), equalTo(9));
+    assertThat(layout.getShardBitLength(), equalTo(8));
+    assertThat(layout.getInstanceIdBitLength(), equalTo(11));
+    assertThat(layout.isOutMinus(), equalTo(false));
+    assertThat(layout.getBaseTime(), equalTo(baseTime));
+
+    // 63ビットに収まらない場合だけマイナス値を許可する
+    layout = NumatrixLayoutPlanner.plan(4096L, 1024, 1024, 100 * YEAR_MILLIS, 0, baseTime);
+    assertThat(layout.getTickUnit(), equalTo(NumatrixTickUnit.HUNDRED_MILLISECONDS));
+    assertThat(layout.getTimestampBitLength(), equalTo(35));
+    assertThat(layout.getSeqNumBitLength(), equalTo(9));
+    assertThat(layout.getInstanceIdBitLength(), equalTo(20));
+    assertThat(layout.isOutMinus(), equalTo(true));
+  }
+
+  @Test
+  public void 収まらない構成のテスト() throws Exception {
+    try {
+      NumatrixLayoutPlanner.plan(1L << 40, 1 << 15, 1 << 15, 1000 * YEAR_MILLIS);
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), startsWith("no layout fits in 64 bits. the smallest needs "));
+      assertThat(e.getMessage(), containsString("instance id 30 bits for 32768 JVMs x 32768 threads"));
+    }
+    try {
+      NumatrixLayoutPlanner.plan(0L, 1, 1, YEAR_MILLIS);
+      fail();
+    } catch (IllegalArgumentException e) {
+      ;
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class NumatrixNonBlockingGenerateTest {
+
+  private static final long NOW = 1600000000000L;
+
+  private static NumatrixNumberGenerator generator(final NumatrixClock clock) {
+    return new NumatrixNumberGenerator(1, 4) {
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        // 連続した番号は4ビット
+        return 55;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return clock;
+      }
+    };
+  }
+
+  private static NumatrixNumberGenerator sharedGenerator(final NumatrixClock clock) {
+    return new NumatrixSharedNumberGenerator(1, 4) {
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        return 55;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return clock;
+      }
+    };
+  }
+
+  @Test
+  public void 連続した番号を使い切ったら待機せずに生成した数を返すテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = generator(clock);
+    long[] numbers = new long[40];
+    assertThat(generator.tryGenerate(numbers, 0, 40), equalTo(16));
+    assertThat(generator.tryGenerate(numbers, 16, 24), equalTo(0));
+    assertThat(generator.getRemainingSeqNum(), equalTo(0L));
+
+    clock.set(NOW + 1);
+    assertThat(generator.tryGenerate(numbers, 16, 24), equalTo(16));
+    Set<Long> numberSet = new HashSet<>();
+    for (int i = 0; i < 32; i++) {
+      numberSet.add(numbers[i]);
+    }
+    assertThat(numberSet.size(), equalTo(32));
+    NumatrixNumberLayout layout = generator.getLayout();
+    assertThat(layout.timestampOf(numbers[16]), equalTo(layout.timestampOf(numbers[0]) + 1));
+    assertThat(numbers[32], equalTo(0L));
+  }
+
+  @Test
+  public void 複数のスレッドで共有するインスタンスでも待機しないテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = sharedGenerator(clock);
+    long[] numbers = new long[40];
+    assertThat(generator.tryGenerate(numbers, 0, 40), equalTo(16));
+    assertThat(generator.tryGenerate(numbers, 0, 40), equalTo(0));
+    clock.set(NOW + 1);
+    assertThat(generator.tryGenerate(numbers, 16, 1), equalTo(1));
+    assertTrue(numbers[16] > numbers[15]);
+  }
+
+  @Test
+  public void 範囲外を指定した場合のテスト() throws Exception {
+    NumatrixNumberGenerator generator = generator(new ManualNumatrixClock(NOW));
+    try {
+      generator.tryGenerate(new long[4], 2, 3);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      assertThat(e.getMessage(), equalTo("offset: 2, length: 3, array length: 4"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void 次のタイムスタンプになったら非同期に完了するテスト() throws Exception {
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = generator(clock);
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      CompletableFuture<Long> first = generator.generateAsync(scheduler);
+      assertTrue(first.isDone());
+      long[] numbers = new long[16];
+      assertThat(generator.tryGenerate(numbers, 0, 16), equalTo(15));
+
+      CompletableFuture<Long> future = generator.generateAsync(scheduler);
+      Thread.sleep(50);
+      assertFalse(future.isDone());
+      clock.set(NOW + 1);
+      long number = future.get(5, TimeUnit.SECONDS);
+      NumatrixNumberLayout layout = generator.getLayout();
+      assertThat(layout.timestampOf(number), equalTo(layout.timestampOf(first.get()) + 1));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void 非同期に生成できない場合は例外で完了するテスト() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      CompletableFuture<Long> future =
+          new NumatrixNumberGenerator(1073741824, 31).generateAsync(scheduler);
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(NumatrixNumberGenerateException.class));
+    } finally {
+      scheduler.shutdownNow();
+    }
+
+    ManualNumatrixClock clock = new ManualNumatrixClock(NOW);
+    NumatrixNumberGenerator generator = generator(clock);
+    generator.tryGenerate(new long[16], 0, 16);
+    try {
+      generator.generateAsync(scheduler).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+    }
+  }
+
+}
@@ -3,9 +3,11 @@ package numatrix;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import mockit.Invocation;
 import mockit.Mock;
@@ -178,4 +180,250 @@ public class NumatrixNumberGeneratorFactoryTest {
     }
   }
 
+  @Test
+  public void 数値の構成が64ビットを超える場合はインスタンスを取得できない() {
+    try {
+      new AbstractNumatrixNumberGeneratorFactory() {
+        @Override
+        protected int getTypeId() {
+          return 5;
+        }
+
+        @Override
+        protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+          return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+            @Override
+            public int getTimestampBitLength() {
+              return 55;
+            }
+          };
+        }
+      }.getGenerator();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), equalTo("number stracture size over 64bits."));
+    }
+  }
+
+  @Test
+  public void 返却したインスタンスを別のスレッドで再利用する() throws Exception {
+    final NumatrixNumberGeneratorFactory factory = new AbstractNumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 12;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 1;
+      }
+    };
+    NumatrixNumberGenerator generator;
+    try (NumatrixNumberGeneratorLease lease = factory.leaseGenerator()) {
+      generator = lease.getGenerator();
+      assertThat(factory.getGenerator(), is(generator));
+    }
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<NumatrixNumberGenerator> future = executor.submit(new Callable<NumatrixNumberGenerator>() {
+      @Override
+      public NumatrixNumberGenerator call() throws Exception {
+        return factory.getGenerator();
+      }
+    });
+    assertThat(future.get(), is(generator));
+    executor.shutdown();
+  }
+
+  @Test
+  public void 設定を返すメソッドは区分毎に1度だけ呼ばれる() throws Exception {
+    final int[] callCount = new int[4];
+    class CountingFactory extends NumatrixNumberGeneratorFactory {
+      @Override
+      protected int getTypeId() {
+        callCount[0]++;
+        return 13;
+      }
+
+      @Override
+      protected int getJvmId() {
+        callCount[1]++;
+        return 0;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        callCount[2]++;
+        return 1;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        callCount[3]++;
+        return 8;
+      }
+    }
+    NumatrixNumberGeneratorFactory factory = new CountingFactory();
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    for (int i = 0; i < 10; i++) {
+      assertThat(factory.getGenerator(), is(generator));
+    }
+    factory.getLayout();
+    assertThat(new CountingFactory().getGenerator(), is(generator));
+    assertThat(callCount, equalTo(new int[] {2, 1, 1, 1}));
+  }
+
+  @Test
+  public void 複数のスレッドから同時に呼んでも設定を返すメソッドは1度だけ呼ばれる() throws Exception {
+    final AtomicInteger callCount = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    Future<?>[] futures = new Future<?>[4];
+    for (int i = 0; i < futures.length; i++) {
+      futures[i] = executor.submit(new Callable<NumatrixNumberLayout>() {
+        @Override
+        public NumatrixNumberLayout call() throws Exception {
+          start.await();
+          return new AbstractNumatrixNumberGeneratorFactory() {
+            @Override
+            protected int getTypeId() {
+              return 40;
+            }
+
+            @Override
+            protected int getJvmId() {
+              callCount.incrementAndGet();
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                ;
+              }
+              return super.getJvmId();
+            }
+          }.getLayout();
+        }
+      });
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      assertThat(future.get(), is(futures[0].get()));
+    }
+    executor.shutdown();
+    assertThat(callCount.get(), equalTo(1));
+  }
+
+  @Test
+  public void 事前に生成したインスタンスを取得する() throws Exception {
+    NumatrixNumberGeneratorFactory factory = new AbstractNumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 33;
+      }
+
+      @Override
+      protected boolean isMetricsEnabled() {
+        return true;
+      }
+    };
+    NumatrixNumberLayout layout = factory.warmUp(3);
+    assertThat(layout.getInstanceIdBitLength(), equalTo(8));
+    NumatrixNumberGeneratorMetrics metrics = factory.getMetrics();
+    assertThat(metrics.getGeneratorCount(), equalTo(3));
+    assertThat(metrics.getIdleGeneratorCount(), equalTo(3));
+
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    assertThat(metrics.getGeneratorCount(), equalTo(3));
+    assertThat(metrics.getIdleGeneratorCount(), equalTo(2));
+    assertThat(layout.jvmIdOf(generator.generate()), equalTo(jvmId));
+
+    factory.warmUp(100);
+    assertThat(metrics.getGeneratorCount(), equalTo(maxGenetarotCount));
+  }
+
+  @Test
+  public void 数値の構成が不正な場合は事前の生成で例外が発生する() {
+    NumatrixNumberGeneratorFactory factory = new AbstractNumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 34;
+      }
+
+      @Override
+      protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+        return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+          @Override
+          public int getTimestampBitLength() {
+            return 60;
+          }
+        };
+      }
+    };
+    try {
+      factory.warmUp(1);
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), equalTo("number stracture size over 64bits."));
+    }
+  }
+
+  @Test
+  public void 初期化に失敗したインスタンスはIDを消費しない() throws Exception {
+    NumatrixNumberGeneratorFactory factory = new AbstractNumatrixNumberGeneratorFactory() {
+      private int count;
+
+      @Override
+      protected int getTypeId() {
+        return 39;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 1;
+      }
+
+      @Override
+      protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+        // 最初のインスタンスだけ数値の構成が64ビットを超える
+        final boolean invalid = count++ == 0;
+        return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+          @Override
+          public int getTimestampBitLength() {
+            return invalid ? 63 : super.getTimestampBitLength();
+          }
+        };
+      }
+    };
+    try {
+      factory.getGenerator();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), equalTo("number stracture size over 64bits."));
+    }
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    assertThat(generator.getLayout().instanceIdOf(generator.generate()), equalTo(jvmId));
+  }
+
+  @Test
+  public void 共有するインスタンスを事前に初期化する() throws Exception {
+    NumatrixNumberGeneratorFactory factory = new AbstractNumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 35;
+      }
+
+      @Override
+      protected boolean isSharedGenerator() {
+        return true;
+      }
+
+      @Override
+      protected boolean isMetricsEnabled() {
+        return true;
+      }
+    };
+    factory.warmUp(5);
+    assertThat(factory.getMetrics().getGeneratorCount(), equalTo(1));
+    factory.getGenerator().generate();
+    assertThat(factory.getMetrics().getGeneratorCount(), equalTo(1));
+  }
+
 }
@@ -0,0 +1,113 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import org.junit.Test;
+
+public class NumatrixNumberGeneratorMetricsTest {
+
+  abstract class AbstractMetricsFactory extends NumatrixNumberGeneratorFactory {
+
+    @Override
+    protected int getJvmId() {
+      return 0;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 2;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return 2;
+    }
+
+    @Override
+    protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+      return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          // 連続した番号は3ビット
+          return 58;
+        }
+      };
+    }
+  }
+
+  @Test
+  public void 生成した数値とタイムスタンプの更新を計測するテスト() throws Exception {
+    NumatrixNumberGeneratorFactory factory = new AbstractMetricsFactory() {
+      @Override
+      protected int getTypeId() {
+        return 15;
+      }
+
+      @Override
+      protected boolean isMetricsEnabled() {
+        return true;
+      }
+    };
+    NumatrixNumberGeneratorMetrics metrics = factory.getMetrics();
+    assertThat(metrics.getTypeId(), equalTo(15));
+    assertThat(metrics.getRemainingTimestampMillis(), equalTo(-1L));
+
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    assertThat(generator.getRemainingSeqNum(), equalTo(0L));
+    for (int i = 0; i < 100; i++) {
+      generator.generate();
+    }
+    generator.generate(new long[10], 0, 10);
+    NumatrixNumberRange range = generator.reserve(5);
+    assertThat(generator.getRemainingSeqNum(), equalTo(8L - generator.getLayout().sequenceOf(
+        range.get(range.getCount() - 1)) - 1));
+
+    NumatrixNumberGeneratorMetricsMBean snapshot = metrics.snapshot();
+    assertThat(snapshot.getIssuedCount(), equalTo(110L + range.getCount()));
+    assertTrue(snapshot.getRolloverCount() >= 14);
+    assertTrue(snapshot.getBlockedWaitCount() > 0);
+    long waitCount = 0;
+    for (long count : snapshot.getWaitTimeHistogram()) {
+      waitCount += count;
+    }
+    assertThat(waitCount, equalTo(snapshot.getBlockedWaitCount()));
+    assertThat(snapshot.getGeneratorCount(), equalTo(1));
+    assertThat(snapshot.getMaxGeneratorCount(), equalTo(2));
+    assertThat(snapshot.getIdleGeneratorCount(), equalTo(0));
+    assertTrue(snapshot.getRemainingTimestampMillis() > 0);
+
+    generator.generate();
+    assertThat(snapshot.getIssuedCount(), equalTo(110L + range.getCount()));
+    assertThat(metrics.getIssuedCount(), equalTo(111L + range.getCount()));
+
+    factory.leaseGenerator().close();
+    assertThat(metrics.getIdleGeneratorCount(), equalTo(1));
+    assertThat(metrics.getReclaimedGeneratorCount(), equalTo(1L));
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertThat((Long) server.getAttribute(NumatrixNumberGeneratorMetrics.objectName(15),
+        "IssuedCount"), equalTo(metrics.getIssuedCount()));
+  }
+
+  @Test
+  public void 計測しない場合のテスト() throws Exception {
+    NumatrixNumberGeneratorFactory factory = new AbstractMetricsFactory() {
+      @Override
+      protected int getTypeId() {
+        return 16;
+      }
+    };
+    factory.getGenerator().generate();
+    assertThat(factory.getMetrics(), nullValue());
+    assertFalse(ManagementFactory.getPlatformMBeanServer()
+        .isRegistered(NumatrixNumberGeneratorMetrics.objectName(16)));
+  }
+
+}
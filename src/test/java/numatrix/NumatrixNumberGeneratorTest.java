@@ -2,6 +2,8 @@ package numatrix;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
+import java.nio.LongBuffer;
+import java.util.Date;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import mockit.Mock;
@@ -99,4 +101,234 @@ public class NumatrixNumberGeneratorTest {
 
   }
 
+  @Test
+  public void 基準となる時間と時計は初期化時に1度だけ取得されるテスト() throws NumatrixNumberGenerateException {
+    final int[] callCount = new int[2];
+    final long baseTime = 1000000000000L;
+    NumatrixNumberGenerator testTarget = new NumatrixNumberGenerator(1, 16) {
+      @Override
+      public Date getBaseTime() {
+        callCount[0]++;
+        return new Date(baseTime);
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        callCount[1]++;
+        return new NumatrixClock() {
+          @Override
+          public long currentTimeMillis() {
+            return baseTime + 5000L;
+          }
+        };
+      }
+    };
+    for (int i = 0; i <= 32767; i++) {
+      assertThat(testTarget.generate() >>> 31, equalTo(5L));
+    }
+    assertThat(callCount[0], equalTo(1));
+    assertThat(callCount[1], equalTo(1));
+  }
+
+  @Test
+  public void タイムスタンプの単位をミリ秒に変更するテスト() throws NumatrixNumberGenerateException {
+    final long baseTime = 1000000000000L;
+    final long[] now = {baseTime + 1234L};
+    NumatrixNumberGenerator testTarget = new NumatrixNumberGenerator(1, 16) {
+      @Override
+      public Date getBaseTime() {
+        return new Date(baseTime);
+      }
+
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return new NumatrixClock() {
+          @Override
+          public long currentTimeMillis() {
+            return now[0]++;
+          }
+        };
+      }
+    };
+    assertThat(testTarget.generate() >>> 31, equalTo(1234L));
+    for (int i = 1; i <= 32767; i++) {
+      testTarget.generate();
+    }
+    assertThat(testTarget.generate() >>> 31, equalTo(1235L));
+    assertThat(testTarget.getExpireTime().getTime(), equalTo(baseTime + 4294967296L));
+  }
+
+  @Test
+  public void 連続した番号の範囲を予約するテスト() throws NumatrixNumberGenerateException {
+    int generatorId = 21845;
+    NumatrixNumberGenerator testTarget = new NumatrixNumberGenerator(generatorId, 16);
+    long first = testTarget.generate();
+    NumatrixNumberRange range = testTarget.reserve(10000);
+    assertThat(range.getCount(), equalTo(10000));
+    assertThat(range.getStride(), equalTo(65536L));
+    assertThat(range.getStart(), equalTo(first + 65536L));
+    assertThat(range.get(9999), equalTo(first + 10000L * 65536L));
+    range = testTarget.reserve(30000);
+    assertThat(range.getCount(), equalTo(32768 - 10001));
+    assertThat(range.get(range.getCount() - 1) & 2147418112, equalTo(32767L << 16));
+    range = testTarget.reserve(5);
+    assertThat(range.getCount(), equalTo(5));
+    assertThat(range.getStart() & 2147418112, equalTo(0L));
+    assertThat(range.getStart() >>> 31, equalTo(testTarget.getCurrentTimestamp()));
+  }
+
+  @Test
+  public void 配列とバッファにまとめて生成するテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberGenerator testTarget = new NumatrixNumberGenerator(1, 16);
+    long[] numbers = new long[40002];
+    testTarget.generate(numbers, 1, 40000);
+    assertThat(numbers[0], equalTo(0L));
+    assertThat(numbers[40001], equalTo(0L));
+    for (int i = 2; i <= 40000; i++) {
+      assertTrue(numbers[i] > numbers[i - 1]);
+      assertThat(numbers[i] & 0xFFFF, equalTo(1L));
+    }
+    assertThat(numbers[32769] & 2147418112, equalTo(0L));
+    LongBuffer buffer = LongBuffer.allocate(100);
+    testTarget.generate(buffer);
+    assertThat(buffer.position(), equalTo(100));
+    assertThat(buffer.get(0), equalTo(numbers[40000] + 65536L));
+    try {
+      testTarget.generate(numbers, 40000, 3);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      ;
+    }
+  }
+
+  @Test
+  public void 連続した番号を使い切ってもタイムスタンプを先に進めて待機しないテスト()
+      throws NumatrixNumberGenerateException {
+    final long baseTime = 1000000000000L;
+    final long[] now = {baseTime + 100L};
+    final long[] tick = {0L};
+    NumatrixNumberGenerator testTarget = new NumatrixNumberGenerator(1, 28) {
+      @Override
+      public Date getBaseTime() {
+        return new Date(baseTime);
+      }
+
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public long getMaxDriftMillis() {
+        return 3L;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return new NumatrixClock() {
+          @Override
+          public long currentTimeMillis() {
+            return now[0] += tick[0];
+          }
+        };
+      }
+    };
+    assertThat(testTarget.getDriftMillis(), equalTo(0L));
+    for (int timestamp = 100; timestamp <= 103; timestamp++) {
+      for (int i = 0; i < 8; i++) {
+        assertThat(testTarget.generate() >>> 31, equalTo((long) timestamp));
+      }
+      assertThat(testTarget.getDriftMillis(), equalTo(timestamp - 100L));
+    }
+    tick[0] = 1L;
+    assertThat(testTarget.generate() >>> 31, equalTo(104L));
+    assertThat(now[0], equalTo(baseTime + 101L));
+  }
+
+  private NumatrixNumberGenerator makeRegressionTestTarget(final ManualNumatrixClock clock,
+      final NumatrixClockRegressionPolicy policy) {
+    return new NumatrixNumberGenerator(1, 28) {
+      @Override
+      public Date getBaseTime() {
+        return new Date(0L);
+      }
+
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return clock;
+      }
+
+      @Override
+      public NumatrixClockRegressionPolicy getClockRegressionPolicy() {
+        return policy;
+      }
+    };
+  }
+
+  @Test
+  public void 時計が過去に戻った場合に追いつくまで待機するテスト() throws NumatrixNumberGenerateException {
+    ManualNumatrixClock clock = new ManualNumatrixClock(5000L);
+    NumatrixNumberGenerator testTarget =
+        makeRegressionTestTarget(clock, NumatrixClockRegressionPolicy.WAIT);
+    for (int i = 0; i < 8; i++) {
+      assertThat(testTarget.generate() >>> 31, equalTo(5000L));
+    }
+    clock.set(4990L);
+    clock.setStep(1L);
+    assertThat(testTarget.generate() >>> 31, equalTo(5001L));
+    assertThat(testTarget.getClockRegressionCount(), equalTo(1L));
+    assertThat(testTarget.getMaxClockRegressionMillis(), equalTo(10L));
+  }
+
+  @Test
+  public void 時計が過去に戻った場合にタイムスタンプを先に進めるテスト() throws NumatrixNumberGenerateException {
+    ManualNumatrixClock clock = new ManualNumatrixClock(5000L);
+    NumatrixNumberGenerator testTarget =
+        makeRegressionTestTarget(clock, NumatrixClockRegressionPolicy.BORROW);
+    testTarget.generate(new long[8], 0, 8);
+    clock.set(4000L);
+    for (long timestamp = 5001L; timestamp <= 5003L; timestamp++) {
+      for (int i = 0; i < 8; i++) {
+        assertThat(testTarget.generate() >>> 31, equalTo(timestamp));
+      }
+    }
+    assertThat(testTarget.getDriftMillis(), equalTo(1003L));
+    assertThat(testTarget.getClockRegressionCount(), equalTo(1L));
+    assertThat(testTarget.getMaxClockRegressionMillis(), equalTo(1000L));
+    clock.set(6000L);
+    assertThat(testTarget.generate() >>> 31, equalTo(6000L));
+    clock.set(5500L);
+    assertThat(testTarget.generate() >>> 31, equalTo(6000L));
+    assertThat(testTarget.getClockRegressionCount(), equalTo(1L));
+  }
+
+  @Test
+  public void 時計が過去に戻った場合に例外が発生するテスト() throws NumatrixNumberGenerateException {
+    ManualNumatrixClock clock = new ManualNumatrixClock(5000L);
+    NumatrixNumberGenerator testTarget =
+        makeRegressionTestTarget(clock, NumatrixClockRegressionPolicy.FAIL);
+    testTarget.generate(new long[8], 0, 8);
+    clock.set(4990L);
+    try {
+      testTarget.generate();
+      fail();
+    } catch (NumatrixClockRegressionException e) {
+      assertThat(e.getRegressionMillis(), equalTo(10L));
+      assertThat(e.getMessage(), equalTo("clock moved backwards by 10ms."));
+    }
+    clock.set(5001L);
+    assertThat(testTarget.generate() >>> 31, equalTo(5001L));
+    assertThat(testTarget.getClockRegressionCount(), equalTo(1L));
+  }
+
 }
@@ -0,0 +1,214 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Date;
+import org.junit.Test;
+
+public class NumatrixNumberLayoutTest {
+
+  final long baseTime = 1500000000000L;
+  final ManualNumatrixClock clock = new ManualNumatrixClock(baseTime + 123456L);
+
+  final NumatrixNumberGenerator generator = new NumatrixNumberGenerator(21845, 16) {
+    @Override
+    public Date getBaseTime() {
+      return new Date(baseTime);
+    }
+
+    @Override
+    public NumatrixClock getClock() {
+      return clock;
+    }
+  };
+
+  @Test
+  public void 数値を分解するテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberLayout testTarget = generator.getLayout();
+    assertThat(testTarget.getTimestampBitLength(), equalTo(32));
+    assertThat(testTarget.getSeqNumBitLength(), equalTo(15));
+    assertThat(testTarget.getInstanceIdBitLength(), equalTo(16));
+    assertThat(testTarget.getMaxSeqNum(), equalTo(32767L));
+    assertThat(testTarget.getExpireTime().getTime(), equalTo(baseTime + 4294967296000L));
+    generator.generate();
+    long number = generator.generate();
+    assertThat(testTarget.timestampOf(number), equalTo(123L));
+    assertThat(testTarget.epochMillisOf(number), equalTo(baseTime + 123000L));
+    assertThat(testTarget.sequenceOf(number), equalTo(1L));
+    assertThat(testTarget.instanceIdOf(number), equalTo(21845));
+    assertThat(testTarget.jvmIdOf(number), equalTo(0));
+  }
+
+  @Test
+  public void まとめて分解するテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberLayout testTarget = generator.getLayout();
+    long[] numbers = new long[100];
+    generator.generate(numbers, 0, 100);
+    long[] longs = new long[101];
+    int[] ints = new int[101];
+    testTarget.timestampOf(numbers, 10, longs, 1, 90);
+    assertThat(longs[0], equalTo(0L));
+    assertThat(longs[90], equalTo(123L));
+    testTarget.sequenceOf(numbers, 0, longs, 1, 100);
+    assertThat(longs[100], equalTo(99L));
+    testTarget.epochMillisOf(numbers, 0, longs, 0, 100);
+    assertThat(longs[99], equalTo(baseTime + 123000L));
+    testTarget.instanceIdOf(numbers, 0, ints, 0, 100);
+    assertThat(ints[99], equalTo(21845));
+    LongBuffer dst = LongBuffer.allocate(50);
+    testTarget.sequenceOf(LongBuffer.wrap(numbers), dst);
+    assertThat(dst.position(), equalTo(50));
+    assertThat(dst.get(49), equalTo(49L));
+    IntBuffer intDst = IntBuffer.allocate(200);
+    testTarget.jvmIdOf(LongBuffer.wrap(numbers), intDst);
+    assertThat(intDst.position(), equalTo(100));
+    try {
+      testTarget.timestampOf(numbers, 1, longs, 0, 100);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      ;
+    }
+  }
+
+  @Test
+  public void 時間から数値の範囲を求めるテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberLayout testTarget = generator.getLayout();
+    long number = generator.generate();
+    long min = testTarget.minNumberAt(baseTime + 123999L);
+    long max = testTarget.maxNumberAt(baseTime + 123000L);
+    assertTrue(min <= number && number <= max);
+    assertThat(testTarget.maxNumberAt(baseTime + 122999L) + 1, equalTo(min));
+    assertThat(testTarget.minNumberAt(0L), equalTo(0L));
+    assertThat(testTarget.maxNumberAt(Long.MAX_VALUE), equalTo(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void ファクトリから数値の構成を取得するテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberGeneratorFactory factory = new NumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 11;
+      }
+
+      @Override
+      protected int getJvmId() {
+        return 3;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        return 4;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 10;
+      }
+    };
+    NumatrixNumberLayout testTarget = factory.getLayout();
+    assertThat(testTarget.getInstanceIdBitLength(), equalTo(6));
+    assertThat(testTarget.getGeneratorCountPerJvm(), equalTo(10));
+    long number = factory.getGenerator().generate();
+    assertThat(testTarget.instanceIdOf(number), equalTo(30));
+    assertThat(testTarget.jvmIdOf(number), equalTo(3));
+    assertThat(factory.getGenerator().getLayout().jvmIdOf(number), equalTo(3));
+  }
+
+  @Test
+  public void シャードのIDを分解するテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberGenerator shardGenerator = new NumatrixNumberGenerator(5, 4) {
+      @Override
+      public int getShardBitLength() {
+        return 6;
+      }
+
+      @Override
+      public int getShardId() {
+        return 9;
+      }
+
+      @Override
+      public Date getBaseTime() {
+        return new Date(baseTime);
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return clock;
+      }
+    };
+    NumatrixNumberLayout testTarget = shardGenerator.getLayout();
+    assertThat(testTarget.getShardBitLength(), equalTo(6));
+    assertThat(testTarget.getSeqNumBitLength(), equalTo(21));
+    assertThat(testTarget.getShardIdShift(), equalTo(4));
+    assertThat(testTarget.getShardIdMask(), equalTo(63L));
+
+    long number = shardGenerator.generate();
+    assertThat(testTarget.timestampOf(number), equalTo(123L));
+    assertThat(testTarget.sequenceOf(number), equalTo(0L));
+    assertThat(testTarget.shardIdOf(number), equalTo(9));
+    assertThat(testTarget.instanceIdOf(number), equalTo(5));
+
+    number = shardGenerator.generate(42);
+    assertThat(testTarget.sequenceOf(number), equalTo(1L));
+    assertThat(testTarget.shardIdOf(number), equalTo(42));
+    assertThat((int) ((number >>> testTarget.getShardIdShift()) & testTarget.getShardIdMask()),
+        equalTo(42));
+
+    NumatrixNumberRange range = shardGenerator.reserve(3, 63);
+    assertThat(range.getStride(), equalTo(1024L));
+    long[] numbers = {range.get(0), range.get(1), range.get(2)};
+    int[] shardIds = new int[3];
+    testTarget.shardIdOf(numbers, 0, shardIds, 0, 3);
+    assertThat(shardIds, equalTo(new int[] {63, 63, 63}));
+    IntBuffer shardIdBuffer = IntBuffer.allocate(3);
+    testTarget.shardIdOf(LongBuffer.wrap(numbers), shardIdBuffer);
+    assertThat(shardIdBuffer.array(), equalTo(new int[] {63, 63, 63}));
+    assertThat(testTarget.sequenceOf(numbers[2]), equalTo(4L));
+    assertThat(testTarget.instanceIdOf(numbers[2]), equalTo(5));
+    assertThat(generator.getLayout().shardIdOf(generator.generate()), equalTo(0));
+  }
+
+  @Test
+  public void シャードのIDが範囲外の場合のテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberGenerator shardGenerator = new NumatrixNumberGenerator(5, 4) {
+      @Override
+      public int getShardBitLength() {
+        return 6;
+      }
+    };
+    for (int shardId : new int[] {-1, 64}) {
+      try {
+        shardGenerator.generate(shardId);
+        fail();
+      } catch (IllegalArgumentException e) {
+        assertThat(e.getMessage(), equalTo("shard id is out of range. " + shardId));
+      }
+    }
+    try {
+      new NumatrixNumberGenerator(5, 4) {
+        @Override
+        public int getShardId() {
+          return 1;
+        }
+      }.generate();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), equalTo("shard id is out of range. 1"));
+    }
+    try {
+      new NumatrixNumberGenerator(5, 4) {
+        @Override
+        public int getShardBitLength() {
+          return 27;
+        }
+      }.generate();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), equalTo("number stracture size over 64bits."));
+    }
+  }
+
+}
@@ -0,0 +1,115 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class NumatrixNumberPrefetcherTest {
+
+  private final NumatrixNumberGeneratorFactory factory = new NumatrixNumberGeneratorFactory() {
+    @Override
+    protected int getTypeId() {
+      return 17;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return 1;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 2;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return 2;
+    }
+
+    @Override
+    protected NumatrixNumberGenerator makeGenerator(int generatorId, int generatorIdBitLength) {
+      return new NumatrixNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          return 44;
+        }
+      };
+    }
+  };
+
+  @Test
+  public void 複数のスレッドからバッファの数値を取得しても重複しないテスト() throws Exception {
+    final NumatrixNumberPrefetcher testTarget = new NumatrixNumberPrefetcher(factory, 64, 1000);
+    final int threadCount = 4;
+    final int count = 50000;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws Exception {
+          long[] numbers = new long[count];
+          for (int i = 0; i < count; i++) {
+            numbers[i] = testTarget.generate();
+          }
+          return numbers;
+        }
+      }));
+    }
+    Set<Long> numberSet = new HashSet<>();
+    for (Future<long[]> future : futures) {
+      long previous = -1;
+      for (long number : future.get()) {
+        assertThat(number & 3, equalTo(2L));
+        assertTrue(number > previous);
+        previous = number;
+        numberSet.add(number);
+      }
+    }
+    executor.shutdown();
+    assertThat(numberSet.size(), equalTo(threadCount * count));
+    testTarget.close();
+  }
+
+  @Test
+  public void 終了した場合にバッファの数値を破棄するテスト() throws Exception {
+    NumatrixNumberPrefetcher testTarget = new NumatrixNumberPrefetcher(factory, 10, 100);
+    long number = testTarget.generate();
+    while (testTarget.size() < 99) {
+      Thread.sleep(1);
+    }
+    testTarget.close();
+    testTarget.close();
+    assertThat(testTarget.size(), equalTo(0));
+    assertTrue(testTarget.getDiscardedCount() >= 99);
+    try {
+      testTarget.generate();
+      fail();
+    } catch (NumatrixNumberGenerateException e) {
+      assertThat(e.getMessage(), equalTo("prefetcher is closed."));
+    }
+    try (NumatrixNumberGeneratorLease lease = factory.leaseGenerator()) {
+      assertTrue(lease.getGenerator().generate() > number);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void 補充を停止する数が補充を再開する数以下の場合のテスト() {
+    new NumatrixNumberPrefetcher(factory, 10, 10);
+  }
+
+}
@@ -0,0 +1,209 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class NumatrixNumberPublisherTest {
+
+  static class RecordingSubscriber implements NumatrixNumberPublisher.Subscriber {
+
+    final List<Long> numbers = new ArrayList<>();
+    final CountDownLatch terminated = new CountDownLatch(1);
+    NumatrixNumberPublisher.Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    @Override
+    public void onSubscribe(NumatrixNumberPublisher.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(long number) {
+      numbers.add(number);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+  }
+
+  private static NumatrixNumberGenerator generator() {
+    return new NumatrixSharedNumberGenerator(1, 4) {
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        return 50;
+      }
+    };
+  }
+
+  @Test
+  public void 要求された数だけ通知するテスト() throws Exception {
+    NumatrixNumberGenerator generator = generator();
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    new NumatrixNumberPublisher(generator, 100).subscribe(subscriber);
+    assertThat(subscriber.numbers.size(), equalTo(0));
+
+    subscriber.subscription.request(3);
+    assertThat(subscriber.numbers.size(), equalTo(3));
+    long remaining = generator.getRemainingSeqNum();
+    subscriber.subscription.request(250);
+    assertThat(subscriber.numbers.size(), equalTo(253));
+    assertThat(new HashSet<>(subscriber.numbers).size(), equalTo(253));
+    assertTrue(remaining - generator.getRemainingSeqNum() <= 250);
+
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(10);
+    assertThat(subscriber.numbers.size(), equalTo(253));
+    assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void すべて通知したら完了するテスト() throws Exception {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    new NumatrixNumberPublisher(generator(), 10, 4).subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertThat(subscriber.numbers.size(), equalTo(10));
+    assertTrue(subscriber.completed);
+
+    RecordingSubscriber empty = new RecordingSubscriber();
+    new NumatrixNumberPublisher(generator(), 0, 4).subscribe(empty);
+    assertTrue(empty.completed);
+  }
+
+  @Test
+  public void 通知中に要求しても再帰しないテスト() throws Exception {
+    final int[] depth = new int[2];
+    RecordingSubscriber subscriber = new RecordingSubscriber() {
+      @Override
+      public void onNext(long number) {
+        super.onNext(number);
+        depth[0]++;
+        depth[1] = Math.max(depth[1], depth[0]);
+        if (numbers.size() < 1000) {
+          subscription.request(1);
+        }
+        depth[0]--;
+      }
+    };
+    new NumatrixNumberPublisher(generator(), 16).subscribe(subscriber);
+    subscriber.subscription.request(1);
+    assertThat(subscriber.numbers.size(), equalTo(1000));
+    assertThat(depth[1], equalTo(1));
+  }
+
+  @Test
+  public void 不正な数を要求した場合のテスト() throws Exception {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    new NumatrixNumberPublisher(generator(), 16).subscribe(subscriber);
+    subscriber.subscription.request(0);
+    assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+    subscriber.subscription.request(1);
+    assertThat(subscriber.numbers.size(), equalTo(0));
+  }
+
+  @Test
+  public void 数値を生成できない場合のテスト() throws Exception {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    new NumatrixNumberPublisher(new NumatrixSharedNumberGenerator(1073741824, 31), 16)
+        .subscribe(subscriber);
+    subscriber.subscription.request(1);
+    assertThat(subscriber.error, instanceOf(NumatrixNumberGenerateException.class));
+  }
+
+  @Test
+  public void スレッドごとのインスタンスを指定した場合のテスト() throws Exception {
+    try {
+      new NumatrixNumberPublisher(new NumatrixNumberGenerator(1, 4), 16);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), startsWith("generator must be thread-safe."));
+    }
+
+    NumatrixNumberGeneratorFactory factory = new NumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 38;
+      }
+
+      @Override
+      protected int getJvmId() {
+        return 0;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        return 1;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 4;
+      }
+    };
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    new NumatrixNumberPublisher(factory, 100, 16).subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertTrue(subscriber.completed);
+    assertThat(new HashSet<>(subscriber.numbers).size(), equalTo(100));
+    // 通知したスレッドのインスタンスから予約する
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    for (long number : subscriber.numbers) {
+      assertThat(generator.getLayout().instanceIdOf(number),
+          equalTo(generator.getLayout().instanceIdOf(generator.generate())));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void 複数のスレッドから要求しても数値が重複しないテスト() throws Exception {
+    NumatrixNumberPublisher publisher = new NumatrixNumberPublisher(generator(), 40000, 64);
+    final List<RecordingSubscriber> subscribers = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 2; i++) {
+      final RecordingSubscriber subscriber = new RecordingSubscriber();
+      publisher.subscribe(subscriber);
+      subscribers.add(subscriber);
+      for (int j = 0; j < 2; j++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            for (int k = 0; k < 20000; k++) {
+              subscriber.subscription.request(1);
+            }
+          }
+        });
+      }
+    }
+    Set<Long> numberSet = new HashSet<>();
+    for (RecordingSubscriber subscriber : subscribers) {
+      assertTrue(subscriber.terminated.await(20, TimeUnit.SECONDS));
+      assertTrue(subscriber.completed);
+      numberSet.addAll(subscriber.numbers);
+    }
+    executor.shutdown();
+    assertThat(numberSet.size(), equalTo(80000));
+  }
+
+}
@@ -0,0 +1,102 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import org.junit.Test;
+
+public class NumatrixNumberSpliteratorTest {
+
+  private static NumatrixNumberGenerator sharedGenerator() {
+    return new NumatrixSharedNumberGenerator(3, 4) {
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        return 50;
+      }
+    };
+  }
+
+  @Test
+  public void 指定された数の重複しない数値を返すテスト() throws Exception {
+    NumatrixNumberGenerator generator = new NumatrixNumberGenerator(1, 4);
+    long[] numbers = generator.stream(1000).toArray();
+    assertThat(numbers.length, equalTo(1000));
+    for (int i = 1; i < numbers.length; i++) {
+      assertTrue(numbers[i] > numbers[i - 1]);
+      assertThat(numbers[i] & 0xF, equalTo(1L));
+    }
+    assertThat(generator.stream(0).count(), equalTo(0L));
+  }
+
+  @Test
+  public void スレッドセーフでないインスタンスは分割しないテスト() throws Exception {
+    Spliterator.OfLong spliterator = new NumatrixNumberGenerator(1, 4).spliterator(1000);
+    assertThat(spliterator.trySplit(), nullValue());
+    assertThat(spliterator.estimateSize(), equalTo(1000L));
+    assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT | Spliterator.SUBSIZED));
+    assertThat(new NumatrixNumberGenerator(1, 4).stream(1000).parallel().distinct().count(),
+        equalTo(1000L));
+  }
+
+  @Test
+  public void 分割されたそれぞれが範囲を予約するテスト() throws Exception {
+    Spliterator.OfLong spliterator = sharedGenerator().spliterator(1000);
+    Spliterator.OfLong split = spliterator.trySplit();
+    assertThat(split.estimateSize(), equalTo(500L));
+    assertThat(spliterator.estimateSize(), equalTo(500L));
+    assertTrue(spliterator.tryAdvance((long number) -> { }));
+    assertThat(spliterator.estimateSize(), equalTo(499L));
+  }
+
+  @Test(timeout = 30000)
+  public void 並列ストリームで生成しても数値が重複しないテスト() throws Exception {
+    NumatrixNumberGenerator generator = sharedGenerator();
+    long count = generator.stream(200000).parallel().distinct().count();
+    assertThat(count, equalTo(200000L));
+    assertThat(generator.stream().parallel().limit(5000).distinct().count(), equalTo(5000L));
+  }
+
+  @Test
+  public void 数値を返し続ける場合は大きさを持たないテスト() throws Exception {
+    Spliterator.OfLong spliterator = sharedGenerator().spliterator(Long.MAX_VALUE);
+    assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+    assertFalse(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+    assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+    Spliterator.OfLong split = spliterator.trySplit();
+    assertFalse(split.hasCharacteristics(Spliterator.SIZED));
+    assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+    assertTrue(sharedGenerator().spliterator(Long.MAX_VALUE - 1)
+        .hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+  }
+
+  @Test
+  public void 数値を返し続けるイテレータのテスト() throws Exception {
+    PrimitiveIterator.OfLong iterator = new NumatrixNumberGenerator(2, 4).iterator();
+    long previous = -1;
+    for (int i = 0; i < 3000; i++) {
+      assertTrue(iterator.hasNext());
+      long number = iterator.nextLong();
+      assertTrue(number > previous);
+      previous = number;
+    }
+  }
+
+  @Test
+  public void 数値を生成できない場合は非チェック例外が発生するテスト() throws Exception {
+    LongStream stream = new NumatrixNumberGenerator(1073741824, 31).stream(1);
+    try {
+      stream.sum();
+      fail();
+    } catch (NumatrixUncheckedNumberGenerateException e) {
+      assertThat(e.getCause().getMessage(), equalTo("number stracture size over 64bits."));
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class NumatrixSharedNumberGeneratorTest {
+
+  @Test
+  public void 複数のスレッドから同時に生成しても数値が重複しないテスト() throws Exception {
+    final NumatrixNumberGenerator testTarget = new NumatrixSharedNumberGenerator(3, 16) {
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        return 40;
+      }
+    };
+    final int threadCount = 8;
+    final int count = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws Exception {
+          long[] numbers = new long[count];
+          for (int i = 0; i < count; i++) {
+            numbers[i] = testTarget.generate();
+          }
+          return numbers;
+        }
+      }));
+    }
+    Set<Long> numberSet = new HashSet<>();
+    for (Future<long[]> future : futures) {
+      long previous = -1;
+      for (long number : future.get()) {
+        assertThat(number & 0xFFFF, equalTo(3L));
+        assertTrue(number > previous);
+        previous = number;
+        numberSet.add(number);
+      }
+    }
+    executor.shutdown();
+    assertThat(numberSet.size(), equalTo(threadCount * count));
+  }
+
+  @Test
+  public void ファクトリから複数のスレッドで共有するインスタンスを取得するテスト() throws Exception {
+    final NumatrixNumberGeneratorFactory factory = new NumatrixNumberGeneratorFactory() {
+      @Override
+      protected int getTypeId() {
+        return 10;
+      }
+
+      @Override
+      protected int getJvmId() {
+        return 1;
+      }
+
+      @Override
+      protected int getMaxJvmCount() {
+        return 2;
+      }
+
+      @Override
+      protected int getMaxGeneratorCount() {
+        return 1;
+      }
+
+      @Override
+      protected boolean isSharedGenerator() {
+        return true;
+      }
+    };
+    final NumatrixNumberGenerator generator = factory.getGenerator();
+    assertThat(generator, instanceOf(NumatrixSharedNumberGenerator.class));
+    assertThat(generator.generate() & 1, equalTo(1L));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<NumatrixNumberGenerator> future = executor.submit(new Callable<NumatrixNumberGenerator>() {
+      @Override
+      public NumatrixNumberGenerator call() throws Exception {
+        return factory.getGenerator();
+      }
+    });
+    assertThat(future.get(), sameInstance(generator));
+    executor.shutdown();
+  }
+
+  @Test
+  public void 連続した番号の範囲を予約するテスト() throws NumatrixNumberGenerateException {
+    NumatrixNumberGenerator testTarget = new NumatrixSharedNumberGenerator(5, 16);
+    long first = testTarget.generate();
+    NumatrixNumberRange range = testTarget.reserve(40000);
+    assertThat(range.getStart(), equalTo(first + 65536L));
+    assertThat(range.getCount(), equalTo(32767));
+    range = testTarget.reserve(3);
+    assertThat(range.getCount(), equalTo(3));
+    assertThat(range.getStart() & 2147418112, equalTo(0L));
+    assertThat(testTarget.generate(), equalTo(range.getStart() + 3 * 65536L));
+  }
+
+  @Test
+  public void 更新に失敗したタイムスタンプの更新を計測しないテスト() throws Exception {
+    final ManualNumatrixClock clock = new ManualNumatrixClock(System.currentTimeMillis());
+    clock.setStep(1);
+    final long[] rollovers = new long[1];
+    NumatrixSharedNumberGenerator testTarget = new NumatrixSharedNumberGenerator(0, 1) {
+      private boolean lost;
+
+      @Override
+      public NumatrixTickUnit getTickUnit() {
+        return NumatrixTickUnit.MILLISECONDS;
+      }
+
+      @Override
+      public int getTimestampBitLength() {
+        // 連続した番号は3ビット
+        return 59;
+      }
+
+      @Override
+      public NumatrixClock getClock() {
+        return clock;
+      }
+
+      @Override
+      boolean compareAndSetState(long expect, long update) {
+        // 他のスレッドと競合したものとして、1回おきに更新に失敗する
+        lost = !lost;
+        if (lost || !super.compareAndSetState(expect, update)) {
+          return false;
+        }
+        if (expect >>> getSeqNumBitLength() != update >>> getSeqNumBitLength()) {
+          rollovers[0]++;
+        }
+        return true;
+      }
+    };
+    NumatrixNumberGeneratorMetrics metrics = new NumatrixNumberGeneratorMetrics(0, 1, null);
+    testTarget.setMetrics(metrics);
+    for (int i = 0; i < 100; i++) {
+      testTarget.generate();
+    }
+    assertTrue(rollovers[0] >= 12);
+    assertThat(metrics.getRolloverCount(), equalTo(rollovers[0]));
+  }
+
+}
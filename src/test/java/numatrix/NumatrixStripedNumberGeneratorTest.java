@@ -0,0 +1,126 @@
+package numatrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class NumatrixStripedNumberGeneratorTest {
+
+  private final NumatrixNumberGeneratorFactory factory = new NumatrixNumberGeneratorFactory() {
+    @Override
+    protected int getTypeId() {
+      return 14;
+    }
+
+    @Override
+    protected int getJvmId() {
+      return 1;
+    }
+
+    @Override
+    protected int getMaxJvmCount() {
+      return 4;
+    }
+
+    @Override
+    protected int getMaxGeneratorCount() {
+      return 1000;
+    }
+
+    @Override
+    protected int getStripeCount() {
+      return 4;
+    }
+
+    @Override
+    protected NumatrixSharedNumberGenerator makeSharedGenerator(int generatorId,
+        int generatorIdBitLength) {
+      return new NumatrixSharedNumberGenerator(generatorId, generatorIdBitLength) {
+        @Override
+        public NumatrixTickUnit getTickUnit() {
+          return NumatrixTickUnit.MILLISECONDS;
+        }
+
+        @Override
+        public int getTimestampBitLength() {
+          return 40;
+        }
+      };
+    }
+  };
+
+  @Test
+  public void ストライプの数でインスタンスのIDのビット長が決まるテスト() throws Exception {
+    NumatrixNumberGenerator generator = factory.getGenerator();
+    assertThat(generator, instanceOf(NumatrixStripedNumberGenerator.class));
+    assertThat(((NumatrixStripedNumberGenerator) generator).getStripeCount(), equalTo(4));
+    NumatrixNumberLayout layout = generator.getLayout();
+    assertThat(layout.getInstanceIdBitLength(), equalTo(4));
+    assertThat(layout.getTimestampBitLength(), equalTo(40));
+    assertThat(layout.getSeqNumBitLength(), equalTo(19));
+    assertThat(factory.getLayout().toString(), equalTo(layout.toString()));
+    assertThat(layout.jvmIdOf(generator.generate()), equalTo(1));
+  }
+
+  @Test
+  public void 複数のスレッドから同時に生成しても数値が重複しないテスト() throws Exception {
+    final int threadCount = 16;
+    final int count = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws Exception {
+          NumatrixNumberGenerator generator = factory.getGenerator();
+          long[] numbers = new long[count];
+          for (int i = 0; i < count; i += 100) {
+            numbers[i] = generator.generate();
+            generator.generate(numbers, i + 1, 99);
+          }
+          return numbers;
+        }
+      }));
+    }
+    Set<Long> numberSet = new HashSet<>();
+    Set<Long> instanceIdSet = new HashSet<>();
+    for (Future<long[]> future : futures) {
+      for (long number : future.get()) {
+        assertTrue(number > 0);
+        numberSet.add(number);
+        instanceIdSet.add(number & 0xF);
+      }
+    }
+    executor.shutdown();
+    assertThat(numberSet.size(), equalTo(threadCount * count));
+    for (long instanceId : instanceIdSet) {
+      assertTrue(4 <= instanceId && instanceId < 8);
+    }
+  }
+
+  @Test
+  public void ストライプを束ねて生成するテスト() throws NumatrixNumberGenerateException {
+    NumatrixStripedNumberGenerator testTarget = new NumatrixStripedNumberGenerator(2, 2,
+        new NumatrixSharedNumberGenerator(2, 2), new NumatrixSharedNumberGenerator(3, 2));
+    long first = testTarget.generate();
+    assertThat(first & 3, anyOf(equalTo(2L), equalTo(3L)));
+    NumatrixNumberRange range = testTarget.reserve(10);
+    assertThat(range.getStride(), equalTo(4L));
+    assertThat(range.getStart() & 3, equalTo(first & 3));
+    assertThat(range.getStart(), equalTo(first + 4));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void ストライプが指定されていない場合のテスト() {
+    new NumatrixStripedNumberGenerator(0, 1);
+  }
+
+}
@@ -6,6 +6,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import mockit.integration.junit4.JMockit;
@@ -26,10 +27,12 @@ public class RecyclePoolTest {
     assertThat(testTarget.size(), is(1));
 
     final Object element2 = new Object();
+    final Thread[] thread = new Thread[1];
     ExecutorService executor = Executors.newSingleThreadExecutor();
     Future<Object> future = executor.submit(new Callable<Object>() {
       @Override
       public Object call() throws Exception {
+        thread[0] = Thread.currentThread();
         assertThat(testTarget.get(), nullValue());
         testTarget.add(element2);
         return testTarget.get();
@@ -37,6 +40,9 @@ public class RecyclePoolTest {
     });
     assertThat(future.get(), is(element2));
     assertThat(testTarget.size(), is(2));
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    thread[0].join();
     executor = Executors.newSingleThreadExecutor();
     future = executor.submit(new Callable<Object>() {
       @Override
@@ -49,4 +55,35 @@ public class RecyclePoolTest {
     assertThat(testTarget.size(), is(2));
   }
 
+  @Test
+  public void 返却した要素は別のスレッドがすぐに再利用できる() throws Exception {
+    final RecyclePool<Object> testTarget = new RecyclePool<>();
+    Object element1 = new Object();
+    testTarget.add(element1);
+    RecyclePool.Lease<Object> lease = testTarget.lease();
+    assertThat(lease.getElement(), is(element1));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Callable<Object> task = new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return testTarget.get();
+      }
+    };
+    assertThat(executor.submit(task).get(), nullValue());
+    lease.close();
+    lease.close();
+    assertThat(executor.submit(task).get(), is(element1));
+    assertThat(testTarget.get(), nullValue());
+    assertThat(testTarget.lease(), nullValue());
+
+    Object element2 = new Object();
+    testTarget.addIdle(element2);
+    assertThat(testTarget.get(), is(element2));
+    testTarget.release();
+    assertThat(testTarget.get(), is(element2));
+    assertThat(testTarget.size(), is(2));
+    executor.shutdown();
+  }
+
 }